@@ -3,11 +3,16 @@ package com.bigcomp.accesscontrol.core;
 
 import com.bigcomp.accesscontrol.database.DatabaseManager;
 import com.bigcomp.accesscontrol.logging.LogManager;
+import com.bigcomp.accesscontrol.network.ReaderServer;
+import com.bigcomp.accesscontrol.profile.GroupManager;
 import com.bigcomp.accesscontrol.profile.ProfileManager;
+import com.bigcomp.accesscontrol.profile.ResourceGroup;
 import com.bigcomp.accesscontrol.model.AccessRequest;
 import com.bigcomp.accesscontrol.model.AccessResponse;
 import com.bigcomp.accesscontrol.model.User;
 import com.bigcomp.accesscontrol.model.Resource;
+import java.io.IOException;
+import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -54,7 +59,7 @@ public class AccessControlSystem {
         Resource resource = resources != null ? resources.get(resourceId) : null;
         
         if (user != null && resource != null) {
-            logManager.logAccess(request, user, resource, response.isGranted());
+            logManager.logAccess(request, user, resource, response);
         }
     }
     
@@ -62,9 +67,73 @@ public class AccessControlSystem {
      * Initialize router event listeners for logging
      */
     public void initializeEventLogging() {
-        router.addAccessEventListener((request, response) -> {
+        // Lossless: an audit log entry is never skipped, the Router waits for the log instead
+        router.addLosslessAccessEventListener((request, response) -> {
+            long start = System.nanoTime();
             logAccessEvent(request, response);
+            router.getLatencyMonitor().recordSince(LatencyMonitor.Stage.LOGGING, request, start);
         });
+        // Warn when a reader is probed with unknown badge codes
+        arp.getUnknownBadgeMonitor().addPropertyChangeListener(evt -> {
+            String readerId = (String) evt.getNewValue();
+            System.err.println("Alert: badge reader " + readerId + " received "
+                + arp.getUnknownBadgeMonitor().getAlertThreshold() + " unknown badge codes within one window (total "
+                + arp.getUnknownBadgeMonitor().getUnknownCount(readerId) + ")");
+        });
+    }
+
+    /**
+     * Enable Router priority lanes, using the security levels of the resource group definitions
+     * @param capacity Requests in progress before normal-priority requests are deferred
+     */
+    public AdmissionController enablePriorityLanes(int capacity) {
+        AdmissionController controller = new AdmissionController(capacity);
+        Map<String, Integer> levels = new HashMap<>();
+        for (ResourceGroup group : new GroupManager().getAllGroups().values()) {
+            levels.put(group.getName(), group.getSecurityLevel());
+        }
+        controller.setGroupSecurityLevels(levels);
+        router.enablePriorityLanes(controller);
+        return controller;
+    }
+
+    /**
+     * Enable Router rate limiting with default limits: a badge may be swiped once a second
+     * (bursts of 5, visitors once every 5 seconds, bursts of 3), a reader 20 times a second
+     * (bursts of 50). Throttle events are reported as alerts.
+     */
+    public RateLimiter enableRateLimiting() {
+        RateLimiter limiter = new RateLimiter(new RateLimiter.Limit(1, 5), new RateLimiter.Limit(20, 50));
+        limiter.setLimit(User.UserType.VISITOR, new RateLimiter.Limit(0.2, 3));
+        limiter.addPropertyChangeListener(evt -> System.err.println("Alert: "
+            + ("badgeThrottled".equals(evt.getPropertyName()) ? "badge " : "badge reader ")
+            + evt.getNewValue() + " exceeded its swipe rate limit"));
+        router.enableRateLimiting(limiter);
+        return limiter;
+    }
+
+    /**
+     * Enable pushing offline policies to the badge readers, so they can keep deciding
+     * while the Router is unreachable (each snapshot change is pushed after a short delay)
+     */
+    public OfflinePolicyDistributor enableOfflinePolicies() {
+        router.enableOfflinePolicies();
+        return router.getOfflinePolicyDistributor();
+    }
+
+    /**
+     * Start TCP server for networked badge readers
+     * The Router is switched to async mode first so decisions never run on the selector thread;
+     * readers must be allowed with ReaderServer.allowReader() before they connect
+     * @param port TCP port, 0 for any free port
+     */
+    public ReaderServer startReaderServer(int port) throws IOException {
+        if (!router.isAsyncMode()) {
+            router.enableAsyncMode(256, ReaderRequestQueue.BackpressurePolicy.REJECT);
+        }
+        ReaderServer server = new ReaderServer(router, port);
+        server.start();
+        return server;
     }
 
     public Router getRouter() {
@@ -0,0 +1,291 @@
+// Group 2 ChenGong ZhangZhao LiangYiKuo
+package com.bigcomp.accesscontrol.core;
+
+import com.bigcomp.accesscontrol.model.AccessRequest;
+import com.bigcomp.accesscontrol.model.AccessResponse;
+
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Access Event Ring - Preallocated ring buffer between the Router and access event listeners
+ * Publishing claims a sequence number and writes one slot. Each listener runs on its own
+ * thread and tracks its own sequence, so a slow listener only falls behind itself. A listener
+ * more than one ring behind skips the overwritten events and counts them as lost, unless it
+ * was subscribed as lossless (the audit log): publishing then waits until it has handled the
+ * event in the slot about to be reused, so it slows the Router down instead of losing events.
+ * Slots are a seqlock: the slot's sequence is -1 while its data is written, and a listener
+ * keeps the data it read only if the sequence is unchanged afterwards. The fences keep the
+ * data writes after the -1 store and the data reads before the re-check.
+ */
+public class AccessEventRing {
+    public static final int DEFAULT_CAPACITY = 8192;
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10); // Safety net for missed wake-ups
+    private static final int SPINS_BEFORE_PARK = 100;
+    private static final long BACKPRESSURE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private final int mask;
+    private final AccessRequest[] requests; // Slot data
+    private final AccessResponse[] responses;
+    private final long[] publishedAt; // System.nanoTime() of publish, for dispatch latency
+    private final AtomicLongArray published; // Slot -> sequence stored in it, -1 while being written
+    private final AtomicLong cursor; // Next sequence to claim
+    private volatile Subscriber[] subscribers;
+    private volatile Subscriber[] lossless; // Subscribers publishing waits for
+    private final LongAdder backpressureCount; // Publishes that waited for a lossless listener
+    private final LatencyMonitor latencyMonitor; // Null if dispatch latency is not recorded
+
+    public AccessEventRing(int capacity) {
+        this(capacity, null);
+    }
+
+    public AccessEventRing(int capacity, LatencyMonitor latencyMonitor) {
+        if (capacity <= 0 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Ring capacity must be between 1 and " + MAX_CAPACITY + ": " + capacity);
+        }
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1; // Next power of two
+        this.mask = size - 1;
+        this.requests = new AccessRequest[size];
+        this.responses = new AccessResponse[size];
+        this.publishedAt = new long[size];
+        this.latencyMonitor = latencyMonitor;
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            published.set(i, -1);
+        }
+        this.cursor = new AtomicLong();
+        this.subscribers = new Subscriber[0];
+        this.lossless = new Subscriber[0];
+        this.backpressureCount = new LongAdder();
+    }
+
+    /**
+     * Publish a decided access event
+     * Only waits while a lossless listener has not handled the event the slot still holds
+     */
+    public void publish(AccessRequest request, AccessResponse response) {
+        long sequence = cursor.getAndIncrement();
+        awaitLossless(sequence);
+        int slot = (int) (sequence & mask);
+        published.set(slot, -1); // Readers of the old sequence see it being overwritten
+        VarHandle.storeStoreFence(); // The data writes must not move before the -1
+        requests[slot] = request;
+        responses[slot] = response;
+        publishedAt[slot] = System.nanoTime();
+        published.set(slot, sequence);
+
+        // Wake listeners that are parked waiting for events
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.waiting) {
+                LockSupport.unpark(subscriber.thread);
+            }
+        }
+    }
+
+    /**
+     * Wait until every lossless listener is past the event published one ring before sequence
+     * Listeners that are no longer running are not waited for
+     */
+    private void awaitLossless(long sequence) {
+        long previous = sequence - mask - 1; // Sequence the slot held before
+        boolean waited = false;
+        int spins = 0;
+        for (Subscriber subscriber : lossless) {
+            while (subscriber.running && subscriber.sequence <= previous) {
+                waited = true;
+                if (++spins < SPINS_BEFORE_PARK) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(this, BACKPRESSURE_PARK_NANOS);
+                }
+            }
+        }
+        if (waited) {
+            backpressureCount.increment();
+        }
+    }
+
+    /**
+     * Start delivering events published from now on to a listener, on its own thread
+     * Events it falls a full ring behind on are skipped and counted as lost.
+     */
+    public Subscriber subscribe(Router.AccessEventListener listener) {
+        return subscribe(listener, false);
+    }
+
+    /**
+     * Start delivering events published from now on to a listener, on its own thread
+     * @param lossless Never skip events; publishing waits for the listener instead
+     */
+    public synchronized Subscriber subscribe(Router.AccessEventListener listener, boolean lossless) {
+        Subscriber subscriber = new Subscriber(listener, cursor.get());
+        subscribers = append(subscribers, subscriber);
+        if (lossless) {
+            this.lossless = append(this.lossless, subscriber);
+        }
+        subscriber.thread.start();
+        return subscriber;
+    }
+
+    private static Subscriber[] append(Subscriber[] current, Subscriber subscriber) {
+        Subscriber[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = subscriber;
+        return updated;
+    }
+
+    /**
+     * Stop delivering events to a listener
+     * @return true if the listener was subscribed
+     */
+    public synchronized boolean unsubscribe(Router.AccessEventListener listener) {
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.listener == listener) {
+                subscribers = remove(subscribers, subscriber);
+                lossless = remove(lossless, subscriber);
+                subscriber.stop();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Subscriber[] remove(Subscriber[] current, Subscriber subscriber) {
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == subscriber) {
+                Subscriber[] updated = new Subscriber[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                return updated;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Get next sequence to be published (number of events published so far)
+     */
+    public long getPublishedCount() {
+        return cursor.get();
+    }
+
+    /**
+     * Get number of publishes that waited for a lossless listener
+     */
+    public long getBackpressureCount() {
+        return backpressureCount.sum();
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    public Subscriber[] getSubscribers() {
+        return subscribers.clone();
+    }
+
+    /**
+     * Subscriber - One listener, its thread and its own sequence
+     */
+    public final class Subscriber {
+        private final Router.AccessEventListener listener;
+        private final Thread thread;
+        private volatile long sequence; // Next sequence to deliver
+        private volatile boolean waiting; // Parked, waiting for publish to unpark
+        private volatile boolean running;
+        private final LongAdder lost; // Events overwritten before this listener got to them
+
+        private Subscriber(Router.AccessEventListener listener, long startSequence) {
+            this.listener = listener;
+            this.sequence = startSequence;
+            this.running = true;
+            this.lost = new LongAdder();
+            this.thread = new Thread(this::run, "access-event-listener");
+            thread.setDaemon(true);
+        }
+
+        private void run() {
+            try {
+                poll();
+            } finally {
+                running = false; // Publishing stops waiting for a listener whose thread died
+            }
+        }
+
+        private void poll() {
+            int idle = 0;
+            while (running) {
+                long next = sequence;
+                int slot = (int) (next & mask);
+                long stored = published.get(slot);
+                if (stored == next) {
+                    AccessRequest request = requests[slot];
+                    AccessResponse response = responses[slot];
+                    long publishTime = publishedAt[slot];
+                    VarHandle.acquireFence(); // The data reads must not move after the re-check
+                    if (published.get(slot) == next) {
+                        if (latencyMonitor != null) {
+                            latencyMonitor.recordSince(LatencyMonitor.Stage.LISTENER_DISPATCH, request, publishTime);
+                        }
+                        deliver(request, response);
+                        sequence = next + 1;
+                        idle = 0;
+                        continue;
+                    }
+                    stored = published.get(slot); // Overwritten while reading
+                }
+                if (stored > next || (stored == -1 && cursor.get() > next + mask + 1)) {
+                    // Fell a full ring behind: skip to the oldest event still available
+                    long oldest = Math.max(next + 1, cursor.get() - mask - 1);
+                    lost.add(oldest - next);
+                    sequence = oldest;
+                    continue;
+                }
+                // Nothing published yet: spin briefly, then park until a publish wakes us
+                if (++idle < SPINS_BEFORE_PARK) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+                waiting = true;
+                if (published.get(slot) != next) {
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                }
+                waiting = false;
+            }
+        }
+
+        private void deliver(AccessRequest request, AccessResponse response) {
+            try {
+                listener.onAccessEvent(request, response);
+            } catch (Throwable e) {
+                // Errors too: a dead lossless listener would otherwise stall publishing
+                System.err.println("Access event listener failed: " + e);
+            }
+        }
+
+        private void stop() {
+            running = false;
+            LockSupport.unpark(thread);
+        }
+
+        /**
+         * Get number of published events this listener has not handled yet
+         */
+        public long getBacklog() {
+            return Math.max(0, cursor.get() - sequence);
+        }
+
+        public long getLostCount() {
+            return lost.sum();
+        }
+
+        public Router.AccessEventListener getListener() {
+            return listener;
+        }
+    }
+}
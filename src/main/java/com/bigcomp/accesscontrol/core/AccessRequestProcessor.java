@@ -3,46 +3,341 @@ package com.bigcomp.accesscontrol.core;
 
 import com.bigcomp.accesscontrol.model.AccessRequest;
 import com.bigcomp.accesscontrol.model.AccessResponse;
+import com.bigcomp.accesscontrol.model.AccessResponse.ReasonCode;
 import com.bigcomp.accesscontrol.model.Resource;
 import com.bigcomp.accesscontrol.model.User;
 import com.bigcomp.accesscontrol.profile.Profile;
 import com.bigcomp.accesscontrol.profile.ProfileManager;
 import com.bigcomp.accesscontrol.profile.TimeFilter;
 import com.bigcomp.accesscontrol.database.DatabaseManager;
+import com.bigcomp.accesscontrol.util.SystemClock;
 
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.beans.PropertyChangeSupport;
 import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Access Request Processor (ARP) - Core access control logic
  * Must process requests efficiently in memory, cannot access database
  */
 public class AccessRequestProcessor {
+    private static final int BATCH_SPLIT_THRESHOLD = 2048; // Batches larger than this are split
+
     private DatabaseManager dbManager;
     private ProfileManager profileManager;
     
-    // In-memory fast lookup structures
-    private Map<String, User> usersByBadgeCode; // Find user by badge code
-    private Map<String, Set<String>> userProfiles; // User ID -> Profile name set
-    private Map<String, Resource> resources; // Resource ID -> Resource object
-    private Map<String, String> resourceGroups; // Resource ID -> Group name
+    // In-memory data, published as one immutable snapshot so requests never lock
+    private final AtomicReference<PolicySnapshot> snapshot;
+    private final Object reloadLock; // Serializes writers only
+    private final AtomicInteger bulkUpdates; // > 0 while deltas are deferred to one full reload
+    private final PropertyChangeSupport pcs; // "snapshot" events, fired after each swap
+
+    // Compiled policy mode: dense IDs and group bitsets instead of string lookups
+    private volatile boolean compiledMode;
+    private volatile ForkJoinPool batchPool; // Splits large batches, null (default) for caller thread only
+    private volatile DecisionCache decisionCache; // Optional, null when disabled
+    private final UnknownBadgeMonitor unknownBadgeMonitor; // Per-reader unknown badge code counters
+
+    // Badge expiry sweep: marks badges expired at their expiry instant
+    private final ScheduledExecutorService expirySweeper;
+    private ScheduledFuture<?> nextExpirySweep; // Guarded by reloadLock
+    private final LongAdder expiredBadgeCount;
 
     public AccessRequestProcessor(DatabaseManager dbManager, ProfileManager profileManager) {
         this.dbManager = dbManager;
         this.profileManager = profileManager;
+        this.snapshot = new AtomicReference<>();
+        this.reloadLock = new Object();
+        this.bulkUpdates = new AtomicInteger();
+        this.pcs = new PropertyChangeSupport(this);
+        this.compiledMode = true;
+        this.unknownBadgeMonitor = new UnknownBadgeMonitor();
+        this.expirySweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "badge-expiry-sweep");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.expiredBadgeCount = new LongAdder();
         loadDataIntoMemory();
+        // Profiles live in ProfileManager, recompile when they are saved or deleted
+        profileManager.addPropertyChangeListener(evt -> reloadProfiles(
+            (String) (evt.getNewValue() != null ? evt.getNewValue() : evt.getOldValue())));
+        // Apply database writes incrementally instead of reloading everything
+        dbManager.addPropertyChangeListener(this::handleDatabaseChange);
+    }
+
+    /**
+     * Handle database write notification
+     */
+    private void handleDatabaseChange(PropertyChangeEvent evt) {
+        if (bulkUpdates.get() > 0) {
+            return; // Covered by the reload at the end of the bulk update
+        }
+        String key = (String) evt.getNewValue();
+        switch (evt.getPropertyName()) {
+            case "user":
+                applyUserChange(key);
+                break;
+            case "resource":
+                applyResourceChange(key);
+                break;
+            case "resourceGroup":
+                applyGroupRemoval(key);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Apply change of a single user, its badge or its profile assignments
+     * Only this user's rows are read from the database
+     */
+    public void applyUserChange(String userId) {
+        synchronized (reloadLock) {
+            Map<String, User> badgeUsers = dbManager.loadUsersByBadgeCode(userId);
+            Map<String, Long> badgeExpiry = dbManager.loadBadgeExpiry(userId);
+            Set<String> profileNames = dbManager.loadUserProfiles(userId);
+            PolicySnapshot old = snapshot.get();
+            publishSnapshot(old.withUser(userId, badgeUsers, badgeExpiry, profileNames));
+            scheduleExpirySweepBy(badgeExpiry.values());
+
+            DecisionCache cache = decisionCache;
+            if (cache != null) {
+                // Old and new badge codes of this user
+                Set<String> badgeCodes = new HashSet<>(badgeUsers.keySet());
+                badgeCodes.addAll(badgeCodesOf(old, Set.of(userId)));
+                cache.invalidateBadges(badgeCodes);
+            }
+        }
+    }
+
+    /**
+     * Apply change of a single resource or its group membership
+     * Only this resource's rows are read from the database
+     */
+    public void applyResourceChange(String resourceId) {
+        synchronized (reloadLock) {
+            Resource resource = dbManager.loadResource(resourceId);
+            Set<String> groupNames = resource != null ? dbManager.loadResourceGroups(resourceId) : Set.of();
+            publishSnapshot(snapshot.get().withResource(resourceId, resource, groupNames));
+
+            DecisionCache cache = decisionCache;
+            if (cache != null) {
+                cache.invalidateResources(Set.of(resourceId));
+            }
+        }
+    }
+
+    /**
+     * Apply removal of all resources from a group (group deleted)
+     */
+    public void applyGroupRemoval(String groupName) {
+        synchronized (reloadLock) {
+            PolicySnapshot old = snapshot.get();
+            publishSnapshot(old.withoutGroup(groupName));
+
+            DecisionCache cache = decisionCache;
+            if (cache != null) {
+                Set<String> resourceIds = new HashSet<>();
+                for (Map.Entry<String, Set<String>> entry : old.getResourceGroups().entrySet()) {
+                    if (entry.getValue().contains(groupName)) {
+                        resourceIds.add(entry.getKey());
+                    }
+                }
+                cache.invalidateResources(resourceIds);
+            }
+        }
+    }
+
+    /**
+     * Swap in a new snapshot and notify "snapshot" listeners
+     * Caller must hold reloadLock, so listeners see snapshots in publication order
+     */
+    private void publishSnapshot(PolicySnapshot next) {
+        PolicySnapshot old = snapshot.getAndSet(next);
+        pcs.firePropertyChange("snapshot", old, next);
+    }
+
+    /**
+     * Add listener for "snapshot" events (old and new PolicySnapshot)
+     * Listeners run on the thread that applied the change, while reloads are blocked,
+     * so they should only record that something changed
+     */
+    public void addPropertyChangeListener(PropertyChangeListener listener) {
+        pcs.addPropertyChangeListener(listener);
+    }
+
+    public void removePropertyChangeListener(PropertyChangeListener listener) {
+        pcs.removePropertyChangeListener(listener);
+    }
+
+    /**
+     * Start a bulk update: incremental deltas are skipped until endBulkUpdate(),
+     * which does a single full reload
+     */
+    public void beginBulkUpdate() {
+        bulkUpdates.incrementAndGet();
+    }
+
+    /**
+     * End a bulk update and reload once
+     */
+    public void endBulkUpdate() {
+        if (bulkUpdates.decrementAndGet() == 0) {
+            loadDataIntoMemory();
+        }
     }
 
     /**
      * Load data into memory for fast access
+     * The new snapshot is built off to the side, then swapped in atomically
      */
     private void loadDataIntoMemory() {
-        // Load all data from database into memory
-        usersByBadgeCode = dbManager.loadUsersByBadgeCode();
-        userProfiles = dbManager.loadUserProfiles();
-        resources = dbManager.loadAllResources();
-        resourceGroups = dbManager.loadResourceGroups();
+        synchronized (reloadLock) {
+            // Load all data from database into memory
+            PolicySnapshot loaded = new PolicySnapshot(
+                dbManager.loadUsersByBadgeCode(),
+                dbManager.loadBadgeExpiry(),
+                dbManager.loadUserProfiles(),
+                dbManager.loadAllResources(),
+                dbManager.loadResourceGroups(),
+                profileManager.getAllProfiles());
+            publishSnapshot(loaded);
+            scheduleExpirySweep();
+
+            DecisionCache cache = decisionCache;
+            if (cache != null) {
+                cache.clear();
+            }
+        }
+    }
+
+    /**
+     * Recompile snapshot with current profiles, keeping database data
+     * @param profileName Profile that was saved or deleted, null if unknown
+     */
+    private void reloadProfiles(String profileName) {
+        synchronized (reloadLock) {
+            PolicySnapshot old = snapshot.get();
+            publishSnapshot(old.withProfiles(profileManager.getAllProfiles()));
+
+            DecisionCache cache = decisionCache;
+            if (cache != null) {
+                if (profileName == null) {
+                    cache.clear();
+                    return;
+                }
+                // Only users holding this profile can decide differently
+                Set<String> userIds = new HashSet<>();
+                for (Map.Entry<String, Set<String>> entry : old.getUserProfiles().entrySet()) {
+                    if (entry.getValue().contains(profileName)) {
+                        userIds.add(entry.getKey());
+                    }
+                }
+                cache.invalidateBadges(badgeCodesOf(old, userIds));
+            }
+        }
+    }
+
+    /**
+     * Schedule the expiry sweep for the next badge expiry of the current snapshot
+     * Caller must hold reloadLock
+     */
+    private void scheduleExpirySweep() {
+        if (nextExpirySweep != null) {
+            nextExpirySweep.cancel(false);
+            nextExpirySweep = null;
+        }
+        long now = AccessRequest.toEpochSecond(SystemClock.now());
+        PolicySnapshot current = snapshot.get();
+        if (!current.findBadgesToExpire(now).isEmpty()) {
+            nextExpirySweep = expirySweeper.schedule(this::sweepExpiredBadges, 0, TimeUnit.SECONDS);
+            return;
+        }
+        long next = current.findNextBadgeExpiry(now);
+        if (next != Long.MAX_VALUE) {
+            // A badge is expired once the time is after its expiry
+            nextExpirySweep = expirySweeper.schedule(this::sweepExpiredBadges, next - now + 1, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Move the expiry sweep earlier if one of the given expiries comes before it
+     * (no scan of all badges; a sweep that finds nothing to expire reschedules itself)
+     * Caller must hold reloadLock
+     */
+    private void scheduleExpirySweepBy(Iterable<Long> expiries) {
+        long now = AccessRequest.toEpochSecond(SystemClock.now());
+        long delay = Long.MAX_VALUE;
+        for (long expiry : expiries) {
+            if (expiry != Long.MIN_VALUE && expiry != Long.MAX_VALUE) {
+                // A badge is expired once the time is after its expiry
+                delay = Math.min(delay, expiry < now ? 0 : expiry - now + 1);
+            }
+        }
+        if (delay == Long.MAX_VALUE
+            || (nextExpirySweep != null && nextExpirySweep.getDelay(TimeUnit.SECONDS) <= delay)) {
+            return;
+        }
+        if (nextExpirySweep != null) {
+            nextExpirySweep.cancel(false);
+        }
+        nextExpirySweep = expirySweeper.schedule(this::sweepExpiredBadges, delay, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Mark badges whose expiry instant has passed as expired (no database reload),
+     * then wait for the next expiry
+     */
+    private void sweepExpiredBadges() {
+        synchronized (reloadLock) {
+            PolicySnapshot old = snapshot.get();
+            Set<String> badgeCodes = old.findBadgesToExpire(AccessRequest.toEpochSecond(SystemClock.now()));
+            if (!badgeCodes.isEmpty()) {
+                publishSnapshot(old.withExpiredBadges(badgeCodes));
+                expiredBadgeCount.add(badgeCodes.size());
+
+                DecisionCache cache = decisionCache;
+                if (cache != null) {
+                    cache.invalidateBadges(badgeCodes);
+                }
+            }
+            scheduleExpirySweep();
+        }
+    }
+
+    /**
+     * Get number of badges marked expired by the expiry sweep
+     */
+    public long getExpiredBadgeCount() {
+        return expiredBadgeCount.sum();
+    }
+
+    /**
+     * Find badge codes of the given users in a snapshot
+     */
+    private static Set<String> badgeCodesOf(PolicySnapshot current, Set<String> userIds) {
+        Set<String> badgeCodes = new HashSet<>();
+        for (String userId : userIds) {
+            badgeCodes.addAll(current.getCompiledPolicy().badgeCodesOf(userId));
+        }
+        return badgeCodes;
     }
 
     /**
@@ -51,150 +346,407 @@ public class AccessRequestProcessor {
      * @return Access response
      */
     public AccessResponse processRequest(AccessRequest request) {
+        if (compiledMode) {
+            DecisionCache cache = decisionCache;
+            if (cache != null) {
+                return processCached(request, cache);
+            }
+            return processCompiled(request, snapshot.get().getCompiledPolicy());
+        }
+        return processWithMaps(request, snapshot.get());
+    }
+
+    /**
+     * Process access request through the decision cache
+     */
+    private AccessResponse processCached(AccessRequest request, DecisionCache cache) {
+        AccessResponse cached = cache.get(request);
+        if (cached != null) {
+            return cached;
+        }
+        // Read generation before the snapshot, so a concurrent invalidation discards our entry
+        long generation = cache.getGeneration();
+        CompiledPolicy policy = snapshot.get().getCompiledPolicy();
+        AccessResponse response = processCompiled(request, policy);
+        cache.put(request, response, policy, stableMinutes(request, policy), generation);
+        return response;
+    }
+
+    /**
+     * Get number of minutes from the request time during which the decision cannot change:
+     * the shortest stretch over which the badge stays unexpired and all of the user's time
+     * filters for the resource groups keep their answer, Integer.MAX_VALUE if the decision
+     * does not depend on time
+     */
+    private static int stableMinutes(AccessRequest request, CompiledPolicy policy) {
+        int user = policy.userOf(request.getBadgeCode());
+        if (user == CompiledPolicy.NONE) {
+            return Integer.MAX_VALUE;
+        }
+        if (policy.isBadgeRevoked(user) || policy.isBadgeExpired(user, request.getEpochSecond())) {
+            return Integer.MAX_VALUE; // Stays denied until the badge changes
+        }
+        // The decision holds at most until the minute in which the badge expires
+        long untilExpiry = Math.floorDiv(policy.getBadgeExpiry(user), 60)
+            - Math.floorDiv(request.getEpochSecond(), 60);
+        int stable = (int) Math.min(Integer.MAX_VALUE, untilExpiry);
+        int resource = policy.resourceOf(request.getResourceId());
+        if (resource == CompiledPolicy.NONE || policy.isUncontrolled(resource)) {
+            return stable;
+        }
+        for (int profile : policy.profilesOf(user)) {
+            for (int group = policy.nextSharedGroup(profile, resource, 0); group != CompiledPolicy.NONE;
+                 group = policy.nextSharedGroup(profile, resource, group + 1)) {
+                TimeFilter filter = policy.filterOf(profile, group);
+                if (filter != null) {
+                    stable = Math.min(stable, filter.minutesUnchanged(request.getTimestamp()));
+                }
+            }
+        }
+        return stable;
+    }
+
+    /**
+     * Process a batch of access requests against one snapshot
+     * The decision cache is bypassed so the whole batch sees the same data
+     * Large batches are split across the batch fork-join pool if one was set with setBatchPool;
+     * by default the whole batch runs on the caller thread
+     * @param requests Access requests
+     * @return Access responses, in request order
+     */
+    public AccessResponse[] processBatch(AccessRequest[] requests) {
+        // Resolve snapshot and mode once for the whole batch
+        PolicySnapshot current = snapshot.get();
+        boolean compiled = compiledMode;
+        AccessResponse[] responses = new AccessResponse[requests.length];
+
+        ForkJoinPool pool = batchPool;
+        if (pool != null && requests.length > BATCH_SPLIT_THRESHOLD) {
+            pool.invoke(new BatchTask(requests, responses, 0, requests.length, current, compiled));
+        } else {
+            processRange(requests, responses, 0, requests.length, current, compiled);
+        }
+        return responses;
+    }
+
+    /**
+     * Process a batch of access requests against one snapshot
+     * @param requests Access requests
+     * @return Access responses, in request order
+     */
+    public List<AccessResponse> processBatch(List<AccessRequest> requests) {
+        return Arrays.asList(processBatch(requests.toArray(new AccessRequest[0])));
+    }
+
+    private void processRange(AccessRequest[] requests, AccessResponse[] responses, int from, int to,
+                              PolicySnapshot current, boolean compiled) {
+        CompiledPolicy policy = current.getCompiledPolicy();
+        for (int i = from; i < to; i++) {
+            responses[i] = compiled ? processCompiled(requests[i], policy) : processWithMaps(requests[i], current);
+        }
+    }
+
+    /**
+     * Fork-join task deciding a slice of a batch
+     */
+    private class BatchTask extends RecursiveAction {
+        private final AccessRequest[] requests;
+        private final AccessResponse[] responses;
+        private final int from;
+        private final int to;
+        private final PolicySnapshot current;
+        private final boolean compiled;
+
+        BatchTask(AccessRequest[] requests, AccessResponse[] responses, int from, int to,
+                  PolicySnapshot current, boolean compiled) {
+            this.requests = requests;
+            this.responses = responses;
+            this.from = from;
+            this.to = to;
+            this.current = current;
+            this.compiled = compiled;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH_SPLIT_THRESHOLD) {
+                processRange(requests, responses, from, to, current, compiled);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new BatchTask(requests, responses, from, mid, current, compiled),
+                      new BatchTask(requests, responses, mid, to, current, compiled));
+        }
+    }
+
+    /**
+     * Set pool used to split large batches, null (the default) to always process batches on the
+     * caller thread. A dedicated pool keeps batch work off the common pool other tasks share.
+     */
+    public void setBatchPool(ForkJoinPool batchPool) {
+        this.batchPool = batchPool;
+    }
+
+    /**
+     * Process access request against the maps of a snapshot
+     */
+    private AccessResponse processWithMaps(AccessRequest request, PolicySnapshot current) {
         String badgeCode = request.getBadgeCode();
         String resourceId = request.getResourceId();
         LocalDateTime requestTime = request.getTimestamp();
 
-        // 1. Find user
-        User user = usersByBadgeCode.get(badgeCode);
+        // 1. Find user (unknown codes are mostly rejected by the filter, without a map lookup)
+        User user = current.getCompiledPolicy().mightBeKnownBadge(badgeCode)
+            ? current.getUsersByBadgeCode().get(badgeCode)
+            : null;
         if (user == null) {
-            return new AccessResponse(request.getBadgeReaderId(), false, "User not found");
+            return unknownBadge(request);
+        }
+
+        // Check badge validity and expiry (primitive comparison)
+        Long expiry = current.getBadgeExpiry().get(badgeCode);
+        if (expiry != null && expiry == Long.MIN_VALUE) {
+            return new AccessResponse(request.getBadgeReaderId(), false, ReasonCode.BADGE_REVOKED);
+        }
+        if (current.getExpiredBadges().contains(badgeCode) || (expiry != null && request.getEpochSecond() > expiry)) {
+            return new AccessResponse(request.getBadgeReaderId(), false, ReasonCode.BADGE_EXPIRED);
         }
 
         // 2. Check resource status
-        Resource resource = resources.get(resourceId);
+        Resource resource = current.getResources().get(resourceId);
         if (resource == null) {
-            return new AccessResponse(request.getBadgeReaderId(), false, "Resource does not exist");
+            return new AccessResponse(request.getBadgeReaderId(), false, ReasonCode.RESOURCE_NOT_FOUND);
         }
 
         if (resource.getState() == Resource.ResourceState.UNCONTROLLED) {
-            return new AccessResponse(request.getBadgeReaderId(), true, "Resource is in uncontrolled state");
+            return new AccessResponse(request.getBadgeReaderId(), true, ReasonCode.UNCONTROLLED);
         }
 
         // 3. Get user profiles
-        Set<String> profileNames = userProfiles.get(user.getId());
+        Set<String> profileNames = current.getUserProfiles().get(user.getId());
         if (profileNames == null || profileNames.isEmpty()) {
-            return new AccessResponse(request.getBadgeReaderId(), false, "User has no access permissions configured");
+            return new AccessResponse(request.getBadgeReaderId(), false, ReasonCode.NO_PROFILES);
         }
 
-        // 4. Get resource group
-        String groupName = resourceGroups.get(resourceId);
-        if (groupName == null) {
-            return new AccessResponse(request.getBadgeReaderId(), false, "Resource does not belong to any group");
+        // 4. Get resource groups (sorted by name)
+        Set<String> groupNames = current.getResourceGroups().get(resourceId);
+        if (groupNames == null || groupNames.isEmpty()) {
+            return new AccessResponse(request.getBadgeReaderId(), false, ReasonCode.NO_GROUP);
         }
 
-        // 5. Check access permissions
+        // 5. Check access permissions (any profile, any group of the resource)
+        // The deny message is only formatted when asked for, by the snapshot's compiled policy
         boolean hasAccess = false;
-        String denyReason = null;
+        ReasonCode denyCode = ReasonCode.OTHER;
+        String denyProfile = null;
+        String denyGroup = null;
+        int minuteOfDay = requestTime.getHour() * 60 + requestTime.getMinute();
         for (String profileName : profileNames) {
-            Profile profile = profileManager.getProfile(profileName);
+            Profile profile = current.getProfile(profileName);
             if (profile == null) {
-                denyReason = "Profile does not exist: " + profileName;
+                denyCode = ReasonCode.PROFILE_NOT_FOUND;
+                denyProfile = profileName;
+                denyGroup = groupNames.iterator().next();
                 continue;
             }
-            
-            // Check if profile contains this resource group
-            if (!profile.getAccessRights().containsKey(groupName)) {
-                denyReason = "Profile \"" + profileName + "\" does not have resource group \"" + groupName + "\" configured";
-                continue;
+
+            boolean configured = false;
+            for (String groupName : groupNames) {
+                // Check if profile contains this resource group
+                if (!profile.getAccessRights().containsKey(groupName)) {
+                    continue;
+                }
+                configured = true;
+
+                // Check time filter
+                if (profile.hasAccess(groupName, requestTime)) {
+                    hasAccess = true;
+                    break;
+                } else {
+                    // Detailed check why denied
+                    TimeFilter filter = profile.getAccessRights().get(groupName);
+                    denyCode = DenyReasons.classify(filter, requestTime.getDayOfWeek(), minuteOfDay);
+                    denyProfile = profileName;
+                    denyGroup = groupName;
+                }
             }
-            
-            // Check time filter
-            if (profile.hasAccess(groupName, requestTime)) {
-                hasAccess = true;
+            if (hasAccess) {
                 break;
-            } else {
-                // Detailed check why denied
-                TimeFilter filter = profile.getAccessRights().get(groupName);
-                denyReason = buildDenyReason(filter, requestTime, profileName, groupName);
+            }
+            if (!configured) {
+                denyCode = ReasonCode.GROUP_NOT_IN_PROFILE;
+                denyProfile = profileName;
+                denyGroup = groupNames.iterator().next();
             }
         }
 
         // 6. Log event (handled by LogManager, not through dbManager here)
-        String message = hasAccess ? "Access granted" : 
-            (denyReason != null ? denyReason : "Access denied: Insufficient permissions");
-
-        return new AccessResponse(request.getBadgeReaderId(), hasAccess, message);
+        if (hasAccess) {
+            return new AccessResponse(request.getBadgeReaderId(), true, ReasonCode.GRANTED);
+        }
+        if (denyProfile == null) {
+            return new AccessResponse(request.getBadgeReaderId(), false, denyCode);
+        }
+        CompiledPolicy policy = current.getCompiledPolicy();
+        return new AccessResponse(request.getBadgeReaderId(), false, denyCode, policy.profileOf(denyProfile),
+            policy.groupOf(denyGroup), DenyReasons.weekMinute(requestTime.getDayOfWeek(), minuteOfDay), policy);
     }
 
     /**
-     * Reload data in memory (called when data is updated)
+     * Process access request against the compiled policy
+     * Decisions match the map-based path; deny messages are only formatted when asked for
      */
-    public void reloadData() {
-        loadDataIntoMemory();
-    }
-    
-    /**
-     * Build detailed denial reason
-     */
-    private String buildDenyReason(TimeFilter filter, LocalDateTime requestTime, 
-                                   String profileName, String groupName) {
-        StringBuilder reason = new StringBuilder();
-        
-        // Check day of week
-        if (filter.getDaysOfWeek() != null && !filter.getDaysOfWeek().isEmpty()) {
-            boolean weekMatch = filter.getDaysOfWeek().contains(requestTime.getDayOfWeek());
-            if (filter.isExcludeDaysOfWeek()) {
-                if (weekMatch) {
-                    reason.append("Day ").append(requestTime.getDayOfWeek())
-                          .append(" is in exclusion list");
-                    return reason.toString();
-                }
-            } else {
-                if (!weekMatch) {
-                    reason.append("Day ").append(requestTime.getDayOfWeek())
-                          .append(" is not in allowed list (allowed: ").append(filter.getDaysOfWeek()).append(")");
-                    return reason.toString();
-                }
-            }
+    private AccessResponse processCompiled(AccessRequest request, CompiledPolicy policy) {
+        String readerId = request.getBadgeReaderId();
+
+        // 1. Find user (unknown codes are mostly rejected by the filter, without a map lookup)
+        String badgeCode = request.getBadgeCode();
+        if (!policy.mightBeKnownBadge(badgeCode)) {
+            return unknownBadge(request);
         }
-        
-        // Check time range
-        if (filter.getTimeRanges() != null && !filter.getTimeRanges().isEmpty()) {
-            int currentMinutes = requestTime.getHour() * 60 + requestTime.getMinute();
-            boolean inRange = filter.getTimeRanges().stream()
-                .anyMatch(range -> range.contains(currentMinutes));
-            
-            if (filter.isExcludeTimeRanges()) {
-                if (inRange) {
-                    reason.append("Time ").append(String.format("%02d:%02d", 
-                        requestTime.getHour(), requestTime.getMinute()))
-                          .append(" is in exclusion range");
-                    return reason.toString();
-                }
-            } else {
-                if (!inRange) {
-                    // Show allowed time ranges
-                    StringBuilder allowedRanges = new StringBuilder();
-                    for (TimeFilter.TimeRange range : filter.getTimeRanges()) {
-                        int startH = range.getStartMinutes() / 60;
-                        int startM = range.getStartMinutes() % 60;
-                        int endH = range.getEndMinutes() / 60;
-                        int endM = range.getEndMinutes() % 60;
-                        if (allowedRanges.length() > 0) {
-                            allowedRanges.append(", ");
-                        }
-                        allowedRanges.append(String.format("%02d:%02d-%02d:%02d", 
-                            startH, startM, endH, endM));
+        int user = policy.userOf(badgeCode);
+        if (user == CompiledPolicy.NONE) {
+            return unknownBadge(request);
+        }
+
+        // Check badge validity and expiry (primitive comparison)
+        if (policy.isBadgeRevoked(user)) {
+            return new AccessResponse(readerId, false, ReasonCode.BADGE_REVOKED);
+        }
+        if (policy.isBadgeExpired(user, request.getEpochSecond())) {
+            return new AccessResponse(readerId, false, ReasonCode.BADGE_EXPIRED);
+        }
+
+        // 2. Check resource status
+        int resource = policy.resourceOf(request.getResourceId());
+        if (resource == CompiledPolicy.NONE) {
+            return new AccessResponse(readerId, false, ReasonCode.RESOURCE_NOT_FOUND);
+        }
+
+        if (policy.isUncontrolled(resource)) {
+            return new AccessResponse(readerId, true, ReasonCode.UNCONTROLLED);
+        }
+
+        // 3. Get user profiles
+        int[] profiles = policy.profilesOf(user);
+        if (profiles.length == 0) {
+            return new AccessResponse(readerId, false, ReasonCode.NO_PROFILES);
+        }
+
+        // 4. Get resource groups
+        if (!policy.isGrouped(resource)) {
+            return new AccessResponse(readerId, false, ReasonCode.NO_GROUP);
+        }
+
+        // 5. Check access permissions (skip the profile loop if the user's rights and the
+        // resource's groups do not intersect)
+        LocalDateTime requestTime = request.getTimestamp();
+        if (policy.userMayAccess(user, resource)) {
+            for (int profile : profiles) {
+                for (int group = policy.nextSharedGroup(profile, resource, 0); group != CompiledPolicy.NONE;
+                     group = policy.nextSharedGroup(profile, resource, group + 1)) {
+                    TimeFilter filter = policy.filterOf(profile, group);
+                    if (filter != null && filter.matches(requestTime)) { // No filter configured: denied
+                        return new AccessResponse(readerId, true, ReasonCode.GRANTED);
                     }
-                    reason.append("Time ").append(String.format("%02d:%02d", 
-                        requestTime.getHour(), requestTime.getMinute()))
-                          .append(" is not in allowed range (allowed: ").append(allowedRanges).append(")");
-                    return reason.toString();
                 }
             }
         }
-        
-        return "Time filter does not allow access";
+
+        // Denied: like the map-based path, the reason comes from the last profile and,
+        // within it, the last group evaluated
+        int profile = profiles[profiles.length - 1];
+        if (!policy.profileExists(profile)) {
+            return new AccessResponse(readerId, false, ReasonCode.PROFILE_NOT_FOUND, profile,
+                policy.firstGroupOf(resource), 0, policy);
+        }
+        int group = policy.lastSharedGroup(profile, resource);
+        if (group == CompiledPolicy.NONE) {
+            return new AccessResponse(readerId, false, ReasonCode.GROUP_NOT_IN_PROFILE, profile,
+                policy.firstGroupOf(resource), 0, policy);
+        }
+        int minuteOfDay = requestTime.getHour() * 60 + requestTime.getMinute();
+        ReasonCode reasonCode = DenyReasons.classify(policy.filterOf(profile, group),
+            requestTime.getDayOfWeek(), minuteOfDay);
+        return new AccessResponse(readerId, false, reasonCode, profile, group,
+            DenyReasons.weekMinute(requestTime.getDayOfWeek(), minuteOfDay), policy);
+    }
+
+    /**
+     * Deny an unknown badge code and count it for the reader
+     */
+    private AccessResponse unknownBadge(AccessRequest request) {
+        unknownBadgeMonitor.record(request.getBadgeReaderId());
+        return new AccessResponse(request.getBadgeReaderId(), false, ReasonCode.USER_NOT_FOUND);
+    }
+
+    /**
+     * Get per-reader counters of unknown badge codes (register for "unknownBadgeAlert" events)
+     */
+    public UnknownBadgeMonitor getUnknownBadgeMonitor() {
+        return unknownBadgeMonitor;
+    }
+
+    /**
+     * Enable or disable compiled policy mode
+     */
+    public void setCompiledMode(boolean compiledMode) {
+        this.compiledMode = compiledMode;
+    }
+
+    public boolean isCompiledMode() {
+        return compiledMode;
+    }
+
+    /**
+     * Enable decision cache in front of single requests (compiled mode only)
+     * @param maxEntries Maximum number of cached (badge, resource) decisions
+     */
+    public void enableDecisionCache(int maxEntries) {
+        synchronized (reloadLock) {
+            decisionCache = new DecisionCache(maxEntries);
+        }
+    }
+
+    /**
+     * Disable decision cache
+     */
+    public void disableDecisionCache() {
+        synchronized (reloadLock) {
+            decisionCache = null;
+        }
+    }
+
+    /**
+     * Get decision cache (hit/miss statistics), null if disabled
+     */
+    public DecisionCache getDecisionCache() {
+        return decisionCache;
+    }
+
+    /**
+     * Reload all data in memory
+     * Database writes made through DatabaseManager are already applied incrementally,
+     * so a full reload is only needed after changes made outside of it
+     */
+    public void reloadData() {
+        loadDataIntoMemory();
     }
     
-    // Getters for accessing memory data
+    // Getters for accessing memory data (read-only views of the current snapshot)
     public Map<String, User> getUsersByBadgeCode() {
-        return usersByBadgeCode;
+        return snapshot.get().getUsersByBadgeCode();
     }
     
     public Map<String, Resource> getResources() {
-        return resources;
+        return snapshot.get().getResources();
+    }
+
+    /**
+     * Get current immutable snapshot
+     */
+    public PolicySnapshot getSnapshot() {
+        return snapshot.get();
     }
 }
 
@@ -0,0 +1,294 @@
+// Group 2 ChenGong ZhangZhao LiangYiKuo
+package com.bigcomp.accesscontrol.core;
+
+import com.bigcomp.accesscontrol.model.AccessRequest;
+import com.bigcomp.accesscontrol.model.Resource;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Admission Controller - Priority lanes for the Router under overload
+ * Requests are classified by resource type and group security level. HIGH requests
+ * (perimeter gates, high-security doors) are always admitted, NORMAL requests are
+ * deferred once the in-progress count reaches capacity, and LOW requests (printers,
+ * beverage dispensers) are shed as soon as half of the capacity is in use.
+ */
+public class AdmissionController {
+    /**
+     * Lane - Priority of a request
+     */
+    public enum Lane {
+        HIGH,   // Never shed or deferred
+        NORMAL, // Deferred over capacity, shed if the deferred queue is full or it waited too long
+        LOW     // Shed over the low limit
+    }
+
+    /**
+     * Decision - Outcome of admission
+     */
+    public enum Decision {
+        ADMIT, // Handle now
+        DEFER, // Queued, handled when load drops
+        SHED   // Answered with OVERLOADED
+    }
+
+    public static final int DEFAULT_HIGH_SECURITY_LEVEL = 3;
+    public static final long DEFAULT_MAX_DEFER_MILLIS = 2000; // Less than the reader cooldown
+
+    private final int capacity; // In-progress requests before NORMAL is deferred
+    private final int lowLimit; // In-progress requests before LOW is shed
+    private final long maxDeferNanos; // Older deferred requests are shed instead of handled
+    private final AtomicInteger inFlight; // Admitted requests not yet answered
+    private final BlockingQueue<Deferred> deferredRequests;
+    private final Map<Resource.ResourceType, Lane> typeLanes;
+    private volatile Map<String, Integer> groupSecurityLevels; // Group name -> security level
+    private volatile int highSecurityLevel; // Groups at or above this level are HIGH
+
+    // Metrics, indexed by lane ordinal
+    private final LongAdder[] admitted;
+    private final LongAdder[] deferred;
+    private final LongAdder[] shed;
+
+    public AdmissionController(int capacity) {
+        this(capacity, Math.max(1, capacity / 2), capacity, DEFAULT_MAX_DEFER_MILLIS);
+    }
+
+    /**
+     * @param capacity In-progress requests before NORMAL requests are deferred
+     * @param lowLimit In-progress requests before LOW requests are shed
+     * @param deferCapacity Maximum number of deferred requests
+     * @param maxDeferMillis Maximum time a request may stay deferred
+     */
+    public AdmissionController(int capacity, int lowLimit, int deferCapacity, long maxDeferMillis) {
+        if (capacity <= 0 || lowLimit <= 0 || deferCapacity <= 0) {
+            throw new IllegalArgumentException("Capacity, low limit and defer capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.lowLimit = Math.min(lowLimit, capacity);
+        this.maxDeferNanos = TimeUnit.MILLISECONDS.toNanos(maxDeferMillis);
+        this.inFlight = new AtomicInteger();
+        this.deferredRequests = new ArrayBlockingQueue<>(deferCapacity);
+        this.typeLanes = new EnumMap<>(Resource.ResourceType.class);
+        for (Resource.ResourceType type : Resource.ResourceType.values()) {
+            typeLanes.put(type, Lane.NORMAL);
+        }
+        typeLanes.put(Resource.ResourceType.GATE, Lane.HIGH);
+        typeLanes.put(Resource.ResourceType.PRINTER, Lane.LOW);
+        typeLanes.put(Resource.ResourceType.BEVERAGE_DISPENSER, Lane.LOW);
+        this.groupSecurityLevels = Collections.emptyMap();
+        this.highSecurityLevel = DEFAULT_HIGH_SECURITY_LEVEL;
+        int lanes = Lane.values().length;
+        this.admitted = new LongAdder[lanes];
+        this.deferred = new LongAdder[lanes];
+        this.shed = new LongAdder[lanes];
+        for (int i = 0; i < lanes; i++) {
+            admitted[i] = new LongAdder();
+            deferred[i] = new LongAdder();
+            shed[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Deferred request and when it was deferred
+     */
+    private static final class Deferred {
+        private final AccessRequest request;
+        private final long since; // System.nanoTime()
+
+        Deferred(AccessRequest request, long since) {
+            this.request = request;
+            this.since = since;
+        }
+    }
+
+    /**
+     * Get lane of a request for a resource
+     * @param resource Resource, null if unknown
+     * @param groupNames Groups of the resource, null if none
+     */
+    public Lane classify(Resource resource, Set<String> groupNames) {
+        if (groupNames != null) {
+            Map<String, Integer> levels = groupSecurityLevels;
+            for (String groupName : groupNames) {
+                Integer level = levels.get(groupName);
+                if (level != null && level >= highSecurityLevel) {
+                    return Lane.HIGH;
+                }
+            }
+        }
+        if (resource == null || resource.getType() == null) {
+            return Lane.NORMAL;
+        }
+        synchronized (typeLanes) {
+            return typeLanes.get(resource.getType());
+        }
+    }
+
+    /**
+     * Decide whether a request is handled now, deferred or shed
+     * An admitted request must be followed by release() once it is answered
+     */
+    public Decision admit(AccessRequest request, Lane lane) {
+        switch (lane) {
+            case HIGH:
+                inFlight.incrementAndGet();
+                break;
+            case LOW:
+                if (!tryAcquire(lowLimit)) {
+                    shed[lane.ordinal()].increment();
+                    return Decision.SHED;
+                }
+                break;
+            default:
+                if (!tryAcquire(capacity)) {
+                    if (!deferredRequests.offer(new Deferred(request, System.nanoTime()))) {
+                        shed[lane.ordinal()].increment();
+                        return Decision.SHED;
+                    }
+                    deferred[lane.ordinal()].increment();
+                    return Decision.DEFER;
+                }
+                break;
+        }
+        admitted[lane.ordinal()].increment();
+        return Decision.ADMIT;
+    }
+
+    /**
+     * Mark an admitted request as answered
+     * @param shedHandler Receives deferred requests that waited too long
+     * @return A deferred request now admitted in its place, or null
+     */
+    public AccessRequest release(Consumer<AccessRequest> shedHandler) {
+        // Requests admitted before the controller was installed are not counted
+        inFlight.getAndUpdate(n -> n > 0 ? n - 1 : 0);
+        return resumeDeferred(shedHandler);
+    }
+
+    /**
+     * Admit the oldest deferred request if load has dropped below capacity
+     * Called after release() and after deferring, so a request deferred while the last
+     * in-progress request finished is not left waiting
+     * @param shedHandler Receives deferred requests that waited too long
+     * @return Request to handle now, or null
+     */
+    public AccessRequest resumeDeferred(Consumer<AccessRequest> shedHandler) {
+        while (!deferredRequests.isEmpty()) {
+            if (!tryAcquire(capacity)) {
+                return null;
+            }
+            Deferred next = deferredRequests.poll();
+            if (next == null) {
+                inFlight.decrementAndGet();
+                return null;
+            }
+            if (System.nanoTime() - next.since > maxDeferNanos) {
+                inFlight.decrementAndGet();
+                shed[Lane.NORMAL.ordinal()].increment();
+                shedHandler.accept(next.request);
+                continue;
+            }
+            admitted[Lane.NORMAL.ordinal()].increment();
+            return next.request;
+        }
+        return null;
+    }
+
+    private boolean tryAcquire(int limit) {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Set security level of each resource group (from the group definitions)
+     */
+    public void setGroupSecurityLevels(Map<String, Integer> levels) {
+        this.groupSecurityLevels = new HashMap<>(levels);
+    }
+
+    public void setHighSecurityLevel(int highSecurityLevel) {
+        this.highSecurityLevel = highSecurityLevel;
+    }
+
+    public int getHighSecurityLevel() {
+        return highSecurityLevel;
+    }
+
+    /**
+     * Set lane of a resource type (unless its group security level makes it HIGH)
+     */
+    public void setLane(Resource.ResourceType type, Lane lane) {
+        synchronized (typeLanes) {
+            typeLanes.put(type, lane);
+        }
+    }
+
+    public Lane getLane(Resource.ResourceType type) {
+        synchronized (typeLanes) {
+            return typeLanes.get(type);
+        }
+    }
+
+    // Metrics
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getLowLimit() {
+        return lowLimit;
+    }
+
+    /**
+     * Get number of admitted requests not yet answered
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Get number of requests currently deferred
+     */
+    public int getDeferredDepth() {
+        return deferredRequests.size();
+    }
+
+    public long getAdmittedCount(Lane lane) {
+        return admitted[lane.ordinal()].sum();
+    }
+
+    public long getDeferredCount(Lane lane) {
+        return deferred[lane.ordinal()].sum();
+    }
+
+    public long getShedCount(Lane lane) {
+        return shed[lane.ordinal()].sum();
+    }
+
+    /**
+     * Get number of shed requests over all lanes
+     */
+    public long getShedCount() {
+        long total = 0;
+        for (LongAdder counter : shed) {
+            total += counter.sum();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,99 @@
+// Group 2 ChenGong ZhangZhao LiangYiKuo
+package com.bigcomp.accesscontrol.core;
+
+import java.util.Collection;
+
+/**
+ * Badge Code Filter - Immutable Bloom filter over all valid badge codes
+ * mightContain() never says no for a known code, and says no for almost all unknown
+ * codes, so probing with random or cloned codes is rejected with a few bit tests
+ * instead of a map lookup. Codes added after the build go to a small overflow map
+ * until the filter is rebuilt; removed codes stay in the bits as false positives.
+ */
+public final class BadgeCodeFilter {
+    private static final int BITS_PER_CODE = 10; // About 1% false positives
+    private static final int HASH_COUNT = 7;
+
+    private final long[] bits;
+    private final int mask; // Bit count - 1 (bit count is a power of two)
+    private final PersistentMap<String, Boolean> added; // Codes added since the build, not in the bits
+
+    private BadgeCodeFilter(long[] bits, PersistentMap<String, Boolean> added) {
+        this.bits = bits;
+        this.mask = bits.length * 64 - 1;
+        this.added = added;
+    }
+
+    /**
+     * Build filter over the given badge codes
+     */
+    public static BadgeCodeFilter build(Collection<String> badgeCodes) {
+        int wanted = Math.max(64, badgeCodes.size() * BITS_PER_CODE);
+        int bitCount = Integer.highestOneBit(wanted - 1) << 1;
+        BadgeCodeFilter filter = new BadgeCodeFilter(new long[bitCount / 64], PersistentMap.empty());
+        for (String badgeCode : badgeCodes) {
+            filter.add(badgeCode);
+        }
+        return filter;
+    }
+
+    /**
+     * Get filter that also contains a badge code
+     * The code goes to the overflow map; once that holds an eighth of the codes the bits
+     * were sized for, the filter is rebuilt from all codes instead
+     * @param allBadgeCodes All valid badge codes, including the new one
+     */
+    public BadgeCodeFilter with(String badgeCode, Collection<String> allBadgeCodes) {
+        if (mightContain(badgeCode)) {
+            return this;
+        }
+        if (added.size() >= Math.max(16, getBitCount() / BITS_PER_CODE / 8)) {
+            return build(allBadgeCodes);
+        }
+        return new BadgeCodeFilter(bits, added.plus(badgeCode, Boolean.TRUE));
+    }
+
+    private void add(String badgeCode) {
+        int h1 = mix(badgeCode.hashCode());
+        int h2 = mix(h1) | 1;
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int bit = (h1 + i * h2) & mask;
+            bits[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Check if badge code may be valid
+     * @return false if the code is certainly unknown
+     */
+    public boolean mightContain(String badgeCode) {
+        if (badgeCode == null) {
+            return false;
+        }
+        int h1 = mix(badgeCode.hashCode()); // String caches its hash code
+        int h2 = mix(h1) | 1;
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int bit = (h1 + i * h2) & mask;
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                return added.size() != 0 && added.containsKey(badgeCode);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Spread hash bits (MurmurHash3 finalizer)
+     */
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    public int getBitCount() {
+        return bits.length * 64;
+    }
+}
@@ -0,0 +1,798 @@
+// Group 2 ChenGong ZhangZhao LiangYiKuo
+package com.bigcomp.accesscontrol.core;
+
+import com.bigcomp.accesscontrol.model.AccessResponse;
+import com.bigcomp.accesscontrol.model.OfflinePolicy;
+import com.bigcomp.accesscontrol.model.Resource;
+import com.bigcomp.accesscontrol.model.User;
+import com.bigcomp.accesscontrol.profile.CompiledTimeFilter;
+import com.bigcomp.accesscontrol.profile.Profile;
+import com.bigcomp.accesscontrol.profile.TimeFilter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compiled Policy - Immutable, array-based form of the ARP in-memory data
+ * Users, profiles, resource groups and resources get dense int IDs, and each
+ * profile's rights become a bitset over group IDs, so a grant check is a few
+ * array loads and one bitwise AND instead of a chain of string lookups.
+ * Users and resources live in paged lists and the indexes in persistent maps, so
+ * the with...() deltas copy only the entries, pages and map paths they change and
+ * user and resource IDs stay stable across them.
+ */
+public final class CompiledPolicy implements AccessResponse.MessageFormatter {
+    public static final int NONE = -1;
+    private static final int[] NO_IDS = new int[0];
+    private static final AtomicLong VERSIONS = new AtomicLong(); // Last version handed out
+
+    /**
+     * User Entry - One badge and the compiled rights of its user
+     */
+    private static final class UserEntry {
+        final String badgeCode;
+        final User user;
+        final long badgeExpiry; // Epoch second, Long.MIN_VALUE if revoked
+        final boolean badgeExpired; // Marked expired by the expiry sweep
+        final int[] profiles; // Profile IDs, in legacy evaluation order
+        final long[] rights; // Union of its profiles' group bitsets
+
+        UserEntry(String badgeCode, User user, long badgeExpiry, boolean badgeExpired, int[] profiles, long[] rights) {
+            this.badgeCode = badgeCode;
+            this.user = user;
+            this.badgeExpiry = badgeExpiry;
+            this.badgeExpired = badgeExpired;
+            this.profiles = profiles;
+            this.rights = rights;
+        }
+    }
+
+    /**
+     * Resource Entry - One resource and its group bitset
+     */
+    private static final class ResourceEntry {
+        final Resource resource;
+        final long[] groups; // All zero if ungrouped
+        final boolean grouped;
+        final boolean uncontrolled;
+
+        ResourceEntry(Resource resource, long[] groups) {
+            this.resource = resource;
+            this.groups = groups;
+            boolean any = false;
+            for (long word : groups) {
+                any |= word != 0;
+            }
+            this.grouped = any;
+            this.uncontrolled = resource.getState() == Resource.ResourceState.UNCONTROLLED;
+        }
+    }
+
+    private final long lineage; // Version of the compile this policy's IDs come from
+    private final long version; // Higher for later policies
+
+    // Rejects unknown badge codes before the map lookup
+    private final BadgeCodeFilter badgeCodeFilter;
+
+    // Badge code / resource ID -> dense ID (the only string hashing per request)
+    private final PersistentMap<String, Integer> userByBadgeCode;
+    private final PersistentMap<String, Integer> resourceIndex;
+    private final PersistentMap<String, int[]> badgesByUser; // User.getId() -> user IDs of its badges
+
+    // Users, one per badge (null once the badge is removed, IDs are not reused)
+    private final PagedList<UserEntry> users;
+
+    // Profiles (profiles referenced by users but missing from ProfileManager have null rights)
+    private final Map<String, Integer> profileIndex;
+    private final String[] profileNames;
+    private final long[][] profileRights; // Profile ID -> group bitset
+    private final TimeFilter[][] profileFilters; // Profile ID -> group ID -> time filter
+
+    // Resource groups, IDs in name order
+    private final Map<String, Integer> groupIndex;
+    private final String[] groupNames;
+
+    // Resources (null once removed, IDs are not reused)
+    private final PagedList<ResourceEntry> resources;
+
+    private CompiledPolicy(long lineage, BadgeCodeFilter badgeCodeFilter, PersistentMap<String, Integer> userByBadgeCode,
+                           PersistentMap<String, Integer> resourceIndex, PersistentMap<String, int[]> badgesByUser,
+                           PagedList<UserEntry> users, Map<String, Integer> profileIndex, String[] profileNames,
+                           long[][] profileRights, TimeFilter[][] profileFilters,
+                           Map<String, Integer> groupIndex, String[] groupNames, PagedList<ResourceEntry> resources) {
+        this.version = VERSIONS.incrementAndGet();
+        this.lineage = lineage != NONE ? lineage : version; // NONE: a full compile starts a lineage
+        this.badgeCodeFilter = badgeCodeFilter;
+        this.userByBadgeCode = userByBadgeCode;
+        this.resourceIndex = resourceIndex;
+        this.badgesByUser = badgesByUser;
+        this.users = users;
+        this.profileIndex = profileIndex;
+        this.profileNames = profileNames;
+        this.profileRights = profileRights;
+        this.profileFilters = profileFilters;
+        this.groupIndex = groupIndex;
+        this.groupNames = groupNames;
+        this.resources = resources;
+    }
+
+    /**
+     * Compile the in-memory maps loaded by the ARP into dense arrays
+     * @param usersByBadgeCode Badge code -> User
+     * @param badgeExpiries Badge code -> expiry epoch second, Long.MIN_VALUE if revoked
+     * @param expiredBadges Badge codes marked expired by the expiry sweep
+     * @param userProfiles User ID -> profile name set
+     * @param resources Resource ID -> Resource
+     * @param resourceGroups Resource ID -> group names
+     * @param profiles Profile name -> Profile
+     * @return Compiled policy
+     */
+    public static CompiledPolicy compile(Map<String, User> usersByBadgeCode,
+                                         Map<String, Long> badgeExpiries,
+                                         Set<String> expiredBadges,
+                                         Map<String, Set<String>> userProfiles,
+                                         Map<String, Resource> resources,
+                                         Map<String, Set<String>> resourceGroups,
+                                         Map<String, Profile> profiles) {
+        // 1. Assign group IDs (groups used by resources or referenced by profiles)
+        // in name order, so bitset order matches the sorted group sets of the map-based path
+        Set<String> allGroups = new TreeSet<>();
+        for (Set<String> names : resourceGroups.values()) {
+            allGroups.addAll(names);
+        }
+        for (Profile profile : profiles.values()) {
+            allGroups.addAll(profile.getAccessRights().keySet());
+        }
+        Map<String, Integer> groupIndex = new HashMap<>();
+        for (String groupName : allGroups) {
+            groupIndex.put(groupName, groupIndex.size());
+        }
+        String[] groupNames = allGroups.toArray(new String[0]);
+        int words = wordCount(groupNames.length);
+
+        // 2. Assign profile IDs (known profiles first, then names only referenced by users)
+        Map<String, Integer> profileIndex = new LinkedHashMap<>();
+        for (String profileName : profiles.keySet()) {
+            profileIndex.put(profileName, profileIndex.size());
+        }
+        for (Set<String> names : userProfiles.values()) {
+            for (String profileName : names) {
+                profileIndex.putIfAbsent(profileName, profileIndex.size());
+            }
+        }
+        String[] profileNames = profileIndex.keySet().toArray(new String[0]);
+        long[][] profileRights = new long[profileNames.length][];
+        TimeFilter[][] profileFilters = new TimeFilter[profileNames.length][];
+        for (int p = 0; p < profileNames.length; p++) {
+            Profile profile = profiles.get(profileNames[p]);
+            if (profile == null) {
+                continue;
+            }
+            long[] rights = new long[words];
+            TimeFilter[] filters = new TimeFilter[groupNames.length];
+            for (Map.Entry<String, TimeFilter> right : profile.getAccessRights().entrySet()) {
+                int g = groupIndex.get(right.getKey());
+                TimeFilter filter = right.getValue();
+                if (filter != null && filter.getCompiled() == null) {
+                    filter.compile();
+                }
+                rights[g >>> 6] |= 1L << g;
+                filters[g] = filter;
+            }
+            profileRights[p] = rights;
+            profileFilters[p] = filters;
+        }
+
+        // 3. Assign user IDs, keyed by badge code
+        Map<String, Integer> userByBadgeCode = new HashMap<>();
+        Map<String, List<Integer>> badgesByUser = new HashMap<>();
+        List<UserEntry> userEntries = new ArrayList<>(usersByBadgeCode.size());
+        for (Map.Entry<String, User> entry : usersByBadgeCode.entrySet()) {
+            String badgeCode = entry.getKey();
+            User user = entry.getValue();
+            int u = userEntries.size();
+            userByBadgeCode.put(badgeCode, u);
+            badgesByUser.computeIfAbsent(user.getId(), id -> new ArrayList<>(1)).add(u);
+
+            Set<String> names = userProfiles.get(user.getId());
+            int[] ids = new int[names != null ? names.size() : 0];
+            int i = 0;
+            if (names != null) {
+                for (String profileName : names) {
+                    ids[i++] = profileIndex.get(profileName);
+                }
+            }
+            userEntries.add(new UserEntry(badgeCode, user, badgeExpiries.getOrDefault(badgeCode, Long.MAX_VALUE),
+                expiredBadges.contains(badgeCode), ids, rightsOf(ids, profileRights, words)));
+        }
+        Map<String, int[]> badgeIds = new HashMap<>();
+        for (Map.Entry<String, List<Integer>> entry : badgesByUser.entrySet()) {
+            badgeIds.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+
+        // 4. Assign resource IDs
+        Map<String, Integer> resourceIndex = new HashMap<>();
+        List<ResourceEntry> resourceEntries = new ArrayList<>(resources.size());
+        for (Resource resource : resources.values()) {
+            resourceIndex.put(resource.getId(), resourceEntries.size());
+            long[] groups = new long[words];
+            Set<String> names = resourceGroups.get(resource.getId());
+            if (names != null) {
+                for (String groupName : names) {
+                    int g = groupIndex.get(groupName);
+                    groups[g >>> 6] |= 1L << g;
+                }
+            }
+            resourceEntries.add(new ResourceEntry(resource, groups));
+        }
+
+        return new CompiledPolicy(NONE, BadgeCodeFilter.build(usersByBadgeCode.keySet()),
+            PersistentMap.copyOf(userByBadgeCode), PersistentMap.copyOf(resourceIndex), PersistentMap.copyOf(badgeIds),
+            PagedList.of(userEntries), profileIndex, profileNames, profileRights, profileFilters,
+            groupIndex, groupNames, PagedList.of(resourceEntries));
+    }
+
+    /**
+     * Apply change of one user (see PolicySnapshot.withUser)
+     * Badges the user keeps keep their user IDs, removed badges leave their ID empty,
+     * new badges get new IDs; profile names not seen before get new profile IDs without rights
+     * @param badgeExpiries Badge code -> expiry of the new snapshot (all badges)
+     * @param expiredBadges Badge codes marked expired in the new snapshot
+     * @return Compiled policy sharing all other users, profiles and resources with this one
+     */
+    public CompiledPolicy withUser(String userId, Map<String, User> badgeUsers, Map<String, Long> badgeExpiries,
+                                   Set<String> profileNames, Set<String> expiredBadges) {
+        // Profile IDs of the user, adding names not seen before
+        Map<String, Integer> newProfileIndex = profileIndex;
+        int[] ids = new int[profileNames.size()];
+        int i = 0;
+        for (String profileName : profileNames) {
+            Integer p = newProfileIndex.get(profileName);
+            if (p == null) {
+                if (newProfileIndex == profileIndex) {
+                    newProfileIndex = new LinkedHashMap<>(profileIndex);
+                }
+                p = newProfileIndex.size();
+                newProfileIndex.put(profileName, p);
+            }
+            ids[i++] = p;
+        }
+        String[] newProfileNames = this.profileNames;
+        long[][] newProfileRights = profileRights;
+        TimeFilter[][] newProfileFilters = profileFilters;
+        if (newProfileIndex != profileIndex) {
+            // New names are only referenced by users, so they have no rights
+            newProfileNames = newProfileIndex.keySet().toArray(new String[0]);
+            newProfileRights = Arrays.copyOf(profileRights, newProfileNames.length);
+            newProfileFilters = Arrays.copyOf(profileFilters, newProfileNames.length);
+        }
+        long[] rights = rightsOf(ids, newProfileRights, wordCount(groupNames.length));
+
+        // Empty the IDs of badges the user no longer has
+        PagedList<UserEntry> newUsers = users;
+        PersistentMap<String, Integer> newUserByBadgeCode = userByBadgeCode;
+        PersistentMap<String, int[]> newBadgesByUser = badgesByUser;
+        for (int u : badgesByUser.getOrDefault(userId, NO_IDS)) {
+            String badgeCode = users.get(u).badgeCode;
+            if (!badgeUsers.containsKey(badgeCode)) {
+                newUsers = newUsers.set(u, null);
+                newUserByBadgeCode = newUserByBadgeCode.minus(badgeCode);
+            }
+        }
+
+        // Replace kept badges and badges taken over from another user, append new ones
+        int[] badgeIds = new int[badgeUsers.size()];
+        i = 0;
+        BadgeCodeFilter newFilter = badgeCodeFilter;
+        for (Map.Entry<String, User> entry : badgeUsers.entrySet()) {
+            String badgeCode = entry.getKey();
+            UserEntry user = new UserEntry(badgeCode, entry.getValue(),
+                badgeExpiries.getOrDefault(badgeCode, Long.MAX_VALUE), expiredBadges.contains(badgeCode), ids, rights);
+            Integer u = newUserByBadgeCode.get(badgeCode);
+            if (u == null) {
+                u = newUsers.size();
+                newUsers = newUsers.add(user);
+                newUserByBadgeCode = newUserByBadgeCode.plus(badgeCode, u);
+                newFilter = newFilter.with(badgeCode, newUserByBadgeCode.keySet());
+            } else {
+                String ownerId = newUsers.get(u).user.getId();
+                if (!ownerId.equals(userId)) {
+                    newBadgesByUser = withoutBadge(newBadgesByUser, ownerId, u);
+                }
+                newUsers = newUsers.set(u, user);
+            }
+            badgeIds[i++] = u;
+        }
+        newBadgesByUser = badgeIds.length == 0 ? newBadgesByUser.minus(userId) : newBadgesByUser.plus(userId, badgeIds);
+
+        return new CompiledPolicy(lineage, newFilter, newUserByBadgeCode, resourceIndex, newBadgesByUser, newUsers,
+            newProfileIndex, newProfileNames, newProfileRights, newProfileFilters, groupIndex, groupNames, resources);
+    }
+
+    /**
+     * Remove one user ID from a user's badge IDs
+     */
+    private static PersistentMap<String, int[]> withoutBadge(PersistentMap<String, int[]> badgesByUser,
+                                                             String userId, int badge) {
+        int[] ids = badgesByUser.getOrDefault(userId, NO_IDS);
+        int[] kept = Arrays.stream(ids).filter(id -> id != badge).toArray();
+        return kept.length == 0 ? badgesByUser.minus(userId) : badgesByUser.plus(userId, kept);
+    }
+
+    /**
+     * Apply change of one resource (see PolicySnapshot.withResource)
+     * The resource keeps its ID, a removed resource leaves its ID empty
+     * @return Compiled policy sharing all users and other resources with this one,
+     *         null if a group is new (group IDs follow name order, so that needs a full compile)
+     */
+    public CompiledPolicy withResource(String resourceId, Resource resource, Set<String> groupNames) {
+        Integer r = resourceIndex.get(resourceId);
+        PagedList<ResourceEntry> newResources;
+        PersistentMap<String, Integer> newResourceIndex = resourceIndex;
+        if (resource == null) {
+            if (r == null) {
+                return this;
+            }
+            newResources = resources.set(r, null);
+            newResourceIndex = resourceIndex.minus(resourceId);
+        } else {
+            long[] groups = new long[wordCount(this.groupNames.length)];
+            for (String groupName : groupNames) {
+                Integer g = groupIndex.get(groupName);
+                if (g == null) {
+                    return null;
+                }
+                groups[g >>> 6] |= 1L << g;
+            }
+            ResourceEntry entry = new ResourceEntry(resource, groups);
+            if (r == null) {
+                newResourceIndex = resourceIndex.plus(resourceId, resources.size());
+                newResources = resources.add(entry);
+            } else {
+                newResources = resources.set(r, entry);
+            }
+        }
+        return new CompiledPolicy(lineage, badgeCodeFilter, userByBadgeCode, newResourceIndex, badgesByUser, users,
+            profileIndex, profileNames, profileRights, profileFilters, groupIndex, this.groupNames, newResources);
+    }
+
+    /**
+     * Remove all resources from a group (see PolicySnapshot.withoutGroup)
+     * One bit test per resource; only the resources in the group are copied. The group keeps
+     * its ID, since profiles may still have it configured.
+     */
+    public CompiledPolicy withoutGroup(String groupName) {
+        Integer g = groupIndex.get(groupName);
+        if (g == null) {
+            return this;
+        }
+        int word = g >>> 6;
+        long bit = 1L << g;
+        PagedList<ResourceEntry> newResources = resources;
+        for (int r = 0; r < resources.size(); r++) {
+            ResourceEntry entry = resources.get(r);
+            if (entry != null && (entry.groups[word] & bit) != 0) {
+                long[] groups = entry.groups.clone();
+                groups[word] &= ~bit;
+                newResources = newResources.set(r, new ResourceEntry(entry.resource, groups));
+            }
+        }
+        return new CompiledPolicy(lineage, badgeCodeFilter, userByBadgeCode, resourceIndex, badgesByUser, users,
+            profileIndex, profileNames, profileRights, profileFilters, groupIndex, groupNames, newResources);
+    }
+
+    /**
+     * Mark badges expired (see PolicySnapshot.withExpiredBadges)
+     */
+    public CompiledPolicy withExpiredBadges(Collection<String> badgeCodes) {
+        PagedList<UserEntry> newUsers = users;
+        for (String badgeCode : badgeCodes) {
+            Integer u = userByBadgeCode.get(badgeCode);
+            if (u == null) {
+                continue;
+            }
+            UserEntry user = newUsers.get(u);
+            if (!user.badgeExpired) {
+                newUsers = newUsers.set(u, new UserEntry(user.badgeCode, user.user, user.badgeExpiry, true,
+                    user.profiles, user.rights));
+            }
+        }
+        return new CompiledPolicy(lineage, badgeCodeFilter, userByBadgeCode, resourceIndex, badgesByUser, newUsers,
+            profileIndex, profileNames, profileRights, profileFilters, groupIndex, groupNames, resources);
+    }
+
+    /**
+     * Union of the group bitsets of the given profiles
+     */
+    private static long[] rightsOf(int[] profiles, long[][] profileRights, int words) {
+        long[] union = new long[words];
+        for (int p : profiles) {
+            if (profileRights[p] != null) {
+                for (int w = 0; w < words; w++) {
+                    union[w] |= profileRights[p][w];
+                }
+            }
+        }
+        return union;
+    }
+
+    private static int wordCount(int bits) {
+        return (bits + 63) >>> 6;
+    }
+
+    /**
+     * Check if badge code may belong to a user (no map lookup)
+     * @return false if the badge code is certainly unknown
+     */
+    public boolean mightBeKnownBadge(String badgeCode) {
+        return badgeCodeFilter.mightContain(badgeCode);
+    }
+
+    /**
+     * Find user ID by badge code
+     * @return User ID, or NONE if the badge code is unknown
+     */
+    public int userOf(String badgeCode) {
+        Integer u = userByBadgeCode.get(badgeCode);
+        return u != null ? u : NONE;
+    }
+
+    /**
+     * Find resource ID by resource identifier
+     * @return Resource ID, or NONE if the resource does not exist
+     */
+    public int resourceOf(String resourceId) {
+        Integer r = resourceIndex.get(resourceId);
+        return r != null ? r : NONE;
+    }
+
+    /**
+     * Find profile ID by profile name
+     * @return Profile ID, or NONE if no user or profile has that name
+     */
+    public int profileOf(String profileName) {
+        Integer p = profileIndex.get(profileName);
+        return p != null ? p : NONE;
+    }
+
+    /**
+     * Find group ID by resource group name
+     * @return Group ID, or NONE if no resource or profile uses that group
+     */
+    public int groupOf(String groupName) {
+        Integer g = groupIndex.get(groupName);
+        return g != null ? g : NONE;
+    }
+
+    /**
+     * Check if user's badge has been revoked
+     */
+    public boolean isBadgeRevoked(int user) {
+        return users.get(user).badgeExpiry == Long.MIN_VALUE;
+    }
+
+    /**
+     * Check if user's badge is expired at the given time (primitive comparison only)
+     * @param epochSecond Time as epoch seconds (see AccessRequest.toEpochSecond)
+     */
+    public boolean isBadgeExpired(int user, long epochSecond) {
+        UserEntry entry = users.get(user);
+        return entry.badgeExpired || epochSecond > entry.badgeExpiry;
+    }
+
+    /**
+     * Get badge expiry of user as epoch second, Long.MIN_VALUE if revoked
+     */
+    public long getBadgeExpiry(int user) {
+        return users.get(user).badgeExpiry;
+    }
+
+    public boolean isUncontrolled(int resource) {
+        return resources.get(resource).uncontrolled;
+    }
+
+    /**
+     * Check if resource belongs to at least one group
+     */
+    public boolean isGrouped(int resource) {
+        return resources.get(resource).grouped;
+    }
+
+    /**
+     * Get first group ID of resource (lowest ID, i.e. first by name)
+     * @return Group ID, or NONE if resource does not belong to any group
+     */
+    public int firstGroupOf(int resource) {
+        return nextGroup(resources.get(resource).groups, 0);
+    }
+
+    /**
+     * Get profile IDs of user, in the order the legacy path evaluates them
+     */
+    public int[] profilesOf(int user) {
+        return users.get(user).profiles;
+    }
+
+    /**
+     * Check if any profile of the user has any group of the resource configured
+     * (bitset intersection, one AND per 64 groups)
+     */
+    public boolean userMayAccess(int user, int resource) {
+        long[] rights = users.get(user).rights;
+        long[] groups = resources.get(resource).groups;
+        for (int w = 0; w < groups.length; w++) {
+            if ((rights[w] & groups[w]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Find next group ID, starting at the given one, that the profile has configured
+     * and the resource belongs to
+     * @return Group ID, or NONE if there is none
+     */
+    public int nextSharedGroup(int profile, int resource, int fromGroup) {
+        long[] rights = profileRights[profile];
+        if (rights == null) {
+            return NONE;
+        }
+        long[] groups = resources.get(resource).groups;
+        for (int w = fromGroup >>> 6; w < groups.length; w++) {
+            long shared = rights[w] & groups[w];
+            if (w == fromGroup >>> 6) {
+                shared &= -1L << fromGroup;
+            }
+            if (shared != 0) {
+                return (w << 6) + Long.numberOfTrailingZeros(shared);
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Find last group ID that the profile has configured and the resource belongs to
+     * @return Group ID, or NONE if there is none
+     */
+    public int lastSharedGroup(int profile, int resource) {
+        long[] rights = profileRights[profile];
+        if (rights == null) {
+            return NONE;
+        }
+        long[] groups = resources.get(resource).groups;
+        for (int w = groups.length - 1; w >= 0; w--) {
+            long shared = rights[w] & groups[w];
+            if (shared != 0) {
+                return (w << 6) + 63 - Long.numberOfLeadingZeros(shared);
+            }
+        }
+        return NONE;
+    }
+
+    private static int nextGroup(long[] bitset, int fromGroup) {
+        for (int w = fromGroup >>> 6; w < bitset.length; w++) {
+            long bits = bitset[w];
+            if (w == fromGroup >>> 6) {
+                bits &= -1L << fromGroup;
+            }
+            if (bits != 0) {
+                return (w << 6) + Long.numberOfTrailingZeros(bits);
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Check if profile exists in ProfileManager
+     */
+    public boolean profileExists(int profile) {
+        return profileRights[profile] != null;
+    }
+
+    /**
+     * Check if profile has the group configured
+     */
+    public boolean hasRight(int profile, int group) {
+        long[] rights = profileRights[profile];
+        return rights != null && (rights[group >>> 6] & (1L << group)) != 0;
+    }
+
+    /**
+     * Get time filter of a profile's access right, null if not configured
+     */
+    public TimeFilter filterOf(int profile, int group) {
+        TimeFilter[] filters = profileFilters[profile];
+        return filters != null ? filters[group] : null;
+    }
+
+    /**
+     * Build the offline policy of a resource: every badge that is neither revoked nor marked
+     * expired and whose profiles share a group with the resource, with the time filters of
+     * those shared groups (the filters processRequest would try); at an uncontrolled resource,
+     * every badge that is neither revoked nor marked expired
+     * @param builtAt Epoch millisecond stamped on the policy
+     * @return Offline policy, allowing nobody if the resource does not exist
+     */
+    public OfflinePolicy offlinePolicyOf(String resourceId, long builtAt) {
+        int resource = resourceOf(resourceId);
+        if (resource == NONE) {
+            return new OfflinePolicy(resourceId, builtAt, false, new String[0], new long[0], new int[0],
+                new CompiledTimeFilter[0][]);
+        }
+        boolean uncontrolled = resources.get(resource).uncontrolled;
+        Map<String, Integer> allowed = new TreeMap<>(); // Badge code -> window index
+        Map<List<CompiledTimeFilter>, Integer> windowIndex = new HashMap<>();
+        List<CompiledTimeFilter[]> windows = new ArrayList<>();
+        if (uncontrolled) {
+            windows.add(new CompiledTimeFilter[0]); // Every valid badge, no filters
+        }
+        for (int user = 0; user < users.size(); user++) {
+            UserEntry entry = users.get(user);
+            if (entry == null || entry.badgeExpiry == Long.MIN_VALUE || entry.badgeExpired) {
+                continue;
+            }
+            if (uncontrolled) {
+                allowed.put(entry.badgeCode, 0);
+                continue;
+            }
+            if (!userMayAccess(user, resource)) {
+                continue;
+            }
+            List<CompiledTimeFilter> filters = new ArrayList<>();
+            for (int profile : entry.profiles) {
+                for (int group = nextSharedGroup(profile, resource, 0); group != NONE;
+                     group = nextSharedGroup(profile, resource, group + 1)) {
+                    TimeFilter filter = filterOf(profile, group);
+                    if (filter == null) {
+                        continue;
+                    }
+                    CompiledTimeFilter compiled = filter.getCompiled();
+                    if (compiled == null) {
+                        compiled = filter.compile();
+                    }
+                    if (!filters.contains(compiled)) {
+                        filters.add(compiled);
+                    }
+                }
+            }
+            if (filters.isEmpty()) {
+                continue;
+            }
+            Integer window = windowIndex.get(filters);
+            if (window == null) {
+                window = windows.size();
+                windowIndex.put(filters, window);
+                windows.add(filters.toArray(new CompiledTimeFilter[0]));
+            }
+            allowed.put(entry.badgeCode, window);
+        }
+
+        String[] badgeCodes = new String[allowed.size()];
+        long[] expiry = new long[badgeCodes.length];
+        int[] windowOf = new int[badgeCodes.length];
+        int i = 0;
+        for (Map.Entry<String, Integer> entry : allowed.entrySet()) {
+            badgeCodes[i] = entry.getKey();
+            expiry[i] = users.get(userByBadgeCode.get(entry.getKey())).badgeExpiry;
+            windowOf[i] = entry.getValue();
+            i++;
+        }
+        return new OfflinePolicy(resourceId, builtAt, uncontrolled, badgeCodes, expiry, windowOf,
+            windows.toArray(new CompiledTimeFilter[0][]));
+    }
+
+    /**
+     * Format deny message from reason code arguments (profile ID, group ID, week minute)
+     * Called lazily, only when the GUI or log asks for the message
+     */
+    @Override
+    public String format(AccessResponse.ReasonCode reasonCode, int profile, int group, int weekMinute) {
+        switch (reasonCode) {
+            case PROFILE_NOT_FOUND:
+                return "Profile does not exist: " + profileNames[profile];
+            case GROUP_NOT_IN_PROFILE:
+                return "Profile \"" + profileNames[profile] + "\" does not have resource group \""
+                    + groupNames[group] + "\" configured";
+            case DAY_EXCLUDED:
+            case DAY_NOT_ALLOWED:
+            case TIME_EXCLUDED:
+            case TIME_NOT_ALLOWED:
+                return DenyReasons.describe(reasonCode, filterOf(profile, group),
+                    DenyReasons.dayOf(weekMinute), DenyReasons.minuteOf(weekMinute));
+            default:
+                return reasonCode.getDefaultMessage();
+        }
+    }
+
+    /**
+     * Get user of a user ID, null if its badge was removed
+     */
+    public User getUser(int user) {
+        UserEntry entry = users.get(user);
+        return entry != null ? entry.user : null;
+    }
+
+    /**
+     * Get resource of a resource ID, null if it was removed
+     */
+    public Resource getResource(int resource) {
+        ResourceEntry entry = resources.get(resource);
+        return entry != null ? entry.resource : null;
+    }
+
+    /**
+     * Get badge code of a user ID, null if the badge was removed
+     */
+    public String getBadgeCode(int user) {
+        UserEntry entry = users.get(user);
+        return entry != null ? entry.badgeCode : null;
+    }
+
+    /**
+     * Get lineage: policies of one lineage come from one compile and its deltas, so their
+     * user and resource IDs mean the same (a later compile starts a higher lineage)
+     */
+    public long getLineage() {
+        return lineage;
+    }
+
+    /**
+     * Get version, higher for policies compiled or derived later
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Get badge codes of a user
+     * @param userId User.getId()
+     */
+    public Set<String> badgeCodesOf(String userId) {
+        Set<String> badgeCodes = new HashSet<>();
+        for (int user : badgesByUser.getOrDefault(userId, NO_IDS)) {
+            badgeCodes.add(users.get(user).badgeCode);
+        }
+        return badgeCodes;
+    }
+
+    public String getProfileName(int profile) {
+        return profileNames[profile];
+    }
+
+    public String getGroupName(int group) {
+        return groupNames[group];
+    }
+
+    /**
+     * Get number of user IDs, including those of removed badges
+     */
+    public int getUserCount() {
+        return users.size();
+    }
+
+    public int getProfileCount() {
+        return profileNames.length;
+    }
+
+    public int getGroupCount() {
+        return groupNames.length;
+    }
+
+    /**
+     * Get number of resource IDs, including those of removed resources
+     */
+    public int getResourceCount() {
+        return resources.size();
+    }
+}
@@ -0,0 +1,294 @@
+// Group 2 ChenGong ZhangZhao LiangYiKuo
+package com.bigcomp.accesscontrol.core;
+
+import com.bigcomp.accesscontrol.model.AccessRequest;
+import com.bigcomp.accesscontrol.model.AccessResponse;
+import com.bigcomp.accesscontrol.model.AccessResponse.ReasonCode;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decision Cache - Bounded cache of ARP decisions keyed by (badge code, resource ID)
+ * Each entry is valid for the time bucket in which none of the user's time filters for
+ * the resource group change their answer, so a repeated swipe inside that bucket skips
+ * the policy evaluation. Entries are dropped precisely when the badge's user or the
+ * resource changes; a full reload clears everything.
+ */
+public class DecisionCache {
+    public static final int DEFAULT_MAX_ENTRIES = 65536;
+    private static final long UNBOUNDED = Long.MAX_VALUE; // Decision does not depend on time
+
+    private final int maxEntries;
+    private final ConcurrentHashMap<Key, Entry> entries;
+    private final AtomicLong generation; // Bumped by every invalidation
+    private final AtomicBoolean evicting; // Only one thread evicts at a time
+
+    // Statistics
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+    private final LongAdder invalidations;
+
+    public DecisionCache(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.entries = new ConcurrentHashMap<>(Math.min(maxEntries, DEFAULT_MAX_ENTRIES));
+        this.generation = new AtomicLong();
+        this.evicting = new AtomicBoolean();
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+        this.invalidations = new LongAdder();
+    }
+
+    /**
+     * Cache key - Badge code and resource ID
+     */
+    private static final class Key {
+        private final String badgeCode;
+        private final String resourceId;
+        private final int hash;
+
+        Key(String badgeCode, String resourceId) {
+            this.badgeCode = badgeCode;
+            this.resourceId = resourceId;
+            this.hash = 31 * badgeCode.hashCode() + resourceId.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash && badgeCode.equals(other.badgeCode) && resourceId.equals(other.resourceId);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Cached decision and the time bucket (epoch minutes, end exclusive) it is valid for
+     */
+    private static final class Entry {
+        private final boolean granted;
+        private final ReasonCode reasonCode;
+        private final int arg0;
+        private final int arg1;
+        private final AccessResponse.MessageFormatter formatter;
+        private final long fromMinute;
+        private final long untilMinute;
+
+        Entry(AccessResponse response, AccessResponse.MessageFormatter formatter, long fromMinute, long untilMinute) {
+            this.granted = response.isGranted();
+            this.reasonCode = response.getReasonCode();
+            this.arg0 = response.getReasonArg(0);
+            this.arg1 = response.getReasonArg(1);
+            this.formatter = formatter;
+            this.fromMinute = fromMinute;
+            this.untilMinute = untilMinute;
+        }
+
+        boolean covers(long minute) {
+            return minute >= fromMinute && minute < untilMinute;
+        }
+    }
+
+    /**
+     * Look up decision for a request
+     * @return New response for the request's reader, or null on a miss
+     */
+    public AccessResponse get(AccessRequest request) {
+        if (request.getBadgeCode() == null || request.getResourceId() == null) {
+            return null;
+        }
+        LocalDateTime time = request.getTimestamp();
+        Entry entry = entries.get(new Key(request.getBadgeCode(), request.getResourceId()));
+        if (entry == null || !entry.covers(epochMinute(time))) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        // Time filter reasons carry the request's week minute, refresh it for this request
+        int arg2 = hasTimeArgument(entry.reasonCode)
+            ? DenyReasons.weekMinute(time.getDayOfWeek(), time.getHour() * 60 + time.getMinute())
+            : 0;
+        return new AccessResponse(request.getBadgeReaderId(), entry.granted, entry.reasonCode,
+            entry.arg0, entry.arg1, arg2, entry.formatter);
+    }
+
+    /**
+     * Store decision for a request
+     * @param request Request the decision was made for
+     * @param response Decision
+     * @param formatter Formatter of the policy that made the decision
+     * @param stableMinutes Minutes from the request time during which the decision holds,
+     *                      Integer.MAX_VALUE if it does not depend on time
+     * @param startGeneration getGeneration() read before the snapshot the decision was made on;
+     *                        the entry is discarded if an invalidation happened since
+     */
+    public void put(AccessRequest request, AccessResponse response, AccessResponse.MessageFormatter formatter,
+                    int stableMinutes, long startGeneration) {
+        if (request.getBadgeCode() == null || request.getResourceId() == null
+                || response.getReasonCode() == ReasonCode.OTHER) {
+            return; // Free-text messages are not reproducible from a reason code
+        }
+        if (response.getReasonCode() == ReasonCode.USER_NOT_FOUND) {
+            return; // Unknown codes are rejected by the badge code filter; probing must not flood the cache
+        }
+        if (entries.size() >= maxEntries) {
+            evict(epochMinute(request.getTimestamp()));
+        }
+        long from = epochMinute(request.getTimestamp());
+        long until = stableMinutes == Integer.MAX_VALUE ? UNBOUNDED : from + stableMinutes;
+        Key key = new Key(request.getBadgeCode(), request.getResourceId());
+        Entry entry = new Entry(response, formatter, from, until);
+        entries.put(key, entry);
+        // An invalidation may have run while the decision was made; it either removed
+        // this entry already or started after this check, so drop it ourselves
+        if (generation.get() != startGeneration) {
+            entries.remove(key, entry);
+        }
+    }
+
+    /**
+     * Get current generation, read before resolving the snapshot a decision is made on
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Drop all decisions for the given badge codes
+     */
+    public void invalidateBadges(Collection<String> badgeCodes) {
+        if (badgeCodes.isEmpty()) {
+            return;
+        }
+        generation.incrementAndGet();
+        entries.keySet().removeIf(key -> {
+            if (badgeCodes.contains(key.badgeCode)) {
+                invalidations.increment();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Drop all decisions for the given resource IDs
+     */
+    public void invalidateResources(Collection<String> resourceIds) {
+        if (resourceIds.isEmpty()) {
+            return;
+        }
+        generation.incrementAndGet();
+        entries.keySet().removeIf(key -> {
+            if (resourceIds.contains(key.resourceId)) {
+                invalidations.increment();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Drop all decisions
+     */
+    public void clear() {
+        generation.incrementAndGet();
+        invalidations.add(entries.size());
+        entries.clear();
+    }
+
+    /**
+     * Make room: drop expired entries first, then arbitrary ones until 7/8 full
+     */
+    private void evict(long nowMinute) {
+        if (!evicting.compareAndSet(false, true)) {
+            return; // Another thread is already evicting
+        }
+        try {
+            int target = maxEntries - Math.max(1, maxEntries / 8);
+            for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+                if (it.next().untilMinute <= nowMinute) {
+                    it.remove();
+                    evictions.increment();
+                }
+            }
+            for (Iterator<Entry> it = entries.values().iterator(); it.hasNext() && entries.size() > target; ) {
+                it.next();
+                it.remove();
+                evictions.increment();
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private static boolean hasTimeArgument(ReasonCode reasonCode) {
+        switch (reasonCode) {
+            case DAY_EXCLUDED:
+            case DAY_NOT_ALLOWED:
+            case TIME_EXCLUDED:
+            case TIME_NOT_ALLOWED:
+            case TIME_FILTER:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static long epochMinute(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    // Statistics
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    public int getSize() {
+        return entries.size();
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Get hit rate in [0, 1], 0 if nothing was looked up yet
+     */
+    public double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+}
@@ -0,0 +1,110 @@
+// Group 2 ChenGong ZhangZhao LiangYiKuo
+package com.bigcomp.accesscontrol.core;
+
+import com.bigcomp.accesscontrol.model.AccessResponse.ReasonCode;
+import com.bigcomp.accesscontrol.profile.TimeFilter;
+
+import java.time.DayOfWeek;
+import java.util.List;
+
+/**
+ * Deny Reasons - Classifies time filter denials into reason codes (no allocation)
+ * and turns them into the detailed text shown in the GUI and logs (only on demand)
+ */
+final class DenyReasons {
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    private DenyReasons() {
+    }
+
+    /**
+     * Pack day of week and minute of day into one int argument
+     */
+    static int weekMinute(DayOfWeek day, int minuteOfDay) {
+        return day.ordinal() * MINUTES_PER_DAY + minuteOfDay;
+    }
+
+    static DayOfWeek dayOf(int weekMinute) {
+        return DayOfWeek.of(weekMinute / MINUTES_PER_DAY + 1);
+    }
+
+    static int minuteOf(int weekMinute) {
+        return weekMinute % MINUTES_PER_DAY;
+    }
+
+    /**
+     * Find which time filter rule denied access
+     * Checks the same rules in the same order as the detailed text
+     * @param filter Time filter of the access right, null if none is configured
+     */
+    static ReasonCode classify(TimeFilter filter, DayOfWeek day, int minuteOfDay) {
+        if (filter == null) {
+            return ReasonCode.TIME_FILTER; // No filter allows nothing
+        }
+
+        // Check day of week
+        if (filter.getDaysOfWeek() != null && !filter.getDaysOfWeek().isEmpty()) {
+            boolean weekMatch = filter.getDaysOfWeek().contains(day);
+            if (filter.isExcludeDaysOfWeek()) {
+                if (weekMatch) {
+                    return ReasonCode.DAY_EXCLUDED;
+                }
+            } else if (!weekMatch) {
+                return ReasonCode.DAY_NOT_ALLOWED;
+            }
+        }
+
+        // Check time range
+        List<TimeFilter.TimeRange> ranges = filter.getTimeRanges();
+        if (ranges != null && !ranges.isEmpty()) {
+            boolean inRange = false;
+            for (int i = 0; i < ranges.size(); i++) {
+                if (ranges.get(i).contains(minuteOfDay)) {
+                    inRange = true;
+                    break;
+                }
+            }
+            if (filter.isExcludeTimeRanges()) {
+                if (inRange) {
+                    return ReasonCode.TIME_EXCLUDED;
+                }
+            } else if (!inRange) {
+                return ReasonCode.TIME_NOT_ALLOWED;
+            }
+        }
+
+        return ReasonCode.TIME_FILTER;
+    }
+
+    /**
+     * Build detailed text for a time filter denial
+     */
+    static String describe(ReasonCode reasonCode, TimeFilter filter, DayOfWeek day, int minuteOfDay) {
+        switch (reasonCode) {
+            case DAY_EXCLUDED:
+                return "Day " + day + " is in exclusion list";
+            case DAY_NOT_ALLOWED:
+                return "Day " + day + " is not in allowed list (allowed: " + filter.getDaysOfWeek() + ")";
+            case TIME_EXCLUDED:
+                return "Time " + formatMinutes(minuteOfDay) + " is in exclusion range";
+            case TIME_NOT_ALLOWED:
+                // Show allowed time ranges
+                StringBuilder allowedRanges = new StringBuilder();
+                for (TimeFilter.TimeRange range : filter.getTimeRanges()) {
+                    if (allowedRanges.length() > 0) {
+                        allowedRanges.append(", ");
+                    }
+                    allowedRanges.append(formatMinutes(range.getStartMinutes()))
+                                 .append('-').append(formatMinutes(range.getEndMinutes()));
+                }
+                return "Time " + formatMinutes(minuteOfDay) + " is not in allowed range (allowed: "
+                    + allowedRanges + ")";
+            default:
+                return reasonCode.getDefaultMessage();
+        }
+    }
+
+    private static String formatMinutes(int minutes) {
+        return String.format("%02d:%02d", minutes / 60, minutes % 60);
+    }
+}
@@ -0,0 +1,192 @@
+// Group 2 ChenGong ZhangZhao LiangYiKuo
+package com.bigcomp.accesscontrol.core;
+
+import com.bigcomp.accesscontrol.model.AccessRequest;
+import com.bigcomp.accesscontrol.model.Resource;
+import com.bigcomp.accesscontrol.util.LatencyHistogram;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Latency Monitor - Per-stage latency of the swipe pipeline
+ * Each stage is recorded in one histogram overall, one per badge reader and one per
+ * resource type. A Target resolves the three once per request, so recording a stage
+ * costs three lock-free histogram updates.
+ */
+public class LatencyMonitor {
+    /**
+     * Stage - Part of the way from swipe to response
+     */
+    public enum Stage {
+        ROUTING,           // Swipe to start of decision (coalescing, admission, reader queue)
+        PROCESSING,        // AccessRequestProcessor.processRequest
+        LISTENER_DISPATCH, // Event published to access event listener called
+        LOGGING,           // Writing the access log entry
+        RESPONSE_DELIVERY, // BadgeReader.handleAccessResponse
+        TOTAL              // Swipe to response delivered
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+    private static final Resource.ResourceType[] TYPES = Resource.ResourceType.values();
+
+    private final Function<String, Resource.ResourceType> resourceTypes; // Resource ID -> type, null if unknown
+    private final LatencyHistogram[] overall;
+    private final Map<String, LatencyHistogram[]> byReader;
+    private final LatencyHistogram[][] byResourceType; // [type ordinal][stage ordinal]
+    private volatile boolean enabled;
+
+    public LatencyMonitor(Function<String, Resource.ResourceType> resourceTypes) {
+        this.resourceTypes = resourceTypes;
+        this.overall = newStageHistograms();
+        this.byReader = new ConcurrentHashMap<>();
+        this.byResourceType = new LatencyHistogram[TYPES.length][];
+        for (int i = 0; i < TYPES.length; i++) {
+            byResourceType[i] = newStageHistograms();
+        }
+        this.enabled = true;
+    }
+
+    private static LatencyHistogram[] newStageHistograms() {
+        LatencyHistogram[] histograms = new LatencyHistogram[STAGES.length];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        return histograms;
+    }
+
+    /**
+     * Target - Histograms a request's stages are recorded in
+     */
+    public final class Target {
+        private final LatencyHistogram[] reader; // Null if the request has no reader
+        private final LatencyHistogram[] type; // Null if the resource is unknown
+
+        private Target(LatencyHistogram[] reader, LatencyHistogram[] type) {
+            this.reader = reader;
+            this.type = type;
+        }
+
+        /**
+         * Record how long a stage took
+         */
+        public void record(Stage stage, long nanos) {
+            if (!enabled) {
+                return;
+            }
+            int index = stage.ordinal();
+            overall[index].record(nanos);
+            if (reader != null) {
+                reader[index].record(nanos);
+            }
+            if (type != null) {
+                type[index].record(nanos);
+            }
+        }
+
+        /**
+         * Record a stage that started at the given System.nanoTime() and ends now
+         * @return Current System.nanoTime(), the start of the next stage
+         */
+        public long recordSince(Stage stage, long startNanos) {
+            long now = System.nanoTime();
+            record(stage, now - startNanos);
+            return now;
+        }
+    }
+
+    /**
+     * Resolve the histograms of a request (reader and resource type)
+     */
+    public Target targetOf(AccessRequest request) {
+        LatencyHistogram[] reader = null;
+        String readerId = request.getBadgeReaderId();
+        if (readerId != null) {
+            reader = byReader.get(readerId);
+            if (reader == null) {
+                reader = byReader.computeIfAbsent(readerId, id -> newStageHistograms());
+            }
+        }
+        String resourceId = request.getResourceId();
+        Resource.ResourceType type = resourceId != null ? resourceTypes.apply(resourceId) : null;
+        return new Target(reader, type != null ? byResourceType[type.ordinal()] : null);
+    }
+
+    /**
+     * Record a stage that started at the given System.nanoTime() and ends now
+     * @return Current System.nanoTime()
+     */
+    public long recordSince(Stage stage, AccessRequest request, long startNanos) {
+        return targetOf(request).recordSince(stage, startNanos);
+    }
+
+    public LatencyHistogram getHistogram(Stage stage) {
+        return overall[stage.ordinal()];
+    }
+
+    /**
+     * Get histogram of a stage for one reader, null if the reader has no recorded requests
+     */
+    public LatencyHistogram getReaderHistogram(String readerId, Stage stage) {
+        LatencyHistogram[] reader = byReader.get(readerId);
+        return reader != null ? reader[stage.ordinal()] : null;
+    }
+
+    public LatencyHistogram getResourceTypeHistogram(Resource.ResourceType type, Stage stage) {
+        return byResourceType[type.ordinal()][stage.ordinal()];
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Clear all histograms
+     */
+    public void reset() {
+        for (LatencyHistogram histogram : overall) {
+            histogram.reset();
+        }
+        byReader.clear();
+        for (LatencyHistogram[] histograms : byResourceType) {
+            for (LatencyHistogram histogram : histograms) {
+                histogram.reset();
+            }
+        }
+    }
+
+    /**
+     * Build text report: p50/p99/p99.9/max of each stage overall, per resource type and per reader
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder("Swipe pipeline latency\n");
+        appendStages(sb, "All", overall);
+        for (Resource.ResourceType type : TYPES) {
+            appendStages(sb, "Type " + type, byResourceType[type.ordinal()]);
+        }
+        for (Map.Entry<String, LatencyHistogram[]> entry : new TreeMap<>(byReader).entrySet()) {
+            appendStages(sb, "Reader " + entry.getKey(), entry.getValue());
+        }
+        return sb.toString();
+    }
+
+    private static void appendStages(StringBuilder sb, String title, LatencyHistogram[] histograms) {
+        boolean titled = false;
+        for (Stage stage : STAGES) {
+            LatencyHistogram histogram = histograms[stage.ordinal()];
+            if (histogram.getCount() > 0) {
+                if (!titled) {
+                    sb.append(title).append('\n');
+                    titled = true;
+                }
+                sb.append(String.format("  %-18s %s%n", stage, histogram.summary()));
+            }
+        }
+    }
+}
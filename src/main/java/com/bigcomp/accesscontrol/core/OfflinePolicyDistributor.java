@@ -0,0 +1,135 @@
+// Group 2 ChenGong ZhangZhao LiangYiKuo
+package com.bigcomp.accesscontrol.core;
+
+import com.bigcomp.accesscontrol.model.BadgeReader;
+import com.bigcomp.accesscontrol.model.OfflinePolicy;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Offline Policy Distributor - Keeps the offline policy of every registered badge reader current
+ * Listens for ARP snapshot changes and, after a short delay that merges bursts of changes,
+ * computes one OfflinePolicy per resource on its own thread and pushes it to the readers
+ * of that resource.
+ */
+public class OfflinePolicyDistributor implements PropertyChangeListener {
+    public static final long DEFAULT_DELAY_MILLIS = 200;
+
+    private final AccessRequestProcessor arp;
+    private final Map<String, BadgeReader> readers; // Reader ID -> reader (Router registry)
+    private final long delayMillis;
+    private final ScheduledExecutorService executor;
+    private final AtomicBoolean pending; // A push of all readers is scheduled
+    private final LongAdder pushCount; // Policies pushed to readers
+    private final LongAdder compileCount; // Policies computed
+
+    public OfflinePolicyDistributor(AccessRequestProcessor arp, Map<String, BadgeReader> readers, long delayMillis) {
+        this.arp = arp;
+        this.readers = readers;
+        this.delayMillis = delayMillis;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "offline-policy-push");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pending = new AtomicBoolean();
+        this.pushCount = new LongAdder();
+        this.compileCount = new LongAdder();
+    }
+
+    /**
+     * Push policies to all registered readers now and after every snapshot change
+     */
+    public void start() {
+        arp.addPropertyChangeListener(this);
+        schedulePushAll(0);
+    }
+
+    /**
+     * Stop pushing (readers keep the policies they have)
+     */
+    public void stop() {
+        arp.removePropertyChangeListener(this);
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void propertyChange(PropertyChangeEvent evt) {
+        if ("snapshot".equals(evt.getPropertyName())) {
+            schedulePushAll(delayMillis);
+        }
+    }
+
+    private void schedulePushAll(long delay) {
+        if (pending.compareAndSet(false, true)) {
+            try {
+                executor.schedule(this::pushAll, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                pending.set(false); // Stopped
+            }
+        }
+    }
+
+    /**
+     * Push policy to one reader (e.g. just registered), from the distributor thread
+     */
+    public void pushTo(BadgeReader reader) {
+        try {
+            executor.execute(() -> push(reader, new HashMap<>(), System.currentTimeMillis()));
+        } catch (RejectedExecutionException e) {
+            // Stopped
+        }
+    }
+
+    /**
+     * Compute policies from the current snapshot and push them to all readers
+     */
+    private void pushAll() {
+        pending.set(false); // Changes from now on schedule another push
+        Map<String, OfflinePolicy> byResource = new HashMap<>();
+        long builtAt = System.currentTimeMillis();
+        try {
+            for (BadgeReader reader : readers.values()) {
+                push(reader, byResource, builtAt);
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Failed to push offline policies: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Push policy of the reader's resource, computing it unless another reader of the
+     * same resource already has
+     */
+    private void push(BadgeReader reader, Map<String, OfflinePolicy> byResource, long builtAt) {
+        String resourceId = reader.getResourceId();
+        if (resourceId == null) {
+            return;
+        }
+        OfflinePolicy policy = byResource.get(resourceId);
+        if (policy == null) {
+            policy = arp.getSnapshot().getCompiledPolicy().offlinePolicyOf(resourceId, builtAt);
+            byResource.put(resourceId, policy);
+            compileCount.increment();
+        }
+        reader.setOfflinePolicy(policy);
+        pushCount.increment();
+    }
+
+    public long getPushCount() {
+        return pushCount.sum();
+    }
+
+    public long getCompileCount() {
+        return compileCount.sum();
+    }
+}
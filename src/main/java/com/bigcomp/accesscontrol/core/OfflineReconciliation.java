@@ -0,0 +1,75 @@
+// Group 2 ChenGong ZhangZhao LiangYiKuo
+package com.bigcomp.accesscontrol.core;
+
+import com.bigcomp.accesscontrol.model.OfflineDecision;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Offline Reconciliation - Result of comparing a reader's offline decisions with the ARP
+ * Each offline decision is logged as it was applied at the resource; decisions the ARP
+ * would have made differently (with the current policy, at the swipe time) are listed.
+ */
+public class OfflineReconciliation {
+    private final String readerId;
+    private final long droppedCount; // Decisions the reader could not keep
+    private int total;
+    private int agreedCount;
+    private final List<OfflineDecision> wronglyGranted; // Granted offline, ARP denies
+    private final List<OfflineDecision> wronglyDenied; // Denied offline, ARP grants
+
+    public OfflineReconciliation(String readerId, long droppedCount) {
+        this.readerId = readerId;
+        this.droppedCount = droppedCount;
+        this.wronglyGranted = new ArrayList<>();
+        this.wronglyDenied = new ArrayList<>();
+    }
+
+    /**
+     * Add an offline decision and whether the ARP grants the same request
+     */
+    void add(OfflineDecision decision, boolean centralGranted) {
+        total++;
+        boolean offlineGranted = decision.getResponse().isGranted();
+        if (offlineGranted == centralGranted) {
+            agreedCount++;
+        } else if (offlineGranted) {
+            wronglyGranted.add(decision);
+        } else {
+            wronglyDenied.add(decision);
+        }
+    }
+
+    public String getReaderId() {
+        return readerId;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getAgreedCount() {
+        return agreedCount;
+    }
+
+    public List<OfflineDecision> getWronglyGranted() {
+        return Collections.unmodifiableList(wronglyGranted);
+    }
+
+    public List<OfflineDecision> getWronglyDenied() {
+        return Collections.unmodifiableList(wronglyDenied);
+    }
+
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    @Override
+    public String toString() {
+        return "Reader " + readerId + ": " + total + " offline decisions, " + agreedCount + " agreed, "
+            + wronglyGranted.size() + " wrongly granted, " + wronglyDenied.size() + " wrongly denied, "
+            + droppedCount + " dropped";
+    }
+}
@@ -0,0 +1,79 @@
+// Group 2 ChenGong ZhangZhao LiangYiKuo
+package com.bigcomp.accesscontrol.core;
+
+import java.util.List;
+
+/**
+ * Paged List - Immutable array split into fixed-size pages
+ * set() and add() copy the page table and the one page they change and share all
+ * other pages, so a compiled policy can replace one entry without copying all of them
+ */
+final class PagedList<T> {
+    private static final int PAGE_BITS = 9; // 512 entries per page
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private final Object[][] pages;
+    private final int size;
+
+    private PagedList(Object[][] pages, int size) {
+        this.pages = pages;
+        this.size = size;
+    }
+
+    /**
+     * Create list with the given elements, in order
+     */
+    static <T> PagedList<T> of(List<? extends T> elements) {
+        Object[][] pages = new Object[(elements.size() + PAGE_MASK) >>> PAGE_BITS][];
+        for (int p = 0; p < pages.length; p++) {
+            pages[p] = new Object[PAGE_SIZE];
+        }
+        for (int i = 0; i < elements.size(); i++) {
+            pages[i >>> PAGE_BITS][i & PAGE_MASK] = elements.get(i);
+        }
+        return new PagedList<>(pages, elements.size());
+    }
+
+    @SuppressWarnings("unchecked")
+    T get(int index) {
+        return (T) pages[index >>> PAGE_BITS][index & PAGE_MASK];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Get list with the element at the index replaced
+     */
+    PagedList<T> set(int index, T element) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        Object[][] newPages = pages.clone();
+        Object[] page = pages[index >>> PAGE_BITS].clone();
+        page[index & PAGE_MASK] = element;
+        newPages[index >>> PAGE_BITS] = page;
+        return new PagedList<>(newPages, size);
+    }
+
+    /**
+     * Get list with the element appended (its index is the old size)
+     */
+    PagedList<T> add(T element) {
+        Object[][] newPages;
+        Object[] page;
+        if ((size & PAGE_MASK) == 0) {
+            newPages = new Object[pages.length + 1][];
+            System.arraycopy(pages, 0, newPages, 0, pages.length);
+            page = new Object[PAGE_SIZE];
+        } else {
+            newPages = pages.clone();
+            page = pages[size >>> PAGE_BITS].clone();
+        }
+        page[size & PAGE_MASK] = element;
+        newPages[size >>> PAGE_BITS] = page;
+        return new PagedList<>(newPages, size + 1);
+    }
+}
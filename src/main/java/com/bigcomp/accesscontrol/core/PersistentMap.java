@@ -0,0 +1,337 @@
+// Group 2 ChenGong ZhangZhao LiangYiKuo
+package com.bigcomp.accesscontrol.core;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Persistent Map - Immutable hash array mapped trie
+ * plus() and minus() copy only the nodes on the path to the key (at most eight nodes
+ * of up to 32 slots) and share all others with the original map, so a snapshot can
+ * change one key without copying the whole map. Keys must not be null.
+ */
+final class PersistentMap<K, V> extends AbstractMap<K, V> {
+    private static final Object ABSENT = new Object(); // find() result for a missing key
+    private static final PersistentMap<?, ?> EMPTY = new PersistentMap<>(BitmapNode.EMPTY, 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    /**
+     * Get persistent copy of a map (the map itself if it is already persistent)
+     */
+    @SuppressWarnings("unchecked")
+    static <K, V> PersistentMap<K, V> copyOf(Map<? extends K, ? extends V> map) {
+        if (map instanceof PersistentMap) {
+            return (PersistentMap<K, V>) map;
+        }
+        PersistentMap<K, V> copy = empty();
+        for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            copy = copy.plus(entry.getKey(), entry.getValue());
+        }
+        return copy;
+    }
+
+    /**
+     * Get map with the key set to the value
+     */
+    PersistentMap<K, V> plus(K key, V value) {
+        int hash = hash(key);
+        Object old = root.find(key, hash, 0);
+        if (old == value && old != ABSENT) {
+            return this;
+        }
+        return new PersistentMap<>(root.plus(key, hash, value, 0), old == ABSENT ? size + 1 : size);
+    }
+
+    /**
+     * Get map without the key
+     */
+    PersistentMap<K, V> minus(Object key) {
+        int hash = hash(key);
+        if (root.find(key, hash, 0) == ABSENT) {
+            return this;
+        }
+        Node node = root.minus(key, hash, 0);
+        return new PersistentMap<>(node != null ? node : BitmapNode.EMPTY, size - 1);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        if (key == null) {
+            return null;
+        }
+        Object value = root.find(key, hash(key), 0);
+        return value != ABSENT ? (V) value : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key != null && root.find(key, hash(key), 0) != ABSENT;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new AbstractSet<Map.Entry<K, V>>() {
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator() {
+                return new EntryIterator<>(root);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Node - Trie node; slots hold key, value pairs, or null and a child node
+     */
+    private abstract static class Node {
+        final Object[] slots;
+
+        Node(Object[] slots) {
+            this.slots = slots;
+        }
+
+        abstract Object find(Object key, int hash, int shift);
+
+        abstract Node plus(Object key, int hash, Object value, int shift);
+
+        /**
+         * @return Node without the key, null if it would be empty
+         */
+        abstract Node minus(Object key, int hash, int shift);
+    }
+
+    /**
+     * Bitmap Node - Up to 32 slots, selected by five hash bits per level
+     */
+    private static final class BitmapNode extends Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        private final int bitmap; // Slots in use
+
+        BitmapNode(int bitmap, Object[] slots) {
+            super(slots);
+            this.bitmap = bitmap;
+        }
+
+        /**
+         * Create node holding two keys that share the hash bits above the shift
+         */
+        static Node pair(int shift, Object key1, int hash1, Object value1, Object key2, int hash2, Object value2) {
+            if (shift >= 32) {
+                return new CollisionNode(new Object[] {key1, value1, key2, value2});
+            }
+            int bit1 = 1 << ((hash1 >>> shift) & 31);
+            int bit2 = 1 << ((hash2 >>> shift) & 31);
+            if (bit1 == bit2) {
+                return new BitmapNode(bit1,
+                    new Object[] {null, pair(shift + 5, key1, hash1, value1, key2, hash2, value2)});
+            }
+            return new BitmapNode(bit1 | bit2, Integer.compareUnsigned(bit1, bit2) < 0
+                ? new Object[] {key1, value1, key2, value2}
+                : new Object[] {key2, value2, key1, value1});
+        }
+
+        private int indexOf(int bit) {
+            return 2 * Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        Object find(Object key, int hash, int shift) {
+            int bit = 1 << ((hash >>> shift) & 31);
+            if ((bitmap & bit) == 0) {
+                return ABSENT;
+            }
+            int i = indexOf(bit);
+            Object slotKey = slots[i];
+            if (slotKey == null) {
+                return ((Node) slots[i + 1]).find(key, hash, shift + 5);
+            }
+            return key.equals(slotKey) ? slots[i + 1] : ABSENT;
+        }
+
+        @Override
+        Node plus(Object key, int hash, Object value, int shift) {
+            int bit = 1 << ((hash >>> shift) & 31);
+            int i = indexOf(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] copy = new Object[slots.length + 2];
+                System.arraycopy(slots, 0, copy, 0, i);
+                copy[i] = key;
+                copy[i + 1] = value;
+                System.arraycopy(slots, i, copy, i + 2, slots.length - i);
+                return new BitmapNode(bitmap | bit, copy);
+            }
+            Object slotKey = slots[i];
+            Object[] copy = slots.clone();
+            if (slotKey == null) {
+                copy[i + 1] = ((Node) slots[i + 1]).plus(key, hash, value, shift + 5);
+            } else if (key.equals(slotKey)) {
+                copy[i + 1] = value;
+            } else {
+                copy[i] = null;
+                copy[i + 1] = pair(shift + 5, slotKey, PersistentMap.hash(slotKey), slots[i + 1], key, hash, value);
+            }
+            return new BitmapNode(bitmap, copy);
+        }
+
+        @Override
+        Node minus(Object key, int hash, int shift) {
+            int bit = 1 << ((hash >>> shift) & 31);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int i = indexOf(bit);
+            Object slotKey = slots[i];
+            if (slotKey == null) {
+                Node child = ((Node) slots[i + 1]).minus(key, hash, shift + 5);
+                if (child != null) {
+                    Object[] copy = slots.clone();
+                    copy[i + 1] = child;
+                    return new BitmapNode(bitmap, copy);
+                }
+            } else if (!key.equals(slotKey)) {
+                return this;
+            }
+            if (bitmap == bit) {
+                return null;
+            }
+            Object[] copy = new Object[slots.length - 2];
+            System.arraycopy(slots, 0, copy, 0, i);
+            System.arraycopy(slots, i + 2, copy, i, slots.length - i - 2);
+            return new BitmapNode(bitmap & ~bit, copy);
+        }
+    }
+
+    /**
+     * Collision Node - Keys whose 32 hash bits are all equal, searched linearly
+     */
+    private static final class CollisionNode extends Node {
+        CollisionNode(Object[] slots) {
+            super(slots);
+        }
+
+        @Override
+        Object find(Object key, int hash, int shift) {
+            for (int i = 0; i < slots.length; i += 2) {
+                if (key.equals(slots[i])) {
+                    return slots[i + 1];
+                }
+            }
+            return ABSENT;
+        }
+
+        @Override
+        Node plus(Object key, int hash, Object value, int shift) {
+            for (int i = 0; i < slots.length; i += 2) {
+                if (key.equals(slots[i])) {
+                    Object[] copy = slots.clone();
+                    copy[i + 1] = value;
+                    return new CollisionNode(copy);
+                }
+            }
+            Object[] copy = new Object[slots.length + 2];
+            System.arraycopy(slots, 0, copy, 0, slots.length);
+            copy[slots.length] = key;
+            copy[slots.length + 1] = value;
+            return new CollisionNode(copy);
+        }
+
+        @Override
+        Node minus(Object key, int hash, int shift) {
+            for (int i = 0; i < slots.length; i += 2) {
+                if (key.equals(slots[i])) {
+                    if (slots.length == 2) {
+                        return null;
+                    }
+                    Object[] copy = new Object[slots.length - 2];
+                    System.arraycopy(slots, 0, copy, 0, i);
+                    System.arraycopy(slots, i + 2, copy, i, slots.length - i - 2);
+                    return new CollisionNode(copy);
+                }
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Entry Iterator - Depth-first walk over the trie
+     */
+    private static final class EntryIterator<K, V> implements Iterator<Map.Entry<K, V>> {
+        private final Object[][] stack = new Object[9][]; // Slots of the nodes on the path
+        private final int[] positions = new int[9]; // Next slot per level
+        private int depth;
+        private Map.Entry<K, V> next;
+
+        EntryIterator(Node root) {
+            stack[0] = root.slots;
+            advance();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            while (depth >= 0) {
+                Object[] slots = stack[depth];
+                int i = positions[depth];
+                if (i >= slots.length) {
+                    depth--;
+                    continue;
+                }
+                positions[depth] = i + 2;
+                if (slots[i] == null) {
+                    depth++;
+                    stack[depth] = ((Node) slots[i + 1]).slots;
+                    positions[depth] = 0;
+                    continue;
+                }
+                next = new AbstractMap.SimpleImmutableEntry<>((K) slots[i], (V) slots[i + 1]);
+                return;
+            }
+            next = null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<K, V> entry = next;
+            advance();
+            return entry;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+// Group 2 ChenGong ZhangZhao LiangYiKuo
+package com.bigcomp.accesscontrol.core;
+
+import com.bigcomp.accesscontrol.model.Resource;
+import com.bigcomp.accesscontrol.model.User;
+import com.bigcomp.accesscontrol.profile.Profile;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Policy Snapshot - Immutable view of all data the ARP decides on
+ * Built off to the side and published with a single reference swap,
+ * so a request never sees new users with old profiles. The maps are persistent,
+ * so the incremental with...() methods share everything they do not change.
+ */
+public final class PolicySnapshot {
+    private final PersistentMap<String, User> usersByBadgeCode; // Find user by badge code
+    private final PersistentMap<String, Long> badgeExpiry; // Badge code -> expiry epoch second, Long.MIN_VALUE if revoked
+    private final PersistentMap<String, Boolean> expiredBadges; // Badge codes marked expired by the expiry sweep
+    private final PersistentMap<String, Set<String>> userProfiles; // User ID -> Profile name set
+    private final PersistentMap<String, Resource> resources; // Resource ID -> Resource object
+    private final PersistentMap<String, Set<String>> resourceGroups; // Resource ID -> Group names, sorted by name
+    private final Map<String, Profile> profiles; // Profile name -> Profile
+    private final CompiledPolicy compiledPolicy;
+
+    /**
+     * Create snapshot and compile its policy
+     * The maps must not be modified after being handed to the snapshot; profiles are
+     * deep-copied, since they are edited in place before being saved
+     */
+    public PolicySnapshot(Map<String, User> usersByBadgeCode, Map<String, Long> badgeExpiry,
+                          Map<String, Set<String>> userProfiles,
+                          Map<String, Resource> resources, Map<String, Set<String>> resourceGroups,
+                          Map<String, Profile> profiles) {
+        this(PersistentMap.copyOf(usersByBadgeCode), PersistentMap.copyOf(badgeExpiry), PersistentMap.empty(),
+            PersistentMap.copyOf(userProfiles), PersistentMap.copyOf(resources), PersistentMap.copyOf(resourceGroups),
+            Collections.unmodifiableMap(copyProfiles(profiles)), null);
+    }
+
+    /**
+     * Create snapshot
+     * @param compiledPolicy Policy compiled from the given data, null to compile it here
+     */
+    private PolicySnapshot(PersistentMap<String, User> usersByBadgeCode, PersistentMap<String, Long> badgeExpiry,
+                           PersistentMap<String, Boolean> expiredBadges, PersistentMap<String, Set<String>> userProfiles,
+                           PersistentMap<String, Resource> resources, PersistentMap<String, Set<String>> resourceGroups,
+                           Map<String, Profile> profiles, CompiledPolicy compiledPolicy) {
+        this.usersByBadgeCode = usersByBadgeCode;
+        this.badgeExpiry = badgeExpiry;
+        this.expiredBadges = expiredBadges;
+        this.userProfiles = userProfiles;
+        this.resources = resources;
+        this.resourceGroups = resourceGroups;
+        this.profiles = profiles;
+        this.compiledPolicy = compiledPolicy != null ? compiledPolicy : CompiledPolicy.compile(usersByBadgeCode,
+            badgeExpiry, expiredBadges.keySet(), userProfiles, resources, resourceGroups, profiles);
+    }
+
+    /**
+     * Create a new snapshot with the same database data and new profiles
+     * Recompiles everything: profile rights are folded into every user's rights
+     */
+    public PolicySnapshot withProfiles(Map<String, Profile> newProfiles) {
+        return new PolicySnapshot(usersByBadgeCode, badgeExpiry, expiredBadges, userProfiles, resources,
+            resourceGroups, Collections.unmodifiableMap(copyProfiles(newProfiles)), null);
+    }
+
+    /**
+     * Deep-copy profiles, so edits of the originals never reach a published snapshot
+     */
+    private static Map<String, Profile> copyProfiles(Map<String, Profile> profiles) {
+        Map<String, Profile> copies = new HashMap<>();
+        for (Map.Entry<String, Profile> entry : profiles.entrySet()) {
+            Profile profile = entry.getValue();
+            copies.put(entry.getKey(), profile != null ? profile.copy() : null);
+        }
+        return copies;
+    }
+
+    /**
+     * Create a new snapshot with one user replaced (incremental reload)
+     * Costs O(badges of the user * log N), plus O(profiles) if the user has a profile
+     * name not seen before
+     * @param userId User ID
+     * @param badgeUsers Badge code -> User for this user, empty if removed or without badge
+     * @param badgeExpiries Badge code -> expiry for this user's badge
+     * @param profileNames Profile names of this user, empty if none
+     */
+    public PolicySnapshot withUser(String userId, Map<String, User> badgeUsers, Map<String, Long> badgeExpiries,
+                                   Set<String> profileNames) {
+        PersistentMap<String, User> newUsers = usersByBadgeCode;
+        PersistentMap<String, Long> newBadgeExpiry = badgeExpiry;
+        PersistentMap<String, Boolean> newExpiredBadges = expiredBadges;
+        for (String badgeCode : compiledPolicy.badgeCodesOf(userId)) {
+            newUsers = newUsers.minus(badgeCode);
+            newBadgeExpiry = newBadgeExpiry.minus(badgeCode);
+            newExpiredBadges = newExpiredBadges.minus(badgeCode); // The sweep decides again
+        }
+        for (Map.Entry<String, User> entry : badgeUsers.entrySet()) {
+            newUsers = newUsers.plus(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, Long> entry : badgeExpiries.entrySet()) {
+            newBadgeExpiry = newBadgeExpiry.plus(entry.getKey(), entry.getValue());
+        }
+        PersistentMap<String, Set<String>> newUserProfiles = profileNames.isEmpty()
+            ? userProfiles.minus(userId) : userProfiles.plus(userId, profileNames);
+        return new PolicySnapshot(newUsers, newBadgeExpiry, newExpiredBadges, newUserProfiles, resources,
+            resourceGroups, profiles,
+            compiledPolicy.withUser(userId, badgeUsers, newBadgeExpiry, profileNames, newExpiredBadges.keySet()));
+    }
+
+    /**
+     * Create a new snapshot with one resource replaced (incremental reload)
+     * Costs O(log N), or a full compile if the resource is in a group no resource
+     * or profile had before
+     * @param resourceId Resource ID
+     * @param resource Resource, null if removed
+     * @param groupNames Groups of the resource sorted by name, empty if none
+     */
+    public PolicySnapshot withResource(String resourceId, Resource resource, Set<String> groupNames) {
+        PersistentMap<String, Resource> newResources = resource == null
+            ? resources.minus(resourceId) : resources.plus(resourceId, resource);
+        PersistentMap<String, Set<String>> newResourceGroups = groupNames.isEmpty()
+            ? resourceGroups.minus(resourceId) : resourceGroups.plus(resourceId, groupNames);
+        return new PolicySnapshot(usersByBadgeCode, badgeExpiry, expiredBadges, userProfiles, newResources,
+            newResourceGroups, profiles, compiledPolicy.withResource(resourceId, resource, groupNames));
+    }
+
+    /**
+     * Create a new snapshot with all resources removed from a group (incremental reload)
+     * Costs one set lookup per resource; only the resources in the group are copied
+     */
+    public PolicySnapshot withoutGroup(String groupName) {
+        PersistentMap<String, Set<String>> newResourceGroups = resourceGroups;
+        for (Map.Entry<String, Set<String>> entry : resourceGroups.entrySet()) {
+            Set<String> groupNames = entry.getValue();
+            if (groupNames.contains(groupName)) {
+                groupNames = new TreeSet<>(groupNames);
+                groupNames.remove(groupName);
+                newResourceGroups = groupNames.isEmpty()
+                    ? newResourceGroups.minus(entry.getKey()) : newResourceGroups.plus(entry.getKey(), groupNames);
+            }
+        }
+        return new PolicySnapshot(usersByBadgeCode, badgeExpiry, expiredBadges, userProfiles, resources,
+            newResourceGroups, profiles, compiledPolicy.withoutGroup(groupName));
+    }
+
+    /**
+     * Create a new snapshot with the given badges marked expired (expiry sweep)
+     */
+    public PolicySnapshot withExpiredBadges(Collection<String> badgeCodes) {
+        PersistentMap<String, Boolean> newExpiredBadges = expiredBadges;
+        for (String badgeCode : badgeCodes) {
+            newExpiredBadges = newExpiredBadges.plus(badgeCode, Boolean.TRUE);
+        }
+        return new PolicySnapshot(usersByBadgeCode, badgeExpiry, newExpiredBadges, userProfiles, resources,
+            resourceGroups, profiles, compiledPolicy.withExpiredBadges(badgeCodes));
+    }
+
+    /**
+     * Find badges that expire at or before the given time and are not marked expired yet
+     * @param epochSecond Time as epoch seconds (see AccessRequest.toEpochSecond)
+     */
+    public Set<String> findBadgesToExpire(long epochSecond) {
+        Set<String> badgeCodes = new HashSet<>();
+        for (Map.Entry<String, Long> entry : badgeExpiry.entrySet()) {
+            long expiry = entry.getValue();
+            if (expiry != Long.MIN_VALUE && expiry < epochSecond && !expiredBadges.containsKey(entry.getKey())) {
+                badgeCodes.add(entry.getKey());
+            }
+        }
+        return badgeCodes;
+    }
+
+    /**
+     * Find the earliest badge expiry after the given time
+     * @return Expiry epoch second, Long.MAX_VALUE if no badge expires later
+     */
+    public long findNextBadgeExpiry(long epochSecond) {
+        long next = Long.MAX_VALUE;
+        for (Map.Entry<String, Long> entry : badgeExpiry.entrySet()) {
+            long expiry = entry.getValue();
+            if (expiry >= epochSecond && expiry < next && !expiredBadges.containsKey(entry.getKey())) {
+                next = expiry;
+            }
+        }
+        return next;
+    }
+
+    public Map<String, User> getUsersByBadgeCode() {
+        return usersByBadgeCode;
+    }
+
+    public Map<String, Long> getBadgeExpiry() {
+        return badgeExpiry;
+    }
+
+    public Set<String> getExpiredBadges() {
+        return expiredBadges.keySet();
+    }
+
+    public Map<String, Set<String>> getUserProfiles() {
+        return userProfiles;
+    }
+
+    public Map<String, Resource> getResources() {
+        return resources;
+    }
+
+    public Map<String, Set<String>> getResourceGroups() {
+        return resourceGroups;
+    }
+
+    public Profile getProfile(String name) {
+        return profiles.get(name);
+    }
+
+    public Map<String, Profile> getProfiles() {
+        return profiles;
+    }
+
+    public CompiledPolicy getCompiledPolicy() {
+        return compiledPolicy;
+    }
+}
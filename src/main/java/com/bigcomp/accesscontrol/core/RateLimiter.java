@@ -0,0 +1,357 @@
+// Group 2 ChenGong ZhangZhao LiangYiKuo
+package com.bigcomp.accesscontrol.core;
+
+import com.bigcomp.accesscontrol.model.AccessRequest;
+import com.bigcomp.accesscontrol.model.User;
+
+import java.beans.PropertyChangeListener;
+import java.beans.PropertyChangeSupport;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rate Limiter - Token buckets per badge and per badge reader, in front of the ARP
+ * Each bucket is one long in an AtomicLongArray holding its theoretical arrival time (the
+ * GCRA form of a token bucket), updated with a single CAS. Badge buckets are indexed by the
+ * dense user ID of the compiled policy, with limits by user type; unknown badge codes only
+ * count against their reader. Deltas keep user IDs, so badge buckets carry over as is; after
+ * a full compile they are moved to the new IDs by badge code. Reader buckets are padded to one per cache line, since many
+ * threads swipe on the same readers, and live in fixed-size chunks, so adding a reader never
+ * copies a bucket another thread may be updating. Fires "badgeThrottled" (new value: badge code) and
+ * "readerThrottled" (new value: reader ID) once when a bucket starts rejecting; the bucket
+ * must refill completely before it fires again.
+ */
+public class RateLimiter {
+    private static final int READER_STRIDE = 8; // Longs per reader bucket (64 bytes)
+    private static final long THROTTLED = 1L; // Low bit of a bucket: rejected since it was last full
+
+    /**
+     * Limit - Sustained rate and burst of one bucket
+     */
+    public static final class Limit {
+        private final double perSecond;
+        private final int burst;
+        private final long intervalNanos; // Time one token takes to refill
+        private final long toleranceNanos; // How far ahead of now the bucket may run
+
+        public Limit(double perSecond, int burst) {
+            if (perSecond <= 0 || burst < 1) {
+                throw new IllegalArgumentException("Rate must be positive and burst at least 1");
+            }
+            this.perSecond = perSecond;
+            this.burst = burst;
+            this.intervalNanos = Math.max(2, (long) (TimeUnit.SECONDS.toNanos(1) / perSecond)) & ~THROTTLED;
+            this.toleranceNanos = intervalNanos * (burst - 1);
+        }
+
+        public double getPerSecond() {
+            return perSecond;
+        }
+
+        public int getBurst() {
+            return burst;
+        }
+
+        @Override
+        public String toString() {
+            return perSecond + "/s burst " + burst;
+        }
+    }
+
+    /**
+     * Buckets - Bucket longs in fixed-size chunks
+     * Growing copies only the chunk table, never a bucket, so no concurrent update is lost
+     */
+    private static final class Buckets {
+        private static final int CHUNK_BITS = 10; // 1024 longs (8 KB) per chunk
+        private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+        private volatile AtomicLongArray[] chunks;
+
+        Buckets(int capacity) {
+            this.chunks = new AtomicLongArray[0];
+            ensureCapacity(capacity);
+        }
+
+        AtomicLongArray chunkOf(int index) {
+            return chunks[index >>> CHUNK_BITS];
+        }
+
+        static int offsetOf(int index) {
+            return index & CHUNK_MASK;
+        }
+
+        /**
+         * Add chunks until the index capacity - 1 exists
+         */
+        synchronized void ensureCapacity(int capacity) {
+            AtomicLongArray[] current = chunks;
+            int needed = (capacity + CHUNK_MASK) >>> CHUNK_BITS;
+            if (needed > current.length) {
+                AtomicLongArray[] grown = Arrays.copyOf(current, needed);
+                for (int c = current.length; c < needed; c++) {
+                    grown[c] = new AtomicLongArray(1 << CHUNK_BITS);
+                }
+                chunks = grown;
+            }
+        }
+    }
+
+    /**
+     * Badge buckets of one policy lineage
+     */
+    private static final class BadgeBuckets {
+        private final CompiledPolicy policy; // Latest policy seen of the lineage
+        private final Buckets buckets; // User ID -> bucket
+
+        BadgeBuckets(CompiledPolicy policy, Buckets buckets) {
+            this.policy = policy;
+            this.buckets = buckets;
+        }
+    }
+
+    private final long origin; // System.nanoTime() at creation, bucket times are relative to it
+    private volatile Limit[] limitsByType; // User type ordinal -> limit, null for the default (copied on write)
+    private volatile Limit defaultBadgeLimit;
+    private volatile Limit readerLimit;
+    private volatile BadgeBuckets badgeBuckets; // Moved to new user IDs after a full compile
+    private final Map<String, Integer> readerIndex; // Reader ID -> dense reader ID
+    private final Buckets readerBuckets; // Dense reader ID * READER_STRIDE -> bucket
+    private final LongAdder allowedCount;
+    private final LongAdder badgeThrottledCount;
+    private final LongAdder readerThrottledCount;
+    private final PropertyChangeSupport pcs;
+
+    /**
+     * Create rate limiter
+     * @param defaultBadgeLimit Limit of each badge whose user type has no limit of its own
+     * @param readerLimit Limit of each badge reader
+     */
+    public RateLimiter(Limit defaultBadgeLimit, Limit readerLimit) {
+        this.origin = System.nanoTime();
+        this.limitsByType = new Limit[User.UserType.values().length];
+        this.defaultBadgeLimit = defaultBadgeLimit;
+        this.readerLimit = readerLimit;
+        this.readerIndex = new ConcurrentHashMap<>();
+        this.readerBuckets = new Buckets(64 * READER_STRIDE);
+        this.allowedCount = new LongAdder();
+        this.badgeThrottledCount = new LongAdder();
+        this.readerThrottledCount = new LongAdder();
+        this.pcs = new PropertyChangeSupport(this);
+    }
+
+    /**
+     * Take one token from the request's reader and badge buckets
+     * @param policy Compiled policy the request will be decided with (badge -> user ID and type)
+     * @return true if the request may be decided, false if it is throttled
+     */
+    public boolean tryAcquire(AccessRequest request, CompiledPolicy policy) {
+        long now = (System.nanoTime() - origin) & ~THROTTLED;
+        String readerId = request.getBadgeReaderId();
+        if (readerId != null) {
+            int bucket = readerIdOf(readerId) * READER_STRIDE;
+            AtomicLongArray chunk = readerBuckets.chunkOf(bucket);
+            if (!take(chunk, Buckets.offsetOf(bucket), readerLimit, now)) {
+                readerThrottledCount.increment();
+                if (startThrottling(chunk, Buckets.offsetOf(bucket))) {
+                    pcs.firePropertyChange("readerThrottled", null, readerId);
+                }
+                return false;
+            }
+        }
+        int user = policy.mightBeKnownBadge(request.getBadgeCode())
+            ? policy.userOf(request.getBadgeCode()) : CompiledPolicy.NONE;
+        BadgeBuckets badges = user != CompiledPolicy.NONE ? badgeBucketsOf(policy) : null;
+        if (badges != null) {
+            AtomicLongArray chunk = badges.buckets.chunkOf(user);
+            if (!take(chunk, Buckets.offsetOf(user), limitOf(policy.getUser(user)), now)) {
+                badgeThrottledCount.increment();
+                if (startThrottling(chunk, Buckets.offsetOf(user))) {
+                    pcs.firePropertyChange("badgeThrottled", null, request.getBadgeCode());
+                }
+                return false;
+            }
+        }
+        allowedCount.increment();
+        return true;
+    }
+
+    /**
+     * Take one token if the bucket is not more than its tolerance ahead of now
+     */
+    private static boolean take(AtomicLongArray buckets, int index, Limit limit, long now) {
+        while (true) {
+            long current = buckets.get(index);
+            long arrival = Math.max(current & ~THROTTLED, now);
+            if (arrival - now > limit.toleranceNanos) {
+                return false;
+            }
+            // Throttling ends once the bucket has refilled completely
+            long throttled = arrival > now ? current & THROTTLED : 0;
+            if (buckets.compareAndSet(index, current, (arrival + limit.intervalNanos) | throttled)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Mark bucket as rejecting
+     * @return true if it had not rejected since it was last full (the caller fires the event)
+     */
+    private static boolean startThrottling(AtomicLongArray buckets, int index) {
+        while (true) {
+            long current = buckets.get(index);
+            if ((current & THROTTLED) != 0) {
+                return false;
+            }
+            if (buckets.compareAndSet(index, current, current | THROTTLED)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Get limit of a user's badges
+     */
+    private Limit limitOf(User user) {
+        User.UserType type = user.getUserType();
+        Limit limit = type != null ? limitsByType[type.ordinal()] : null;
+        return limit != null ? limit : defaultBadgeLimit;
+    }
+
+    /**
+     * Get badge buckets for the user IDs of a compiled policy
+     * A newer policy of the same lineage only adds chunks for new IDs; a newer lineage gets
+     * new buckets, filled from the old ones by badge code
+     * @return null if the policy was replaced by a full compile since (not badge limited)
+     */
+    private BadgeBuckets badgeBucketsOf(CompiledPolicy policy) {
+        BadgeBuckets badges = badgeBuckets;
+        if (badges != null && badges.policy.getLineage() == policy.getLineage()
+                && badges.policy.getVersion() >= policy.getVersion()) {
+            return badges;
+        }
+        synchronized (this) {
+            badges = badgeBuckets;
+            if (badges == null) {
+                badges = new BadgeBuckets(policy, new Buckets(policy.getUserCount()));
+            } else if (badges.policy.getVersion() >= policy.getVersion()) {
+                return badges.policy.getLineage() == policy.getLineage() ? badges : null;
+            } else if (badges.policy.getLineage() == policy.getLineage()) {
+                badges.buckets.ensureCapacity(policy.getUserCount());
+                badges = new BadgeBuckets(policy, badges.buckets);
+            } else {
+                badges = new BadgeBuckets(policy, moveBuckets(badges, policy));
+            }
+            badgeBuckets = badges;
+            return badges;
+        }
+    }
+
+    /**
+     * Copy badge buckets to the user IDs of a policy from another lineage, by badge code
+     * (a swipe that updates an old bucket while they are copied may be lost)
+     */
+    private static Buckets moveBuckets(BadgeBuckets old, CompiledPolicy policy) {
+        Buckets moved = new Buckets(policy.getUserCount());
+        for (int user = 0; user < old.policy.getUserCount(); user++) {
+            String badgeCode = old.policy.getBadgeCode(user);
+            int to = badgeCode != null ? policy.userOf(badgeCode) : CompiledPolicy.NONE;
+            if (to != CompiledPolicy.NONE) {
+                moved.chunkOf(to).set(Buckets.offsetOf(to), old.buckets.chunkOf(user).get(Buckets.offsetOf(user)));
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * Get dense ID of a reader, adding a bucket chunk when needed
+     */
+    private int readerIdOf(String readerId) {
+        Integer reader = readerIndex.get(readerId);
+        if (reader != null) {
+            return reader;
+        }
+        synchronized (readerIndex) {
+            reader = readerIndex.get(readerId);
+            if (reader == null) {
+                reader = readerIndex.size();
+                readerBuckets.ensureCapacity((reader + 1) * READER_STRIDE); // Before the ID is visible
+                readerIndex.put(readerId, reader);
+            }
+            return reader;
+        }
+    }
+
+    /**
+     * Set limit of badges of a user type (null for the default badge limit)
+     * Takes effect with full buckets
+     */
+    public synchronized void setLimit(User.UserType type, Limit limit) {
+        Limit[] limits = limitsByType.clone();
+        limits[type.ordinal()] = limit;
+        limitsByType = limits;
+        badgeBuckets = null;
+    }
+
+    /**
+     * Get limits configured per user type
+     */
+    public synchronized Map<User.UserType, Limit> getLimits() {
+        Map<User.UserType, Limit> limits = new EnumMap<>(User.UserType.class);
+        for (User.UserType type : User.UserType.values()) {
+            if (limitsByType[type.ordinal()] != null) {
+                limits.put(type, limitsByType[type.ordinal()]);
+            }
+        }
+        return limits;
+    }
+
+    public synchronized void setDefaultBadgeLimit(Limit limit) {
+        this.defaultBadgeLimit = limit;
+        badgeBuckets = null;
+    }
+
+    public Limit getDefaultBadgeLimit() {
+        return defaultBadgeLimit;
+    }
+
+    public void setReaderLimit(Limit limit) {
+        this.readerLimit = limit;
+    }
+
+    public Limit getReaderLimit() {
+        return readerLimit;
+    }
+
+    public long getAllowedCount() {
+        return allowedCount.sum();
+    }
+
+    /**
+     * Get number of requests rejected by a badge bucket
+     */
+    public long getBadgeThrottledCount() {
+        return badgeThrottledCount.sum();
+    }
+
+    /**
+     * Get number of requests rejected by a reader bucket
+     */
+    public long getReaderThrottledCount() {
+        return readerThrottledCount.sum();
+    }
+
+    public void addPropertyChangeListener(PropertyChangeListener listener) {
+        pcs.addPropertyChangeListener(listener);
+    }
+
+    public void removePropertyChangeListener(PropertyChangeListener listener) {
+        pcs.removePropertyChangeListener(listener);
+    }
+}
@@ -0,0 +1,203 @@
+// Group 2 ChenGong ZhangZhao LiangYiKuo
+package com.bigcomp.accesscontrol.core;
+
+import com.bigcomp.accesscontrol.model.AccessRequest;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Reader Request Queue - Bounded queue of one badge reader's access requests (async Router mode)
+ * At most one drain task runs per queue, so a reader's requests are handled in swipe order,
+ * and no thread is held while the queue is empty
+ */
+public class ReaderRequestQueue {
+    /**
+     * Backpressure policy - What to do when a reader's queue is full
+     */
+    public enum BackpressurePolicy {
+        BLOCK,       // Swiping thread waits for room
+        DROP_OLDEST, // Oldest queued request is dropped
+        REJECT       // New request is rejected
+    }
+
+    private final String readerId;
+    private final BlockingQueue<AccessRequest> queue;
+    private final BackpressurePolicy policy;
+    private final Executor executor; // Runs drain tasks
+    private final Consumer<AccessRequest> handler; // Decides and delivers one request
+    private final Consumer<AccessRequest> overflowHandler; // Notified of dropped or rejected requests
+    private final AtomicBoolean draining; // True while a drain task is scheduled or running
+
+    // Metrics
+    private final AtomicInteger maxDepth;
+    private final LongAdder enqueued;
+    private final LongAdder processed;
+    private final LongAdder dropped;
+    private final LongAdder rejected;
+
+    public ReaderRequestQueue(String readerId, int capacity, BackpressurePolicy policy, Executor executor,
+                              Consumer<AccessRequest> handler, Consumer<AccessRequest> overflowHandler) {
+        this.readerId = readerId;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.policy = policy;
+        this.executor = executor;
+        this.handler = handler;
+        this.overflowHandler = overflowHandler;
+        this.draining = new AtomicBoolean();
+        this.maxDepth = new AtomicInteger();
+        this.enqueued = new LongAdder();
+        this.processed = new LongAdder();
+        this.dropped = new LongAdder();
+        this.rejected = new LongAdder();
+    }
+
+    /**
+     * Queue a request according to the backpressure policy
+     * @return true if the request was queued
+     */
+    public boolean submit(AccessRequest request) {
+        boolean queued;
+        switch (policy) {
+            case BLOCK:
+                try {
+                    queue.put(request);
+                    queued = true;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    queued = false;
+                }
+                break;
+            case DROP_OLDEST:
+                while (!queue.offer(request)) {
+                    AccessRequest oldest = queue.poll();
+                    if (oldest != null) {
+                        dropped.increment();
+                        overflowHandler.accept(oldest);
+                    }
+                }
+                queued = true;
+                break;
+            default:
+                queued = queue.offer(request);
+                break;
+        }
+        if (!queued) {
+            rejected.increment();
+            overflowHandler.accept(request);
+            return false;
+        }
+        enqueued.increment();
+        maxDepth.accumulateAndGet(queue.size(), Math::max);
+        scheduleDrain();
+        return true;
+    }
+
+    /**
+     * Start a drain task unless one is already scheduled
+     */
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // Executor shut down or saturated: nothing would ever answer the queued requests
+                System.err.println("Reader queue " + readerId + " could not schedule drain: " + e.getMessage());
+                rejectQueued();
+            }
+        }
+    }
+
+    /**
+     * Hand every queued request to the overflow handler (answered with OVERLOADED)
+     * Caller must hold the draining flag
+     */
+    private void rejectQueued() {
+        while (true) {
+            AccessRequest request;
+            while ((request = queue.poll()) != null) {
+                rejected.increment();
+                try {
+                    overflowHandler.accept(request);
+                } catch (RuntimeException e) {
+                    System.err.println("Failed to reject request from reader " + readerId + ": " + e.getMessage());
+                }
+            }
+            draining.set(false);
+            // A request may have been queued after the last poll but before the flag was cleared
+            if (queue.isEmpty() || !draining.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Handle queued requests until the queue is empty
+     */
+    private void drain() {
+        while (true) {
+            AccessRequest request;
+            while ((request = queue.poll()) != null) {
+                try {
+                    handler.accept(request);
+                } catch (RuntimeException e) {
+                    System.err.println("Failed to handle request from reader " + readerId + ": " + e.getMessage());
+                }
+                processed.increment();
+            }
+            draining.set(false);
+            // A request may have been queued after the last poll but before the flag was cleared
+            if (queue.isEmpty() || !draining.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    public String getReaderId() {
+        return readerId;
+    }
+
+    public BackpressurePolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Get number of requests currently waiting
+     */
+    public int getDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Get highest number of requests that were waiting at once
+     */
+    public int getMaxDepth() {
+        return maxDepth.get();
+    }
+
+    public int getCapacity() {
+        return queue.size() + queue.remainingCapacity();
+    }
+
+    public long getEnqueuedCount() {
+        return enqueued.sum();
+    }
+
+    public long getProcessedCount() {
+        return processed.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+}
@@ -3,49 +3,284 @@ package com.bigcomp.accesscontrol.core;
 
 import com.bigcomp.accesscontrol.model.AccessRequest;
 import com.bigcomp.accesscontrol.model.AccessResponse;
+import com.bigcomp.accesscontrol.model.AccessResponse.ReasonCode;
 import com.bigcomp.accesscontrol.model.BadgeReader;
+import com.bigcomp.accesscontrol.model.OfflineDecision;
+import com.bigcomp.accesscontrol.model.Resource;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Router class - Forwards messages between badge readers and access control system
  */
-public class Router implements PropertyChangeListener {
+public class Router implements BadgeReader.EventListener, PropertyChangeListener {
     private AccessRequestProcessor arp; // Access Request Processor
     private Map<String, BadgeReader> badgeReaders; // Badge reader map
-    private List<AccessEventListener> accessEventListeners; // Access event listener list
+    private final AccessEventRing accessEvents; // Decided events, consumed by listeners on their own threads
+    private final LatencyMonitor latencyMonitor; // Per-stage latency of the swipe pipeline
+    private BlockingQueue<AccessRequest> pendingRequests; // Buffered requests, decided in bulk
+
+    // Async mode: per-reader bounded queues drained on an executor, null when synchronous
+    private volatile AsyncSettings asyncSettings;
+    private final Map<String, ReaderRequestQueue> readerQueues; // Reader ID -> queue
+
+    // Priority lanes: admission control under overload, null when every request is admitted
+    private volatile AdmissionController admission;
+
+    // Swipe debouncing: repeats of a recent swipe reuse its decision, null when disabled
+    private volatile SwipeCoalescer coalescer;
+
+    // Token buckets per badge and reader, null when every request may be decided
+    private volatile RateLimiter rateLimiter;
+
+    // Offline policies pushed to registered readers, null when disabled
+    private volatile OfflinePolicyDistributor offlinePolicies;
 
     public Router(AccessRequestProcessor arp) {
         this.arp = arp;
         this.badgeReaders = new ConcurrentHashMap<>();
-        this.accessEventListeners = new ArrayList<>();
+        this.latencyMonitor = new LatencyMonitor(this::resourceTypeOf);
+        this.accessEvents = new AccessEventRing(AccessEventRing.DEFAULT_CAPACITY, latencyMonitor);
+        this.pendingRequests = new LinkedBlockingQueue<>();
+        this.readerQueues = new ConcurrentHashMap<>();
+        arp.addPropertyChangeListener(this); // Policy snapshot changes
+    }
+
+    /**
+     * Async mode settings
+     */
+    private static final class AsyncSettings {
+        private final int queueCapacity;
+        private final ReaderRequestQueue.BackpressurePolicy policy;
+        private final ExecutorService executor;
+        private final boolean ownsExecutor; // Created by the Router, shut down with async mode
+
+        AsyncSettings(int queueCapacity, ReaderRequestQueue.BackpressurePolicy policy,
+                      ExecutorService executor, boolean ownsExecutor) {
+            this.queueCapacity = queueCapacity;
+            this.policy = policy;
+            this.executor = executor;
+            this.ownsExecutor = ownsExecutor;
+        }
+    }
+
+    /**
+     * Enable async mode: each badge reader gets a bounded queue drained by virtual threads,
+     * so the swiping thread never runs the ARP, listeners or log I/O
+     * @param queueCapacity Maximum number of waiting requests per reader
+     * @param policy What to do when a reader's queue is full
+     */
+    public void enableAsyncMode(int queueCapacity, ReaderRequestQueue.BackpressurePolicy policy) {
+        enableAsyncMode(queueCapacity, policy, Executors.newVirtualThreadPerTaskExecutor(), true);
+    }
+
+    /**
+     * Enable async mode with queues drained on a shared executor
+     * @param executor Executor running drain tasks (not shut down by the Router)
+     */
+    public void enableAsyncMode(int queueCapacity, ReaderRequestQueue.BackpressurePolicy policy,
+                                ExecutorService executor) {
+        enableAsyncMode(queueCapacity, policy, executor, false);
+    }
+
+    private synchronized void enableAsyncMode(int queueCapacity, ReaderRequestQueue.BackpressurePolicy policy,
+                                              ExecutorService executor, boolean ownsExecutor) {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("Queue capacity must be positive: " + queueCapacity);
+        }
+        disableAsyncMode();
+        asyncSettings = new AsyncSettings(queueCapacity, policy, executor, ownsExecutor);
+    }
+
+    /**
+     * Return to synchronous routing; requests already queued are still handled
+     */
+    public synchronized void disableAsyncMode() {
+        AsyncSettings settings = asyncSettings;
+        asyncSettings = null;
+        readerQueues.clear();
+        if (settings != null && settings.ownsExecutor) {
+            settings.executor.shutdown(); // Lets running drain tasks finish
+        }
+    }
+
+    public boolean isAsyncMode() {
+        return asyncSettings != null;
+    }
+
+    /**
+     * Enable priority lanes: under overload, low-priority requests are shed or deferred
+     * so that perimeter gates and high-security doors keep being answered
+     * @param controller Admission controller (capacity, lanes, group security levels)
+     */
+    public void enablePriorityLanes(AdmissionController controller) {
+        this.admission = controller;
+    }
+
+    /**
+     * Admit every request again; requests still deferred are answered with OVERLOADED
+     */
+    public void disablePriorityLanes() {
+        AdmissionController controller = admission;
+        admission = null;
+        if (controller != null) {
+            AccessRequest deferred;
+            while ((deferred = controller.resumeDeferred(this::rejectOverloaded)) != null) {
+                rejectOverloaded(deferred);
+            }
+        }
+    }
+
+    /**
+     * Enable duplicate-swipe coalescing: repeated swipes of a badge on the same reader within
+     * the window are answered with the first decision, without being decided or logged again
+     * @param windowMillis How long a decision is reused
+     */
+    public void enableCoalescing(long windowMillis) {
+        this.coalescer = new SwipeCoalescer(windowMillis);
+    }
+
+    public void disableCoalescing() {
+        this.coalescer = null;
+    }
+
+    /**
+     * Get swipe coalescer (coalesced and decided counters), null if coalescing is disabled
+     */
+    public SwipeCoalescer getCoalescer() {
+        return coalescer;
+    }
+
+    /**
+     * Enable rate limiting: swipes beyond the token bucket of their badge or reader are
+     * answered with RATE_LIMITED before reaching the ARP and the access event listeners
+     */
+    public void enableRateLimiting(RateLimiter limiter) {
+        this.rateLimiter = limiter;
+    }
+
+    public void disableRateLimiting() {
+        this.rateLimiter = null;
+    }
+
+    /**
+     * Get rate limiter (throttle counters and events), null if rate limiting is disabled
+     */
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Push an offline policy to every registered badge reader, and again whenever the
+     * ARP snapshot changes, so readers can decide locally while the ARP is unavailable
+     */
+    public synchronized void enableOfflinePolicies() {
+        if (offlinePolicies == null) {
+            OfflinePolicyDistributor distributor = new OfflinePolicyDistributor(arp, badgeReaders,
+                OfflinePolicyDistributor.DEFAULT_DELAY_MILLIS);
+            distributor.start();
+            offlinePolicies = distributor;
+        }
+    }
+
+    /**
+     * Stop pushing offline policies (readers keep their last policy)
+     */
+    public synchronized void disableOfflinePolicies() {
+        if (offlinePolicies != null) {
+            offlinePolicies.stop();
+            offlinePolicies = null;
+        }
+    }
+
+    /**
+     * Get offline policy distributor (push counters), null if disabled
+     */
+    public OfflinePolicyDistributor getOfflinePolicyDistributor() {
+        return offlinePolicies;
+    }
+
+    /**
+     * Reconcile the decisions a reader made offline: each is published as an access event
+     * (so it is logged at its swipe time, as applied at the resource) and compared with
+     * the ARP's decision of the same request
+     */
+    public OfflineReconciliation reconcileOfflineDecisions(BadgeReader reader) {
+        OfflineReconciliation result = new OfflineReconciliation(reader.getId(), reader.getDroppedOfflineDecisionCount());
+        for (OfflineDecision decision : reader.drainOfflineDecisions()) {
+            AccessResponse central = arp.processRequest(decision.getRequest());
+            notifyAccessEvent(decision.getRequest(), decision.getResponse());
+            result.add(decision, central.isGranted());
+        }
+        return result;
+    }
+
+    /**
+     * Get admission controller (shed and deferred counters per lane), null if lanes are disabled
+     */
+    public AdmissionController getAdmissionController() {
+        return admission;
     }
     
     /**
      * Add access event listener
+     * The listener runs on its own thread and receives events decided from now on,
+     * so a slow listener never delays the response to the badge reader
      */
     public void addAccessEventListener(AccessEventListener listener) {
-        accessEventListeners.add(listener);
+        accessEvents.subscribe(listener);
+    }
+
+    /**
+     * Add access event listener that must see every event (the audit log)
+     * If it falls a full event ring behind, responses wait for it instead of events being skipped
+     */
+    public void addLosslessAccessEventListener(AccessEventListener listener) {
+        accessEvents.subscribe(listener, true);
     }
     
     /**
      * Remove access event listener
      */
     public void removeAccessEventListener(AccessEventListener listener) {
-        accessEventListeners.remove(listener);
+        accessEvents.unsubscribe(listener);
     }
     
     /**
-     * Notify all listeners of access event
+     * Notify all listeners of access event (publishes to the event ring, waits only for a
+     * lossless listener a full ring behind)
      */
     private void notifyAccessEvent(AccessRequest request, AccessResponse response) {
-        for (AccessEventListener listener : accessEventListeners) {
-            listener.onAccessEvent(request, response);
-        }
+        accessEvents.publish(request, response);
+    }
+
+    /**
+     * Get access event ring (per-listener backlog and lost event counters)
+     */
+    public AccessEventRing getAccessEvents() {
+        return accessEvents;
+    }
+
+    /**
+     * Get latency monitor (per-stage histograms per reader and resource type)
+     */
+    public LatencyMonitor getLatencyMonitor() {
+        return latencyMonitor;
+    }
+
+    private Resource.ResourceType resourceTypeOf(String resourceId) {
+        Resource resource = arp.getSnapshot().getResources().get(resourceId);
+        return resource != null ? resource.getType() : null;
     }
 
     /**
@@ -53,7 +288,44 @@ public class Router implements PropertyChangeListener {
      */
     public void registerBadgeReader(BadgeReader reader) {
         badgeReaders.put(reader.getId(), reader);
-        reader.addPropertyChangeListener(this);
+        reader.addEventListener(this);
+        OfflinePolicyDistributor distributor = offlinePolicies;
+        if (distributor != null) {
+            distributor.pushTo(reader);
+        }
+    }
+
+    /**
+     * Register badge reader unless another reader already has its ID
+     * @return false if the ID belongs to another reader (left registered)
+     */
+    public boolean registerBadgeReaderIfAbsent(BadgeReader reader) {
+        if (badgeReaders.putIfAbsent(reader.getId(), reader) != null) {
+            return false;
+        }
+        reader.addEventListener(this);
+        OfflinePolicyDistributor distributor = offlinePolicies;
+        if (distributor != null) {
+            distributor.pushTo(reader);
+        }
+        return true;
+    }
+
+    /**
+     * Replace a registered badge reader with another of the same ID
+     * @return false if the ID is no longer registered to the expected reader (nothing changed)
+     */
+    public boolean replaceBadgeReader(BadgeReader expected, BadgeReader reader) {
+        if (!badgeReaders.replace(reader.getId(), expected, reader)) {
+            return false;
+        }
+        expected.removeEventListener(this);
+        reader.addEventListener(this);
+        OfflinePolicyDistributor distributor = offlinePolicies;
+        if (distributor != null) {
+            distributor.pushTo(reader);
+        }
+        return true;
     }
 
     /**
@@ -62,18 +334,86 @@ public class Router implements PropertyChangeListener {
     public void unregisterBadgeReader(String readerId) {
         BadgeReader reader = badgeReaders.remove(readerId);
         if (reader != null) {
-            reader.removePropertyChangeListener(this);
+            reader.removeEventListener(this);
+        }
+        readerQueues.remove(readerId);
+    }
+
+    /**
+     * Handle access request event (from badge reader, direct dispatch)
+     */
+    @Override
+    public void onAccessRequest(BadgeReader reader, AccessRequest request) {
+        if (reader != null && request.getOrigin() == null) {
+            request.setOrigin(reader); // Answered even if another reader takes over its ID meanwhile
+        }
+        SwipeCoalescer repeats = coalescer;
+        if (repeats != null && repeats.coalesce(request, this::answerRepeat)) {
+            return;
+        }
+        RateLimiter limiter = rateLimiter;
+        if (limiter != null && !limiter.tryAcquire(request, arp.getSnapshot().getCompiledPolicy())) {
+            rejectRateLimited(request);
+            return;
+        }
+        AdmissionController controller = admission;
+        if (controller != null && !admit(controller, request)) {
+            return;
+        }
+        dispatch(request);
+    }
+
+    /**
+     * Classify request into a lane and apply admission control
+     * @return true if the request should be handled now
+     */
+    private boolean admit(AdmissionController controller, AccessRequest request) {
+        PolicySnapshot snapshot = arp.getSnapshot();
+        String resourceId = request.getResourceId();
+        AdmissionController.Lane lane = resourceId == null ? AdmissionController.Lane.NORMAL
+            : controller.classify(snapshot.getResources().get(resourceId), snapshot.getResourceGroups().get(resourceId));
+        switch (controller.admit(request, lane)) {
+            case ADMIT:
+                return true;
+            case DEFER:
+                // Load may have dropped while deferring: nothing else would resume it
+                AccessRequest resumed = controller.resumeDeferred(this::rejectOverloaded);
+                if (resumed != null) {
+                    dispatch(resumed);
+                }
+                return false;
+            default:
+                rejectOverloaded(request);
+                return false;
+        }
+    }
+
+    /**
+     * Route an admitted request to its reader queue (async mode) or handle it now
+     */
+    private void dispatch(AccessRequest request) {
+        AsyncSettings settings = asyncSettings;
+        if (settings != null) {
+            queueOf(request.getBadgeReaderId(), settings).submit(request);
+        } else {
+            handleAccessRequest(request);
         }
     }
 
     /**
-     * Handle property change event (from badge reader)
+     * Handle property change event (compatibility with bean-based readers, and ARP policy
+     * snapshot changes)
      */
     @Override
     public void propertyChange(PropertyChangeEvent evt) {
         if ("accessRequest".equals(evt.getPropertyName())) {
             AccessRequest request = (AccessRequest) evt.getNewValue();
-            handleAccessRequest(request);
+            onAccessRequest(badgeReaders.get(request.getBadgeReaderId()), request);
+        } else if ("snapshot".equals(evt.getPropertyName())) {
+            SwipeCoalescer repeats = coalescer;
+            if (repeats != null) {
+                repeats.clear(); // Revoked or edited access must not be granted from a cached decision
+            }
         }
     }
 
@@ -81,17 +421,198 @@ public class Router implements PropertyChangeListener {
      * Handle access request
      */
     private void handleAccessRequest(AccessRequest request) {
-        // Forward to access request processor
-        AccessResponse response = arp.processRequest(request);
-        
+        AccessRequest next = request;
+        while (next != null) {
+            // Forward to access request processor
+            LatencyMonitor.Target latency = latencyMonitor.targetOf(next);
+            long start = latency.recordSince(LatencyMonitor.Stage.ROUTING, next.getCreatedNanos());
+            AccessResponse response = arp.processRequest(next);
+            latency.recordSince(LatencyMonitor.Stage.PROCESSING, start);
+            deliverResponse(next, response, latency);
+            next = releaseAdmission();
+        }
+    }
+
+    /**
+     * Release the admission slot of an answered request
+     * @return Deferred request to handle on this thread (synchronous mode), or null
+     */
+    private AccessRequest releaseAdmission() {
+        AdmissionController controller = admission;
+        if (controller == null) {
+            return null;
+        }
+        AccessRequest resumed = controller.release(this::rejectOverloaded);
+        if (resumed != null && asyncSettings != null) {
+            dispatch(resumed);
+            return null;
+        }
+        return resumed;
+    }
+
+    /**
+     * Answer a request dropped or rejected by its reader queue and free its admission slot
+     */
+    private void onQueueOverflow(AccessRequest request) {
+        rejectOverloaded(request);
+        AccessRequest resumed = releaseAdmission();
+        if (resumed != null) {
+            handleAccessRequest(resumed);
+        }
+    }
+
+    /**
+     * Get queue of a badge reader, created on first use
+     */
+    private ReaderRequestQueue queueOf(String readerId, AsyncSettings settings) {
+        String key = readerId != null ? readerId : "";
+        return readerQueues.computeIfAbsent(key, id -> new ReaderRequestQueue(id, settings.queueCapacity,
+            settings.policy, settings.executor, this::handleAccessRequest, this::onQueueOverflow));
+    }
+
+    /**
+     * Answer a dropped, rejected or shed request so the reader does not wait for it
+     * (not an access decision, so access event listeners are not notified)
+     */
+    private void rejectOverloaded(AccessRequest request) {
+        AccessResponse response = new AccessResponse(request.getBadgeReaderId(), false, ReasonCode.OVERLOADED);
+        BadgeReader reader = readerOf(request);
+        if (reader != null) {
+            reader.handleAccessResponse(request, response);
+        }
+        completeRepeats(request, response);
+    }
+
+    /**
+     * Answer a throttled request without deciding it (not an access event, not logged)
+     */
+    private void rejectRateLimited(AccessRequest request) {
+        AccessResponse response = new AccessResponse(request.getBadgeReaderId(), false, ReasonCode.RATE_LIMITED);
+        BadgeReader reader = readerOf(request);
+        if (reader != null) {
+            reader.handleAccessResponse(request, response);
+        }
+        completeRepeats(request, response);
+    }
+
+    /**
+     * Get reader to answer a request: the one it came from, else the one registered under its ID
+     */
+    private BadgeReader readerOf(AccessRequest request) {
+        BadgeReader origin = request.getOrigin();
+        return origin != null ? origin : badgeReaders.get(request.getBadgeReaderId());
+    }
+
+    /**
+     * Answer a repeated swipe with an earlier decision (not an access event, not logged)
+     */
+    private void answerRepeat(AccessRequest request, AccessResponse response) {
+        BadgeReader reader = readerOf(request);
+        if (reader != null) {
+            reader.handleAccessResponse(request, response);
+        }
+    }
+
+    /**
+     * Answer repeats that arrived while this request was being decided
+     */
+    private void completeRepeats(AccessRequest request, AccessResponse response) {
+        SwipeCoalescer repeats = coalescer;
+        if (repeats != null) {
+            repeats.complete(request, response, this::answerRepeat);
+        }
+    }
+
+    /**
+     * Get queue of each badge reader (depth and drop/reject metrics), empty in synchronous mode
+     */
+    public Map<String, ReaderRequestQueue> getReaderQueues() {
+        return Collections.unmodifiableMap(readerQueues);
+    }
+
+    /**
+     * Get total number of requests waiting in reader queues
+     */
+    public int getQueuedRequestCount() {
+        int total = 0;
+        for (ReaderRequestQueue queue : readerQueues.values()) {
+            total += queue.getDepth();
+        }
+        return total;
+    }
+
+    /**
+     * Notify listeners and forward response back to corresponding badge reader
+     */
+    private void deliverResponse(AccessRequest request, AccessResponse response, LatencyMonitor.Target latency) {
         // Notify listeners
         notifyAccessEvent(request, response);
         
         // Forward response back to corresponding badge reader
-        BadgeReader reader = badgeReaders.get(request.getBadgeReaderId());
+        BadgeReader reader = readerOf(request);
+        long end;
         if (reader != null) {
-            reader.handleAccessResponse(response);
+            long start = System.nanoTime();
+            reader.handleAccessResponse(request, response);
+            end = latency.recordSince(LatencyMonitor.Stage.RESPONSE_DELIVERY, start);
+        } else {
+            end = System.nanoTime();
         }
+        latency.record(LatencyMonitor.Stage.TOTAL, end - request.getCreatedNanos());
+        completeRepeats(request, response);
+    }
+
+    /**
+     * Buffer access request (e.g. from a gate controller sending bursts)
+     * Buffered requests are decided by drainPendingRequests()
+     */
+    public void submitAccessRequest(AccessRequest request) {
+        pendingRequests.offer(request);
+    }
+
+    /**
+     * Decide all buffered requests in one batch and deliver the responses
+     * @return Number of requests processed
+     */
+    public int drainPendingRequests() {
+        List<AccessRequest> batch = new ArrayList<>();
+        pendingRequests.drainTo(batch);
+        if (!batch.isEmpty()) {
+            routeBatch(batch);
+        }
+        return batch.size();
+    }
+
+    /**
+     * Decide a batch of requests with one ARP call and deliver the responses
+     * Throttled requests are answered with RATE_LIMITED and left out of the batch
+     */
+    public void routeBatch(List<AccessRequest> requests) {
+        AccessRequest[] batch = requests.toArray(new AccessRequest[0]);
+        RateLimiter limiter = rateLimiter;
+        if (limiter != null) {
+            CompiledPolicy policy = arp.getSnapshot().getCompiledPolicy();
+            int allowed = 0;
+            for (AccessRequest request : batch) {
+                if (limiter.tryAcquire(request, policy)) {
+                    batch[allowed++] = request;
+                } else {
+                    rejectRateLimited(request);
+                }
+            }
+            batch = Arrays.copyOf(batch, allowed);
+        }
+        AccessResponse[] responses = arp.processBatch(batch);
+        for (int i = 0; i < batch.length; i++) {
+            deliverResponse(batch[i], responses[i], latencyMonitor.targetOf(batch[i]));
+        }
+    }
+
+    /**
+     * Get number of buffered requests
+     */
+    public int getPendingRequestCount() {
+        return pendingRequests.size();
     }
     
     /**
@@ -0,0 +1,231 @@
+// Group 2 ChenGong ZhangZhao LiangYiKuo
+package com.bigcomp.accesscontrol.core;
+
+import com.bigcomp.accesscontrol.model.AccessRequest;
+import com.bigcomp.accesscontrol.model.AccessResponse;
+import com.bigcomp.accesscontrol.model.AccessResponse.ReasonCode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Swipe Coalescer - Debounces repeated swipes of the same badge on the same reader
+ * The first swipe is decided normally. Repeats within the window get its decision without
+ * going through the ARP, access event listeners or the log; repeats arriving while the first
+ * swipe is still being decided are answered when it is. OVERLOADED and RATE_LIMITED answers
+ * are not reused, and neither is a decision started before the last clear().
+ */
+public class SwipeCoalescer {
+    public static final long DEFAULT_WINDOW_MILLIS = 1500;
+    private static final int SWEEP_INTERVAL = 1024; // New entries between sweeps of expired ones
+
+    private final long windowNanos;
+    private final Map<Key, Entry> entries;
+    private final LongAdder coalescedCount; // Repeats answered from a decision
+    private final LongAdder waitedCount; // Repeats answered when the first swipe was decided
+    private final LongAdder decidedCount; // Swipes passed on to be decided
+    private final AtomicLong insertions;
+    private final AtomicLong generation; // Incremented by clear(), entries of older ones are not reused
+
+    public SwipeCoalescer(long windowMillis) {
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.entries = new ConcurrentHashMap<>();
+        this.coalescedCount = new LongAdder();
+        this.waitedCount = new LongAdder();
+        this.decidedCount = new LongAdder();
+        this.insertions = new AtomicLong();
+        this.generation = new AtomicLong();
+    }
+
+    /**
+     * Key - Badge code and reader ID
+     */
+    private static final class Key {
+        private final String badgeCode;
+        private final String readerId;
+        private final int hash;
+
+        Key(String badgeCode, String readerId) {
+            this.badgeCode = badgeCode;
+            this.readerId = readerId;
+            this.hash = 31 * Objects.hashCode(badgeCode) + Objects.hashCode(readerId);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return Objects.equals(badgeCode, other.badgeCode) && Objects.equals(readerId, other.readerId);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Entry - First swipe of a burst and its decision (guarded by the entry)
+     */
+    private static final class Entry {
+        private final AccessRequest leader;
+        private final long since; // System.nanoTime() of the first swipe
+        private final long generation; // Coalescer generation the swipe was registered in
+        private AccessResponse response; // Null while being decided
+        private long decidedAt; // System.nanoTime() of the decision, the window starts here
+        private List<AccessRequest> waiters; // Repeats waiting for the decision
+
+        Entry(AccessRequest leader, long since, long generation) {
+            this.leader = leader;
+            this.since = since;
+            this.generation = generation;
+        }
+
+        boolean isExpired(long now, long windowNanos) {
+            return now - (response != null ? decidedAt : since) > windowNanos;
+        }
+    }
+
+    /**
+     * Answer a repeated swipe, or register it as the first of a burst
+     * @param responder Receives the repeat and the decision to send back
+     * @return true if the request was coalesced (answered now or when the first swipe is decided),
+     *         false if it must be decided
+     */
+    public boolean coalesce(AccessRequest request, BiConsumer<AccessRequest, AccessResponse> responder) {
+        Key key = new Key(request.getBadgeCode(), request.getBadgeReaderId());
+        long now = System.nanoTime();
+        long current = generation.get();
+        while (true) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                if (entries.putIfAbsent(key, new Entry(request, now, current)) == null) {
+                    registered();
+                    return false;
+                }
+                continue;
+            }
+            AccessResponse cached;
+            synchronized (entry) {
+                if (entry.isExpired(now, windowNanos) || entry.generation != current) {
+                    Entry fresh = new Entry(request, now, current);
+                    if (!entries.replace(key, entry, fresh)) {
+                        continue;
+                    }
+                    // A first swipe that was never answered hands its waiters over
+                    fresh.waiters = entry.response == null ? entry.waiters : null;
+                    entry.waiters = null;
+                    registered();
+                    return false;
+                }
+                cached = entry.response;
+                if (cached == null) {
+                    if (entry.waiters == null) {
+                        entry.waiters = new ArrayList<>(2);
+                    }
+                    entry.waiters.add(request);
+                    waitedCount.increment();
+                    return true;
+                }
+            }
+            coalescedCount.increment();
+            responder.accept(request, cached);
+            return true;
+        }
+    }
+
+    /**
+     * Record the decision of a swipe and answer the repeats waiting for it
+     * (requests that were not registered by coalesce() are ignored)
+     */
+    public void complete(AccessRequest request, AccessResponse response,
+                         BiConsumer<AccessRequest, AccessResponse> responder) {
+        Key key = new Key(request.getBadgeCode(), request.getBadgeReaderId());
+        Entry entry = entries.get(key);
+        if (entry == null || entry.leader != request) {
+            return;
+        }
+        List<AccessRequest> waiters;
+        synchronized (entry) {
+            waiters = entry.waiters;
+            entry.waiters = null;
+            if (response.getReasonCode() == ReasonCode.OVERLOADED
+                    || response.getReasonCode() == ReasonCode.RATE_LIMITED) {
+                entries.remove(key, entry); // The next swipe is a real retry
+            } else if (entry.generation != generation.get()) {
+                entries.remove(key, entry); // May have been decided under the old policy
+            } else {
+                entry.response = response;
+                entry.decidedAt = System.nanoTime();
+            }
+        }
+        if (waiters != null) {
+            for (AccessRequest waiter : waiters) {
+                responder.accept(waiter, response);
+            }
+        }
+    }
+
+    /**
+     * Forget all decisions (called by the Router after a policy change); swipes being decided
+     * keep their waiters, but their decisions are not reused
+     */
+    public void clear() {
+        generation.incrementAndGet();
+        entries.values().removeIf(entry -> {
+            synchronized (entry) {
+                return entry.response != null;
+            }
+        });
+    }
+
+    private void registered() {
+        decidedCount.increment();
+        if (insertions.incrementAndGet() % SWEEP_INTERVAL == 0) {
+            long now = System.nanoTime();
+            entries.values().removeIf(entry -> {
+                synchronized (entry) {
+                    return entry.isExpired(now, windowNanos) && entry.waiters == null;
+                }
+            });
+        }
+    }
+
+    public long getWindowMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(windowNanos);
+    }
+
+    /**
+     * Get number of repeats answered with an earlier decision
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.sum() + waitedCount.sum();
+    }
+
+    /**
+     * Get number of repeats that waited for the first swipe to be decided
+     */
+    public long getWaitedCount() {
+        return waitedCount.sum();
+    }
+
+    /**
+     * Get number of swipes passed on to be decided
+     */
+    public long getDecidedCount() {
+        return decidedCount.sum();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,119 @@
+// Group 2 ChenGong ZhangZhao LiangYiKuo
+package com.bigcomp.accesscontrol.core;
+
+import java.beans.PropertyChangeListener;
+import java.beans.PropertyChangeSupport;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Unknown Badge Monitor - Counts swipes with unknown badge codes per badge reader
+ * Fires an "unknownBadgeAlert" event (new value: reader ID) once per window when a
+ * reader sees at least the alert threshold of unknown codes, which suggests probing
+ */
+public class UnknownBadgeMonitor {
+    public static final int DEFAULT_ALERT_THRESHOLD = 10;
+    public static final long DEFAULT_WINDOW_SECONDS = 60;
+
+    private final ConcurrentHashMap<String, ReaderCounter> counters; // Reader ID -> counter
+    private final LongAdder totalUnknown;
+    private volatile int alertThreshold;
+    private volatile long windowNanos;
+    private final PropertyChangeSupport pcs;
+
+    public UnknownBadgeMonitor() {
+        this.counters = new ConcurrentHashMap<>();
+        this.totalUnknown = new LongAdder();
+        this.alertThreshold = DEFAULT_ALERT_THRESHOLD;
+        this.windowNanos = TimeUnit.SECONDS.toNanos(DEFAULT_WINDOW_SECONDS);
+        this.pcs = new PropertyChangeSupport(this);
+    }
+
+    /**
+     * Counter of one reader
+     */
+    private static final class ReaderCounter {
+        private final LongAdder total = new LongAdder();
+        private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+        private final AtomicInteger windowCount = new AtomicInteger();
+    }
+
+    /**
+     * Record a swipe with an unknown badge code
+     */
+    public void record(String readerId) {
+        String key = readerId != null ? readerId : "";
+        ReaderCounter counter = counters.computeIfAbsent(key, k -> new ReaderCounter());
+        counter.total.increment();
+        totalUnknown.increment();
+
+        // Start a new window if the current one is over
+        long now = System.nanoTime();
+        long start = counter.windowStart.get();
+        if (now - start >= windowNanos && counter.windowStart.compareAndSet(start, now)) {
+            counter.windowCount.set(0);
+        }
+        if (counter.windowCount.incrementAndGet() == alertThreshold) {
+            pcs.firePropertyChange("unknownBadgeAlert", null, key);
+        }
+    }
+
+    /**
+     * Get number of unknown badge codes seen by a reader
+     */
+    public long getUnknownCount(String readerId) {
+        ReaderCounter counter = counters.get(readerId != null ? readerId : "");
+        return counter != null ? counter.total.sum() : 0;
+    }
+
+    /**
+     * Get number of unknown badge codes seen by each reader
+     */
+    public Map<String, Long> getUnknownCounts() {
+        Map<String, Long> counts = new HashMap<>();
+        for (Map.Entry<String, ReaderCounter> entry : counters.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().total.sum());
+        }
+        return counts;
+    }
+
+    public long getTotalUnknownCount() {
+        return totalUnknown.sum();
+    }
+
+    /**
+     * Reset counters of all readers
+     */
+    public void reset() {
+        counters.clear();
+        totalUnknown.reset();
+    }
+
+    /**
+     * Set number of unknown codes within one window that triggers an alert
+     */
+    public void setAlertThreshold(int alertThreshold) {
+        this.alertThreshold = alertThreshold;
+    }
+
+    public int getAlertThreshold() {
+        return alertThreshold;
+    }
+
+    public void setWindow(long amount, TimeUnit unit) {
+        this.windowNanos = unit.toNanos(amount);
+    }
+
+    public void addPropertyChangeListener(PropertyChangeListener listener) {
+        pcs.addPropertyChangeListener(listener);
+    }
+
+    public void removePropertyChangeListener(PropertyChangeListener listener) {
+        pcs.removePropertyChangeListener(listener);
+    }
+}
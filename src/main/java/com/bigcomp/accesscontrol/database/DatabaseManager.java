@@ -2,6 +2,8 @@
 package com.bigcomp.accesscontrol.database;
 
 import com.bigcomp.accesscontrol.model.*;
+import java.beans.PropertyChangeListener;
+import java.beans.PropertyChangeSupport;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -13,8 +15,10 @@ import java.util.*;
 public class DatabaseManager {
     private static final String DB_URL = "jdbc:sqlite:data/access_control.db";
     private Connection connection;
+    private PropertyChangeSupport pcs; // Notifies listeners of writes (for incremental reload)
 
     public DatabaseManager() {
+        this.pcs = new PropertyChangeSupport(this);
         initializeDatabase();
         updateResourceGroupNames();
     }
@@ -173,6 +177,7 @@ public class DatabaseManager {
             pstmt.setString(6, user.getBadgeId());
             pstmt.executeUpdate();
         }
+        pcs.firePropertyChange("user", null, user.getId());
     }
 
     /**
@@ -191,6 +196,7 @@ public class DatabaseManager {
             pstmt.setInt(7, badge.isValid() ? 1 : 0);
             pstmt.executeUpdate();
         }
+        pcs.firePropertyChange("user", null, badge.getUserId());
     }
 
     /**
@@ -210,6 +216,7 @@ public class DatabaseManager {
             pstmt.setString(8, resource.getBadgeReaderId());
             pstmt.executeUpdate();
         }
+        pcs.firePropertyChange("resource", null, resource.getId());
     }
 
     /**
@@ -417,16 +424,18 @@ public class DatabaseManager {
     }
 
     /**
-     * Load resource group mapping
+     * Load resource group mapping (a resource may belong to several groups)
+     * @return Resource ID -> group names, sorted by name
      */
-    public Map<String, String> loadResourceGroups() {
-        Map<String, String> result = new HashMap<>();
+    public Map<String, Set<String>> loadResourceGroups() {
+        Map<String, Set<String>> result = new HashMap<>();
         try {
             String sql = "SELECT resource_id, group_name FROM resource_group_members";
             try (Statement stmt = connection.createStatement();
                  ResultSet rs = stmt.executeQuery(sql)) {
                 while (rs.next()) {
-                    result.put(rs.getString("resource_id"), rs.getString("group_name"));
+                    result.computeIfAbsent(rs.getString("resource_id"), k -> new TreeSet<>())
+                          .add(rs.getString("group_name"));
                 }
             }
         } catch (SQLException e) {
@@ -435,6 +444,184 @@ public class DatabaseManager {
         return result;
     }
 
+    /**
+     * Load badge expiry indexed by badge code, as epoch seconds (local time read as UTC)
+     * @return Badge code -> expiry, Long.MIN_VALUE if revoked, Long.MAX_VALUE if it never expires
+     */
+    public Map<String, Long> loadBadgeExpiry() {
+        Map<String, Long> result = new HashMap<>();
+        try {
+            String sql = "SELECT code, expiration_date, valid FROM badges";
+            try (Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery(sql)) {
+                while (rs.next()) {
+                    result.put(rs.getString("code"), readBadgeExpiry(rs));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Failed to load badge expiry: " + e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * Load badge expiry of a single user (incremental reload)
+     * @return Badge code -> expiry, empty if the user does not exist or has no badge
+     */
+    public Map<String, Long> loadBadgeExpiry(String userId) {
+        Map<String, Long> result = new HashMap<>();
+        try {
+            String sql = "SELECT b.code, b.expiration_date, b.valid FROM badges b " +
+                "JOIN users u ON b.id = u.badge_id WHERE u.id = ?";
+            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+                pstmt.setString(1, userId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        result.put(rs.getString("code"), readBadgeExpiry(rs));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Failed to load badge expiry: " + e.getMessage());
+        }
+        return result;
+    }
+
+    private long readBadgeExpiry(ResultSet rs) throws SQLException {
+        if (rs.getInt("valid") != 1) {
+            return Long.MIN_VALUE;
+        }
+        String expirationDate = rs.getString("expiration_date");
+        if (expirationDate == null) {
+            return Long.MAX_VALUE;
+        }
+        try {
+            return AccessRequest.toEpochSecond(LocalDateTime.parse(expirationDate));
+        } catch (Exception e) {
+            System.err.println("Invalid badge expiration date: " + expirationDate);
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Load a single user indexed by badge code (incremental reload)
+     * @return Badge code -> User, empty if the user does not exist or has no badge
+     */
+    public Map<String, User> loadUsersByBadgeCode(String userId) {
+        Map<String, User> result = new HashMap<>();
+        try {
+            String sql = "SELECT u.*, b.code FROM users u " +
+                "JOIN badges b ON u.badge_id = b.id WHERE u.id = ?";
+            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+                pstmt.setString(1, userId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        User user = new User(
+                            rs.getString("id"),
+                            User.Gender.valueOf(rs.getString("gender")),
+                            rs.getString("first_name"),
+                            rs.getString("last_name"),
+                            User.UserType.valueOf(rs.getString("user_type"))
+                        );
+                        user.setBadgeId(rs.getString("badge_id"));
+                        result.put(rs.getString("code"), user);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Failed to load user: " + e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * Load profile names of a single user (incremental reload)
+     */
+    public Set<String> loadUserProfiles(String userId) {
+        Set<String> result = new HashSet<>();
+        try {
+            String sql = "SELECT bp.profile_name FROM badges b " +
+                "JOIN badge_profiles bp ON b.id = bp.badge_id WHERE b.user_id = ?";
+            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+                pstmt.setString(1, userId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        result.add(rs.getString("profile_name"));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Failed to load user profiles: " + e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * Load a single resource (incremental reload)
+     * @return Resource, or null if it does not exist
+     */
+    public Resource loadResource(String resourceId) {
+        try {
+            String sql = "SELECT * FROM resources WHERE id = ?";
+            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+                pstmt.setString(1, resourceId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs.next()) {
+                        Resource resource = new Resource(
+                            rs.getString("id"),
+                            rs.getString("name"),
+                            Resource.ResourceType.valueOf(rs.getString("type")),
+                            rs.getString("location"),
+                            rs.getString("building"),
+                            rs.getString("floor")
+                        );
+                        resource.setState(Resource.ResourceState.valueOf(rs.getString("state")));
+                        resource.setBadgeReaderId(rs.getString("badge_reader_id"));
+                        return resource;
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Failed to load resource: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Load groups of a single resource (incremental reload)
+     * @return Group names sorted by name, empty if the resource does not belong to any group
+     */
+    public Set<String> loadResourceGroups(String resourceId) {
+        Set<String> result = new TreeSet<>();
+        try {
+            String sql = "SELECT group_name FROM resource_group_members WHERE resource_id = ?";
+            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+                pstmt.setString(1, resourceId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        result.add(rs.getString("group_name"));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Failed to load resource group: " + e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * Find user ID of badge holder
+     */
+    private String findUserIdByBadgeId(String badgeId) throws SQLException {
+        String sql = "SELECT user_id FROM badges WHERE id = ?";
+        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            pstmt.setString(1, badgeId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getString("user_id") : null;
+            }
+        }
+    }
+
     /**
      * Log access event
      * Note: Actual logging is handled by LogManager, this method is kept for compatibility
@@ -453,6 +640,10 @@ public class DatabaseManager {
             pstmt.setString(2, profileName);
             pstmt.executeUpdate();
         }
+        String userId = findUserIdByBadgeId(badgeId);
+        if (userId != null) {
+            pcs.firePropertyChange("user", null, userId);
+        }
     }
 
     /**
@@ -465,6 +656,32 @@ public class DatabaseManager {
             pstmt.setString(2, groupName);
             pstmt.executeUpdate();
         }
+        pcs.firePropertyChange("resource", null, resourceId);
+    }
+
+    /**
+     * Unlink resource from group
+     */
+    public void unlinkResourceFromGroup(String resourceId, String groupName) throws SQLException {
+        String sql = "DELETE FROM resource_group_members WHERE resource_id = ? AND group_name = ?";
+        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            pstmt.setString(1, resourceId);
+            pstmt.setString(2, groupName);
+            pstmt.executeUpdate();
+        }
+        pcs.firePropertyChange("resource", null, resourceId);
+    }
+
+    /**
+     * Delete all resource associations of a group (when the group is deleted)
+     */
+    public void deleteResourceGroupMembers(String groupName) throws SQLException {
+        String sql = "DELETE FROM resource_group_members WHERE group_name = ?";
+        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            pstmt.setString(1, groupName);
+            pstmt.executeUpdate();
+        }
+        pcs.firePropertyChange("resourceGroup", null, groupName);
     }
     
     /**
@@ -507,6 +724,7 @@ public class DatabaseManager {
             pstmt.setString(1, userId);
             pstmt.executeUpdate();
         }
+        pcs.firePropertyChange("user", null, userId);
     }
     
     /**
@@ -548,6 +766,19 @@ public class DatabaseManager {
             pstmt.setString(1, resourceId);
             pstmt.executeUpdate();
         }
+        pcs.firePropertyChange("resource", null, resourceId);
+    }
+
+    /**
+     * Add property change listener
+     * Fired after writes: "user" (user ID), "resource" (resource ID), "resourceGroup" (group name)
+     */
+    public void addPropertyChangeListener(PropertyChangeListener listener) {
+        pcs.addPropertyChangeListener(listener);
+    }
+
+    public void removePropertyChangeListener(PropertyChangeListener listener) {
+        pcs.removePropertyChangeListener(listener);
     }
 
     /**
@@ -2,6 +2,7 @@
 package com.bigcomp.accesscontrol.gui;
 
 import com.bigcomp.accesscontrol.core.AccessControlSystem;
+import com.bigcomp.accesscontrol.model.BadgeReader;
 import javax.swing.*;
 import java.awt.*;
 
@@ -13,6 +14,9 @@ public class MainWindow extends JFrame {
     private AccessControlSystem accessControlSystem;
 
     public MainWindow() {
+        // Badge readers also echo their display to the console in the interactive application
+        BadgeReader.setConsoleEcho(true);
+
         // Create shared access control system instance
         this.accessControlSystem = new AccessControlSystem();
         
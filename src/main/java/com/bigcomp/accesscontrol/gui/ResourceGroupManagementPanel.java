@@ -14,7 +14,6 @@ import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.util.*;
 import java.util.List;
-import java.sql.PreparedStatement;
 
 /**
  * Resource Group Management Panel
@@ -378,19 +377,14 @@ public class ResourceGroupManagementPanel extends JPanel {
                 // Delete resource group
                 groupManager.deleteGroup(selected);
                 
-                // Delete associated records from database
+                // Delete associated records from database (also updates in-memory data)
                 try {
-                    String sql = "DELETE FROM resource_group_members WHERE group_name = ?";
-                    try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
-                        pstmt.setString(1, selected);
-                        pstmt.executeUpdate();
-                    }
+                    dbManager.deleteResourceGroupMembers(selected);
                 } catch (Exception e) {
                     // Ignore database delete errors, table may not exist or already deleted
                 }
                 
                 // Reload data
-                accessControlSystem.getAccessRequestProcessor().reloadData();
                 loadGroups();
                 clearGroupInfo();
                 refreshAvailableResourceTable();
@@ -464,7 +458,6 @@ public class ResourceGroupManagementPanel extends JPanel {
             try {
                 groupManager.saveGroup(group);
                 dbManager.linkResourceToGroup(resourceId, selected);
-                accessControlSystem.getAccessRequestProcessor().reloadData();
                 loadSelectedGroup();
                 refreshAvailableResourceTable(); // Refresh available resource list
                 JOptionPane.showMessageDialog(this, "Resource added to resource group", "Success", 
@@ -505,7 +498,6 @@ public class ResourceGroupManagementPanel extends JPanel {
         try {
             groupManager.saveGroup(group);
             dbManager.linkResourceToGroup(resourceId, selected);
-            accessControlSystem.getAccessRequestProcessor().reloadData();
             loadSelectedGroup();
             refreshAvailableResourceTable();
             JOptionPane.showMessageDialog(this, "Resource added to resource group", "Success", 
@@ -544,30 +536,35 @@ public class ResourceGroupManagementPanel extends JPanel {
         int addedCount = 0;
         int skippedCount = 0;
         
-        for (int row : selectedRows) {
-            String resourceId = (String) availableResourceTableModel.getValueAt(row, 0);
-            String status = (String) availableResourceTableModel.getValueAt(row, 4);
+        // Defer in-memory updates to one reload instead of one delta per resource
+        accessControlSystem.getAccessRequestProcessor().beginBulkUpdate();
+        try {
+            for (int row : selectedRows) {
+                String resourceId = (String) availableResourceTableModel.getValueAt(row, 0);
+                String status = (String) availableResourceTableModel.getValueAt(row, 4);
             
-            if ("Added".equals(status)) {
-                skippedCount++;
-                continue;
-            }
+                if ("Added".equals(status)) {
+                    skippedCount++;
+                    continue;
+                }
             
-            if (!group.getResourceIds().contains(resourceId)) {
-                group.addResource(resourceId);
-                try {
-                    dbManager.linkResourceToGroup(resourceId, selected);
-                    addedCount++;
-                } catch (Exception e) {
-                    // Ignore single resource add errors
+                if (!group.getResourceIds().contains(resourceId)) {
+                    group.addResource(resourceId);
+                    try {
+                        dbManager.linkResourceToGroup(resourceId, selected);
+                        addedCount++;
+                    } catch (Exception e) {
+                        // Ignore single resource add errors
+                    }
                 }
             }
+        } finally {
+            accessControlSystem.getAccessRequestProcessor().endBulkUpdate();
         }
         
         if (addedCount > 0) {
             try {
                 groupManager.saveGroup(group);
-                accessControlSystem.getAccessRequestProcessor().reloadData();
                 loadSelectedGroup();
                 refreshAvailableResourceTable();
                 JOptionPane.showMessageDialog(this, 
@@ -614,14 +611,8 @@ public class ResourceGroupManagementPanel extends JPanel {
                 group.removeResource(resourceId);
                 try {
                     groupManager.saveGroup(group);
-                    // Delete association from database
-                    String sql = "DELETE FROM resource_group_members WHERE resource_id = ? AND group_name = ?";
-                    try (PreparedStatement pstmt = accessControlSystem.getDatabaseManager().getConnection().prepareStatement(sql)) {
-                        pstmt.setString(1, resourceId);
-                        pstmt.setString(2, selected);
-                        pstmt.executeUpdate();
-                    }
-                    accessControlSystem.getAccessRequestProcessor().reloadData();
+                    // Delete association from database (also updates in-memory data)
+                    accessControlSystem.getDatabaseManager().unlinkResourceFromGroup(resourceId, selected);
                     loadSelectedGroup();
                     refreshAvailableResourceTable(); // Refresh available resource list
                     JOptionPane.showMessageDialog(this, "Resource removed from resource group", "Success", 
@@ -414,9 +414,6 @@ public class ResourceManagementPanel extends JPanel {
                     groupManager.saveGroup(group);
                 }
                 
-                // Reload in-memory data
-                accessControlSystem.getAccessRequestProcessor().reloadData();
-                
                 JOptionPane.showMessageDialog(this, 
                     "Resource has been linked to resource group \"" + selectedGroup + "\"\n\n" +
                     "Resource ID: " + resourceId + "\n" +
@@ -446,9 +443,6 @@ public class ResourceManagementPanel extends JPanel {
                     resource.getState().toString()
                 });
             }
-            
-            // Reload in-memory data
-            accessControlSystem.getAccessRequestProcessor().reloadData();
         } catch (Exception e) {
             JOptionPane.showMessageDialog(this, "Failed to load resources: " + e.getMessage(), 
                 "Error", JOptionPane.ERROR_MESSAGE);
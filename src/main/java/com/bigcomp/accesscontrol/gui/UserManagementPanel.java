@@ -211,9 +211,6 @@ public class UserManagementPanel extends JPanel {
             // Automatically assign profile based on user type
             autoAssignProfileByUserType(user, badgeId);
             
-            // Reload in-memory data
-            accessControlSystem.getAccessRequestProcessor().reloadData();
-            
             loadUsers();
             JOptionPane.showMessageDialog(this, "Badge created successfully, profile automatically assigned", "Success", 
                 JOptionPane.INFORMATION_MESSAGE);
@@ -441,7 +438,6 @@ public class UserManagementPanel extends JPanel {
                 
                 // Assign profile (will be added to existing profiles, not overwritten)
                 dbManager.linkBadgeToProfile(user.getBadgeId(), selectedProfile);
-                accessControlSystem.getAccessRequestProcessor().reloadData();
                 
                 // Display all current profiles for user
                 userProfiles = dbManager.loadUserProfiles();
@@ -482,9 +478,6 @@ public class UserManagementPanel extends JPanel {
                     user.getBadgeId() != null ? user.getBadgeId() : "None"
                 });
             }
-            
-            // Reload in-memory data (for access control, only users with badges are needed)
-            accessControlSystem.getAccessRequestProcessor().reloadData();
         } catch (Exception e) {
             JOptionPane.showMessageDialog(this, "Failed to load users: " + e.getMessage(), 
                 "Error", JOptionPane.ERROR_MESSAGE);
@@ -506,48 +499,52 @@ public class UserManagementPanel extends JPanel {
             int errorCount = 0;
             StringBuilder details = new StringBuilder();
             
-            for (User user : allUsers.values()) {
-                // Check if user has badge
-                if (user.getBadgeId() == null || user.getBadgeId().isEmpty()) {
-                    skippedNoBadge++;
-                    continue;
-                }
+            // Defer in-memory updates to one reload instead of one delta per user
+            accessControlSystem.getAccessRequestProcessor().beginBulkUpdate();
+            try {
+                for (User user : allUsers.values()) {
+                    // Check if user has badge
+                    if (user.getBadgeId() == null || user.getBadgeId().isEmpty()) {
+                        skippedNoBadge++;
+                        continue;
+                    }
                 
-                // Check if user already has profiles
-                Set<String> existingProfiles = userProfiles.get(user.getId());
-                if (existingProfiles != null && !existingProfiles.isEmpty()) {
-                    skippedWithProfile++;
-                    continue;
-                }
+                    // Check if user already has profiles
+                    Set<String> existingProfiles = userProfiles.get(user.getId());
+                    if (existingProfiles != null && !existingProfiles.isEmpty()) {
+                        skippedWithProfile++;
+                        continue;
+                    }
                 
-                // Automatically assign profile
-                try {
-                    String profileName = getDefaultProfileName(user.getUserType());
-                    if (profileName != null) {
-                        // Check if profile exists, create if not
-                        var profileManager = accessControlSystem.getProfileManager();
-                        Profile profile = profileManager.getProfile(profileName);
-                        if (profile == null) {
-                            createDefaultProfile(profileName, user.getUserType());
-                        }
+                    // Automatically assign profile
+                    try {
+                        String profileName = getDefaultProfileName(user.getUserType());
+                        if (profileName != null) {
+                            // Check if profile exists, create if not
+                            var profileManager = accessControlSystem.getProfileManager();
+                            Profile profile = profileManager.getProfile(profileName);
+                            if (profile == null) {
+                                createDefaultProfile(profileName, user.getUserType());
+                            }
                         
-                        // Assign profile
-                        dbManager.linkBadgeToProfile(user.getBadgeId(), profileName);
-                        assignedCount++;
-                        details.append("  ✓ ").append(user.getFullName())
-                               .append(" (").append(user.getUserType())
-                               .append(") -> ").append(profileName).append("\n");
+                            // Assign profile
+                            dbManager.linkBadgeToProfile(user.getBadgeId(), profileName);
+                            assignedCount++;
+                            details.append("  ✓ ").append(user.getFullName())
+                                   .append(" (").append(user.getUserType())
+                                   .append(") -> ").append(profileName).append("\n");
+                        }
+                    } catch (Exception e) {
+                        errorCount++;
+                        details.append("  ✗ ").append(user.getFullName())
+                               .append(" -> Failed: ").append(e.getMessage()).append("\n");
                     }
-                } catch (Exception e) {
-                    errorCount++;
-                    details.append("  ✗ ").append(user.getFullName())
-                           .append(" -> Failed: ").append(e.getMessage()).append("\n");
                 }
+            } finally {
+                // Reload in-memory data once
+                accessControlSystem.getAccessRequestProcessor().endBulkUpdate();
             }
             
-            // Reload in-memory data
-            accessControlSystem.getAccessRequestProcessor().reloadData();
-            
             // Display results
             String message = String.format(
                 "Auto-assign profiles completed!\n\n" +
@@ -0,0 +1,603 @@
+// Group 2 ChenGong ZhangZhao LiangYiKuo
+package com.bigcomp.accesscontrol.logging;
+
+import com.bigcomp.accesscontrol.model.AccessRequest;
+import com.bigcomp.accesscontrol.model.AccessResponse;
+import com.bigcomp.accesscontrol.model.User;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Async Log Writer - Group-commit writer of the daily access log files
+ * Callers only put a record on a bounded queue (waiting only when it is full). A single
+ * writer thread drains the queue, encodes records into one reused buffer without
+ * String.format, and writes the buffer to the current day's FileChannel, kept open, once
+ * it holds flushBytes or its oldest record is flushMillis old, optionally with fsync.
+ * In BINARY format records go to LogSegment files instead, one per day unless it fills
+ * up; a segment is sealed (its dictionary footer written) at the end of its day, when it is
+ * full and when the writer is closed. Until then the dictionary strings are appended to the
+ * segment's journal before the rows using them, so the open segment can be searched, and a
+ * segment left unsealed by a crash is sealed from its journal when the next writer starts.
+ * Each file gets a LogIndex sidecar built as records are encoded; a block of it is appended
+ * after the records it covers are written (every BLOCK_RECORDS records, on flush() and when
+ * the file is closed or sealed).
+ */
+public class AsyncLogWriter {
+    public static final int DEFAULT_QUEUE_CAPACITY = 65536;
+    public static final int DEFAULT_FLUSH_BYTES = 64 * 1024;
+    public static final long DEFAULT_FLUSH_MILLIS = 50;
+    private static final int BATCH_SIZE = 1024; // Records taken from the queue at once
+    private static final long IDLE_POLL_MILLIS = 100; // Wait for records when nothing is pending
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+    private static final byte[] GRANTED = "GRANTED".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] DENIED = "DENIED".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Format - Encoding of the daily log files
+     */
+    public enum Format {
+        CSV,   // yyyy-MM-dd.csv text lines
+        BINARY // yyyy-MM-dd-N.seg dictionary-encoded segments
+    }
+
+    /**
+     * Log record - One access event, or a flush request when marker is set
+     */
+    private static final class LogRecord {
+        private final LocalDateTime timestamp;
+        private final String badgeCode;
+        private final String badgeReaderId;
+        private final String resourceId;
+        private final User user; // Name resolved on the writer thread
+        private final boolean granted;
+        private final AccessResponse.ReasonCode reasonCode;
+        private final CompletableFuture<Void> marker; // Completed once everything before it is written
+
+        LogRecord(LocalDateTime timestamp, String badgeCode, String badgeReaderId, String resourceId,
+                  User user, boolean granted, AccessResponse.ReasonCode reasonCode, CompletableFuture<Void> marker) {
+            this.timestamp = timestamp;
+            this.badgeCode = badgeCode;
+            this.badgeReaderId = badgeReaderId;
+            this.resourceId = resourceId;
+            this.user = user;
+            this.granted = granted;
+            this.reasonCode = reasonCode;
+            this.marker = marker;
+        }
+    }
+
+    private final BlockingQueue<LogRecord> queue;
+    private final int flushBytes;
+    private final long flushNanos;
+    private final boolean fsync;
+    private final Format format;
+    private final Thread writerThread;
+    private final Thread shutdownHook; // Registered while the writer runs
+    private volatile boolean running;
+
+    // Writer thread only
+    private ByteBuffer buffer; // Encoded records not written yet
+    private long firstPendingNanos; // System.nanoTime() of the oldest record in the buffer
+    private LocalDate currentDay; // Day of the open channel, null if none
+    private FileChannel channel;
+    private byte[] datePrefix; // "yyyy,MMM,dd,EEE," of the current day
+    private LogSegmentWriter segment; // Open binary segment, null if none
+    private Path segmentFile;
+    private FileChannel journal; // Dictionary journal of the open segment, null if none
+    private LogIndexWriter index; // Sidecar of the open file, null if none
+    private long filePosition; // CSV file offset the buffer will be written at
+
+    // Metrics
+    private final LongAdder writtenCount;
+    private final LongAdder flushCount;
+    private final LongAdder waitCount; // Callers that found the queue full
+    private final LongAdder failedCount; // Records lost to write errors
+
+    /**
+     * Create writer (start() starts its thread)
+     * @param queueCapacity Records waiting to be written before callers wait
+     * @param flushBytes Buffered bytes that trigger a write
+     * @param flushMillis Longest time a record stays buffered
+     * @param fsync Force each written group to disk
+     * @param format Encoding of the log files
+     */
+    public AsyncLogWriter(int queueCapacity, int flushBytes, long flushMillis, boolean fsync, Format format) {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.flushBytes = flushBytes;
+        this.flushNanos = TimeUnit.MILLISECONDS.toNanos(flushMillis);
+        this.fsync = fsync;
+        this.format = format;
+        this.buffer = ByteBuffer.allocate(Math.max(flushBytes, 4096) + 4096);
+        this.writtenCount = new LongAdder();
+        this.flushCount = new LongAdder();
+        this.waitCount = new LongAdder();
+        this.failedCount = new LongAdder();
+        this.writerThread = new Thread(this::run, "access-log-writer");
+        this.writerThread.setDaemon(true);
+        this.shutdownHook = new Thread(this::close, "access-log-writer-shutdown");
+    }
+
+    /**
+     * Start the writer thread; what is still queued when the JVM exits is written until close()
+     */
+    public synchronized void start() {
+        if (writerThread.getState() != Thread.State.NEW) {
+            return; // Already started, or closed
+        }
+        running = true;
+        writerThread.start();
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Queue access event for writing (waits only if the queue is full)
+     */
+    public void append(LocalDateTime timestamp, String badgeCode, String badgeReaderId, String resourceId,
+                       User user, boolean granted, AccessResponse.ReasonCode reasonCode) {
+        enqueue(new LogRecord(timestamp, badgeCode, badgeReaderId, resourceId, user, granted, reasonCode, null));
+    }
+
+    private void enqueue(LogRecord record) {
+        if (!running) {
+            System.err.println("Failed to write log: writer is not running");
+            return;
+        }
+        if (!queue.offer(record)) {
+            waitCount.increment();
+            try {
+                queue.put(record);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                System.err.println("Failed to write log: interrupted while the queue was full");
+            }
+        }
+    }
+
+    /**
+     * Wait until every event queued before this call is written to its file
+     * (in BINARY format, with the journal entries searches need to read the open segment)
+     */
+    public void flush() {
+        CompletableFuture<Void> marker = new CompletableFuture<>();
+        enqueue(new LogRecord(null, null, null, null, null, false, null, marker));
+        if (!running) {
+            return;
+        }
+        try {
+            marker.get(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            System.err.println("Failed to flush log: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Write queued events, close the file and stop the writer thread
+     */
+    public void close() {
+        if (!running) {
+            return;
+        }
+        flush();
+        running = false;
+        try {
+            writerThread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (Thread.currentThread() != shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook); // Lets a closed writer be collected
+            } catch (IllegalStateException e) {
+                // JVM is already shutting down; the hook finds the writer closed
+            }
+        }
+    }
+
+    private void run() {
+        List<LogRecord> batch = new ArrayList<>(BATCH_SIZE);
+        if (format == Format.BINARY) {
+            try {
+                LogSegment.recoverUnsealed(Paths.get(LogManager.LOGS_BASE_DIR));
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Failed to recover log segments: " + e);
+            }
+        }
+        try {
+            while (running || !queue.isEmpty()) {
+                long wait = buffer.position() == 0 ? TimeUnit.MILLISECONDS.toNanos(IDLE_POLL_MILLIS)
+                    : firstPendingNanos + flushNanos - System.nanoTime();
+                LogRecord first = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : queue.poll();
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, BATCH_SIZE - 1);
+                    for (LogRecord record : batch) {
+                        try {
+                            process(record);
+                        } catch (RuntimeException e) {
+                            // One bad record must not stop the writer thread
+                            System.err.println("Failed to write log record: " + e);
+                            failedCount.increment();
+                            if (record.marker != null) {
+                                record.marker.complete(null);
+                            }
+                        }
+                    }
+                    batch.clear();
+                }
+                if (buffer.position() > 0 && System.nanoTime() - firstPendingNanos >= flushNanos) {
+                    writeBuffer();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            running = false; // Callers fail fast instead of waiting for a queue nobody drains
+            try {
+                writeBuffer();
+                closeChannel();
+            } catch (RuntimeException e) {
+                System.err.println("Failed to close log file: " + e);
+            }
+            LogRecord record;
+            while ((record = queue.poll()) != null) {
+                if (record.marker != null) {
+                    record.marker.complete(null);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write one queued record, or complete a flush request
+     */
+    private void process(LogRecord record) {
+        if (record.marker != null) {
+            writeBuffer();
+            if (index != null) {
+                // Searches use the index up to here
+                index.writeBlock(segment != null ? segment.getRowCount() : filePosition);
+            }
+            record.marker.complete(null);
+        } else if (format == Format.BINARY) {
+            encodeRow(record);
+        } else {
+            encode(record);
+        }
+    }
+
+    /**
+     * Encode one record as a CSV line:
+     * yyyy,MMM,dd,EEE,HH:mm:ss,badgeCode,badgeReaderId,resourceId,userId:userName,status
+     */
+    private void encode(LogRecord record) {
+        LocalDate day = record.timestamp.toLocalDate();
+        if (!day.equals(currentDay)) {
+            writeBuffer(); // Each group goes to one file
+            openDay(day);
+        }
+        String userId = record.user.getId();
+        String userName = record.user.getFullName();
+        int maxLength = datePrefix.length + 9 + LINE_SEPARATOR.length + 12
+            + 3 * (record.badgeCode.length() + record.badgeReaderId.length() + record.resourceId.length()
+            + userId.length() + userName.length());
+        if (buffer.remaining() < maxLength) {
+            writeBuffer();
+            if (buffer.capacity() < maxLength) {
+                buffer = ByteBuffer.allocate(maxLength);
+            }
+        }
+        if (buffer.position() == 0) {
+            firstPendingNanos = System.nanoTime();
+        }
+        long offset = filePosition + buffer.position();
+        buffer.put(datePrefix);
+        putTwoDigits(record.timestamp.getHour());
+        buffer.put((byte) ':');
+        putTwoDigits(record.timestamp.getMinute());
+        buffer.put((byte) ':');
+        putTwoDigits(record.timestamp.getSecond());
+        buffer.put((byte) ',');
+        putString(record.badgeCode);
+        buffer.put((byte) ',');
+        putString(record.badgeReaderId);
+        buffer.put((byte) ',');
+        putString(record.resourceId);
+        buffer.put((byte) ',');
+        putString(userId);
+        buffer.put((byte) ':');
+        putString(userName);
+        buffer.put((byte) ',');
+        buffer.put(record.granted ? GRANTED : DENIED);
+        buffer.put(LINE_SEPARATOR);
+        writtenCount.increment();
+        if (buffer.position() >= flushBytes) {
+            writeBuffer();
+        }
+        addToIndex(offset, record, filePosition + buffer.position());
+    }
+
+    /**
+     * Encode one record as a fixed-width segment row
+     */
+    private void encodeRow(LogRecord record) {
+        LocalDate day = record.timestamp.toLocalDate();
+        if (!day.equals(currentDay) || segment.getRowCount() >= LogSegmentWriter.MAX_ROWS) {
+            writeBuffer();
+            openSegment(day);
+        }
+        if (buffer.remaining() < LogSegment.ROW_SIZE) {
+            writeBuffer();
+        }
+        if (segment == null) {
+            openSegment(day); // The write failed and dropped the segment, start a new one
+        }
+        if (buffer.position() == 0) {
+            firstPendingNanos = System.nanoTime();
+        }
+        AccessResponse.ReasonCode reasonCode = record.reasonCode != null ? record.reasonCode
+            : record.granted ? AccessResponse.ReasonCode.GRANTED : AccessResponse.ReasonCode.OTHER;
+        int row = segment.getRowCount();
+        segment.putRow(buffer, AccessRequest.toEpochSecond(record.timestamp), record.badgeCode,
+            record.badgeReaderId, record.resourceId, record.user, record.granted, reasonCode);
+        writtenCount.increment();
+        if (buffer.position() >= flushBytes) {
+            writeBuffer();
+        }
+        if (index != null) {
+            index.add(row, record.badgeCode, record.user.getId(), record.resourceId);
+            if (index.getRecordCount() >= LogIndexWriter.BLOCK_RECORDS) {
+                writeBuffer();
+                if (index != null) {
+                    index.writeBlock(segment.getRowCount());
+                }
+            }
+        }
+    }
+
+    /**
+     * Add CSV line to the index, appending a block once it holds BLOCK_RECORDS lines
+     * @param end Offset after the line
+     */
+    private void addToIndex(long offset, LogRecord record, long end) {
+        if (index == null) {
+            return;
+        }
+        if (!index.add(offset, record.badgeCode, record.user.getId(), record.resourceId)) {
+            writeBuffer();
+            if (index == null) {
+                return;
+            }
+            index.writeBlock(offset);
+            index.add(offset, record.badgeCode, record.user.getId(), record.resourceId);
+        }
+        if (index.getRecordCount() >= LogIndexWriter.BLOCK_RECORDS) {
+            writeBuffer();
+            if (index != null) {
+                index.writeBlock(end);
+            }
+        }
+    }
+
+    /**
+     * Seal the open segment and start the day's next one (header goes into the buffer)
+     */
+    private void openSegment(LocalDate day) {
+        closeChannel();
+        LocalDateTime dayStart = day.atStartOfDay();
+        try {
+            Path logFile = LogSegment.segmentPath(dayStart, LogSegment.nextIndex(dayStart));
+            Files.createDirectories(logFile.getParent());
+            channel = FileChannel.open(logFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            segmentFile = logFile;
+            Files.deleteIfExists(LogIndex.indexPath(logFile)); // Left by an earlier segment of that name
+            index = new LogIndexWriter(logFile, 0, fsync);
+            journal = FileChannel.open(LogSegment.journalPath(logFile), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            System.err.println("Failed to open log segment: " + e.getMessage());
+        }
+        currentDay = day;
+        segment = new LogSegmentWriter(AccessRequest.toEpochSecond(dayStart));
+        firstPendingNanos = System.nanoTime();
+        segment.putHeader(buffer);
+    }
+
+    private void putTwoDigits(int value) {
+        buffer.put((byte) ('0' + value / 10));
+        buffer.put((byte) ('0' + value % 10));
+    }
+
+    /**
+     * Put string as UTF-8 (ASCII copied char by char, anything else encoded)
+     */
+    private void putString(String value) {
+        int start = buffer.position();
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                buffer.position(start);
+                buffer.put(value.getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            buffer.put((byte) c);
+        }
+    }
+
+    /**
+     * Open the day's log file for appending
+     */
+    private void openDay(LocalDate day) {
+        closeChannel();
+        Path logFile = LogManager.getLogFilePath(day.atStartOfDay());
+        try {
+            Files.createDirectories(logFile.getParent());
+            channel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+            filePosition = channel.size();
+            if (filePosition == 0) {
+                Files.deleteIfExists(LogIndex.indexPath(logFile)); // Left from a removed log file
+            }
+            index = new LogIndexWriter(logFile, filePosition, fsync);
+        } catch (IOException e) {
+            System.err.println("Failed to open log file " + logFile + ": " + e.getMessage());
+        }
+        currentDay = day;
+        datePrefix = (LogManager.formatDate(day.atStartOfDay()) + ",").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Close the open file; a binary segment is sealed with its dictionary footer first
+     * (after a seal entry in its journal, which is removed once the segment is sealed)
+     * The index block of the last records is appended once they are in the file.
+     * Caller must have written the buffer
+     */
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                if (segment != null) {
+                    if (journal != null) {
+                        writeFully(journal, segment.sealEntry());
+                        journal.force(false); // Readers and recovery never take footer bytes for rows
+                    }
+                    ByteBuffer footer = segment.footer();
+                    while (footer.hasRemaining()) {
+                        channel.write(footer);
+                    }
+                    if (fsync) {
+                        channel.force(false);
+                    }
+                }
+                if (index != null) {
+                    index.writeBlock(segment != null ? segment.getRowCount() : filePosition);
+                }
+                channel.close();
+                if (segment != null) {
+                    closeJournal();
+                    Files.deleteIfExists(LogSegment.journalPath(segmentFile)); // Footer has the strings now
+                }
+            } catch (IOException e) {
+                System.err.println("Failed to close log file: " + e.getMessage());
+            }
+            channel = null;
+        }
+        closeJournal(); // Segment left unsealed is recovered with its journal
+        segment = null;
+        index = null;
+        currentDay = null;
+    }
+
+    private void closeJournal() {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                System.err.println("Failed to close log journal: " + e.getMessage());
+            }
+            journal = null;
+        }
+    }
+
+    /**
+     * Write the buffered group with one write call (plus fsync if configured)
+     */
+    private void writeBuffer() {
+        if (buffer.position() == 0) {
+            return;
+        }
+        buffer.flip();
+        try {
+            if (channel == null) {
+                throw new IOException("log file is not open");
+            }
+            ByteBuffer entries = segment != null ? segment.takeJournal() : null;
+            if (entries != null) {
+                // Strings reach the journal before the rows that use them
+                if (journal == null) {
+                    throw new IOException("log journal is not open");
+                }
+                writeFully(journal, entries);
+                if (fsync) {
+                    journal.force(false);
+                }
+            }
+            writeFully(channel, buffer);
+            if (fsync) {
+                channel.force(false);
+            }
+            filePosition += buffer.limit();
+            flushCount.increment();
+        } catch (IOException e) {
+            System.err.println("Failed to write log: " + e.getMessage());
+            failedCount.increment();
+            segment = null; // Rows are missing, the footer would not match
+            index = null; // Its offsets would not match either, the file is scanned from the last block
+            closeChannel(); // Reopened by the next record
+        }
+        buffer.clear();
+    }
+
+    private static void writeFully(FileChannel target, ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            target.write(data);
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Get number of records waiting in the queue
+     */
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    /**
+     * Get number of records encoded into a group
+     */
+    public long getWrittenCount() {
+        return writtenCount.sum();
+    }
+
+    /**
+     * Get number of groups written
+     */
+    public long getFlushCount() {
+        return flushCount.sum();
+    }
+
+    /**
+     * Get number of callers that had to wait for room in the queue
+     */
+    public long getWaitCount() {
+        return waitCount.sum();
+    }
+
+    /**
+     * Get number of groups that could not be written
+     */
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+}
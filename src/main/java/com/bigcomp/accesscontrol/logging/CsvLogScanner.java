@@ -0,0 +1,216 @@
+// Group 2 ChenGong ZhangZhao LiangYiKuo
+package com.bigcomp.accesscontrol.logging;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * CSV Log Scanner - Scans a day's CSV log file in place for lines that may match a search
+ * The file is memory-mapped in windows and read as bytes. Only the fields the criteria use
+ * (badge code, resource ID, user ID, status) are compared, without decoding; the lines that
+ * pass are decoded and handed on to be parsed, so the heap does not grow with the file size.
+ * Not thread-safe (one scanner per search).
+ */
+class CsvLogScanner {
+    private static final long MAP_WINDOW = 1L << 30; // Largest part of a file mapped at once
+    private static final int FIELD_COUNT = 10; // yyyy,MMM,dd,EEE,HH:mm:ss,badge,reader,resource,user,status
+    private static final int BADGE_FIELD = 5;
+    private static final int RESOURCE_FIELD = 7;
+    private static final int USER_FIELD = 8;
+    private static final int STATUS_FIELD = 9;
+    private static final byte[] GRANTED = "GRANTED".getBytes(StandardCharsets.US_ASCII);
+
+    private final LogManager.LogSearchCriteria criteria;
+    private final byte[] badgeCode; // Null when not a criterion
+    private final byte[] resourceId;
+    private final byte[] userId;
+    private final Boolean granted;
+    private final int[] commas; // Positions of the first commas of the current line
+    private int commaCount; // Commas of the current line
+    private byte[] line; // Reused copy of a passing line
+
+    CsvLogScanner(LogManager.LogSearchCriteria criteria) {
+        this.criteria = criteria;
+        this.badgeCode = bytesOf(criteria.getBadgeCode());
+        this.resourceId = bytesOf(criteria.getResourceId());
+        this.userId = bytesOf(criteria.getUserId());
+        this.granted = criteria.getGranted();
+        this.commas = new int[FIELD_COUNT];
+        this.line = new byte[256];
+    }
+
+    private static byte[] bytesOf(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    /**
+     * Scan file and pass each line that may match to the consumer
+     * When the file's index sidecar can be used, only the lines it lists and the parts it
+     * does not cover are read, and the file is not opened at all if the sidecar rules it out.
+     * The consumer still parses the line and checks the criteria exactly.
+     */
+    void scan(Path file, Consumer<String> matches) throws IOException {
+        long size = Files.size(file);
+        LogIndex.Lookup lookup = LogIndex.lookup(file, criteria, size);
+        if (lookup != null && lookup.isEmpty()) {
+            return; // No line of the file can match
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (lookup == null) {
+                scanRange(channel, 0, size, matches);
+                return;
+            }
+            lookup.visit(new LogIndex.Visitor() {
+                private ByteBuffer data; // Window holding the previous listed line
+                private long dataStart;
+
+                @Override
+                public void record(long offset) throws IOException {
+                    if (data == null || offset < dataStart || offset - dataStart >= data.limit()
+                            || !scanLineAt(data, (int) (offset - dataStart), dataStart + data.limit() == size, matches)) {
+                        data = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(size - offset, MAP_WINDOW));
+                        dataStart = offset;
+                        if (!scanLineAt(data, 0, offset + data.limit() == size, matches)) {
+                            System.err.println("Skipping log line longer than " + MAP_WINDOW + " bytes in " + file);
+                        }
+                    }
+                }
+
+                @Override
+                public void range(long from, long to) throws IOException {
+                    scanRange(channel, from, to, matches);
+                }
+            });
+        }
+    }
+
+    /**
+     * Scan the lines between two offsets (line starts, or the end of the file)
+     */
+    private void scanRange(FileChannel channel, long from, long to, Consumer<String> matches) throws IOException {
+        long position = from;
+        while (position < to) {
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                Math.min(to - position, MAP_WINDOW));
+            int limit = data.limit();
+            int start = 0;
+            int end;
+            while ((end = endOfLine(data, start, limit)) >= 0) {
+                scanLine(data, start, end, matches);
+                start = end + 1;
+            }
+            if (position + limit == to) {
+                if (start < limit) {
+                    scanLine(data, start, limit, matches); // Last line without separator
+                }
+                start = limit;
+            } else if (start == 0) {
+                System.err.println("Skipping log line longer than " + MAP_WINDOW + " bytes");
+                start = limit;
+            }
+            position += start; // Next window starts at the first incomplete line
+        }
+    }
+
+    /**
+     * Scan the line starting at start if it ends within the window
+     * @param atEnd Window ends the file (the last line may have no separator)
+     * @return false if the window must be moved to the line first
+     */
+    private boolean scanLineAt(ByteBuffer data, int start, boolean atEnd, Consumer<String> matches) {
+        int end = endOfLine(data, start, data.limit());
+        if (end < 0) {
+            if (!atEnd || start >= data.limit()) {
+                return false;
+            }
+            end = data.limit();
+        }
+        scanLine(data, start, end, matches);
+        return true;
+    }
+
+    /**
+     * Find the separator ending the line that starts at start, recording the line's commas
+     * @return its position, -1 if the line does not end before limit
+     */
+    private int endOfLine(ByteBuffer data, int start, int limit) {
+        commaCount = 0;
+        for (int i = start; i < limit; i++) {
+            byte b = data.get(i);
+            if (b == ',') {
+                if (commaCount < commas.length) {
+                    commas[commaCount] = i;
+                }
+                commaCount++;
+            } else if (b == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void scanLine(ByteBuffer data, int start, int end, Consumer<String> matches) {
+        if (commaCount < FIELD_COUNT - 1) {
+            return; // Too few fields to parse
+        }
+        if (badgeCode != null && !fieldEquals(data, fieldStart(start, BADGE_FIELD), commas[BADGE_FIELD], badgeCode)) {
+            return;
+        }
+        if (resourceId != null
+                && !fieldEquals(data, fieldStart(start, RESOURCE_FIELD), commas[RESOURCE_FIELD], resourceId)) {
+            return;
+        }
+        if (userId != null) {
+            // userId:userName, the ID ends at the first colon
+            int from = fieldStart(start, USER_FIELD);
+            int to = from;
+            while (to < commas[USER_FIELD] && data.get(to) != ':') {
+                to++;
+            }
+            if (!fieldEquals(data, from, to, userId)) {
+                return;
+            }
+        }
+        if (granted != null) {
+            int from = fieldStart(start, STATUS_FIELD);
+            int to = commaCount > STATUS_FIELD ? commas[STATUS_FIELD] : end;
+            while (from < to && (data.get(from) & 0xFF) <= ' ') {
+                from++;
+            }
+            while (to > from && (data.get(to - 1) & 0xFF) <= ' ') {
+                to--;
+            }
+            if (fieldEquals(data, from, to, GRANTED) != granted) {
+                return;
+            }
+        }
+        int length = end - start;
+        if (line.length < length) {
+            line = new byte[Math.max(length, line.length * 2)];
+        }
+        data.get(start, line, 0, length);
+        matches.accept(new String(line, 0, length, StandardCharsets.UTF_8));
+    }
+
+    private int fieldStart(int lineStart, int field) {
+        return field == 0 ? lineStart : commas[field - 1] + 1;
+    }
+
+    private static boolean fieldEquals(ByteBuffer data, int from, int to, byte[] value) {
+        if (to - from != value.length) {
+            return false;
+        }
+        for (int i = 0; i < value.length; i++) {
+            if (data.get(from + i) != value[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
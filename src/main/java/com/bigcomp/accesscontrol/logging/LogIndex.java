@@ -0,0 +1,287 @@
+// Group 2 ChenGong ZhangZhao LiangYiKuo
+package com.bigcomp.accesscontrol.logging;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Log Index - Inverted index sidecar of a log file (badge code, user ID, resource ID -> records)
+ * The sidecar (the log file name plus ".idx") is a sequence of blocks appended by the log
+ * writer. A block covers the records between two offsets of the log file (byte offsets of a
+ * CSV file, row numbers of a segment) and holds three key tables, each key followed by the
+ * ascending offsets of its records relative to the block start. Keys are sorted by their
+ * UTF-8 bytes behind a directory of entry positions, so a key is found by binary search
+ * (blocks written before that are searched linearly). Parts of a log file no block
+ * covers (written before the index existed, or not indexed yet) are scanned as before, and
+ * every candidate record is still compared with the criteria, so the index only saves work.
+ */
+final class LogIndex {
+    static final int BLOCK_MAGIC = 0x42434C32; // "BCL2", sorted key tables
+    static final int LEGACY_BLOCK_MAGIC = 0x42434C49; // "BCLI", key tables in hash order
+    static final int BLOCK_HEADER_SIZE = 4 + 4 + 8 + 8; // Magic, length, start, end
+    private static final int MAX_KEY_BYTES = 0xFFFF;
+    private static final int ANY = -1; // Criterion not set
+    private static final int ABSENT = -2; // Key not in the block
+
+    private LogIndex() {
+    }
+
+    /**
+     * Get sidecar path of a log file
+     */
+    static Path indexPath(Path logFile) {
+        return logFile.resolveSibling(logFile.getFileName() + ".idx");
+    }
+
+    /**
+     * Visitor - Receives the parts of a log file to check, in file order
+     */
+    interface Visitor {
+        /**
+         * Check one record the index lists for the criteria
+         */
+        void record(long offset) throws IOException;
+
+        /**
+         * Check every record between two offsets (not covered by the index)
+         */
+        void range(long from, long to) throws IOException;
+    }
+
+    /**
+     * Lookup - Records of the covered part of a log file that have all the criteria keys,
+     * and the uncovered ranges
+     */
+    static final class Lookup {
+        private long[] offsets = new long[16]; // Ascending
+        private int count;
+        private final List<long[]> gaps = new ArrayList<>(); // [from, to), ascending
+
+        private void addOffset(long offset) {
+            if (count == offsets.length) {
+                long[] grown = new long[count * 2];
+                System.arraycopy(offsets, 0, grown, 0, count);
+                offsets = grown;
+            }
+            offsets[count++] = offset;
+        }
+
+        /**
+         * Check whether nothing in the log file can match (it need not be opened)
+         */
+        boolean isEmpty() {
+            return count == 0 && gaps.isEmpty();
+        }
+
+        /**
+         * Visit listed records and uncovered ranges in file order
+         */
+        void visit(Visitor visitor) throws IOException {
+            int next = 0;
+            for (long[] gap : gaps) {
+                while (next < count && offsets[next] < gap[0]) {
+                    visitor.record(offsets[next++]);
+                }
+                visitor.range(gap[0], gap[1]);
+            }
+            while (next < count) {
+                visitor.record(offsets[next++]);
+            }
+        }
+    }
+
+    /**
+     * Look up the records of a log file that can match the criteria
+     * @param logEnd End of the log file (file size or row count)
+     * @return null if the index cannot help (no key criterion, no usable sidecar); the
+     *         whole file must be scanned
+     */
+    static Lookup lookup(Path logFile, LogManager.LogSearchCriteria criteria, long logEnd) throws IOException {
+        byte[] badge = keyOf(criteria.getBadgeCode());
+        byte[] user = keyOf(criteria.getUserId());
+        byte[] resource = keyOf(criteria.getResourceId());
+        Path path = indexPath(logFile);
+        if ((badge == null && user == null && resource == null) || !Files.exists(path)) {
+            return null;
+        }
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                return null;
+            }
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        Lookup lookup = new Lookup();
+        long covered = 0; // Everything before is covered by a block or listed as a gap
+        int position = 0;
+        while (data.limit() - position >= BLOCK_HEADER_SIZE) {
+            int magic = data.getInt(position);
+            if (magic != BLOCK_MAGIC && magic != LEGACY_BLOCK_MAGIC) {
+                System.err.println("Ignoring damaged log index " + path);
+                return null;
+            }
+            boolean sorted = magic == BLOCK_MAGIC;
+            int next = position + 8 + data.getInt(position + 4);
+            if (next > data.limit() || next < position + BLOCK_HEADER_SIZE) {
+                break; // Block was not completely written, the rest is scanned
+            }
+            long start = data.getLong(position + 8);
+            long end = data.getLong(position + 16);
+            if (start < covered || end < start) {
+                System.err.println("Ignoring log index that does not match its log file: " + path);
+                return null;
+            }
+            if (end > logEnd) {
+                break; // Block of records written after the log file was read
+            }
+            if (start > covered) {
+                lookup.gaps.add(new long[] {covered, start});
+            }
+            int badges = position + BLOCK_HEADER_SIZE;
+            int users = skipTable(data, badges, sorted);
+            int resources = skipTable(data, users, sorted);
+            intersect(data, lookup, start, postingsOf(data, badges, badge, sorted),
+                postingsOf(data, users, user, sorted), postingsOf(data, resources, resource, sorted));
+            covered = end;
+            position = next;
+        }
+        if (covered < logEnd) {
+            lookup.gaps.add(new long[] {covered, logEnd});
+        }
+        return lookup;
+    }
+
+    private static byte[] keyOf(String value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] key = value.getBytes(StandardCharsets.UTF_8);
+        if (key.length > MAX_KEY_BYTES) {
+            byte[] truncated = new byte[MAX_KEY_BYTES];
+            System.arraycopy(key, 0, truncated, 0, MAX_KEY_BYTES);
+            return truncated; // Same truncation as the writer
+        }
+        return key;
+    }
+
+    private static int skipTable(ByteBuffer data, int table, boolean sorted) {
+        int count = data.getInt(table);
+        if (sorted) {
+            // The table ends with its last entry
+            return count == 0 ? table + 4 : skipEntry(data, table + data.getInt(table + 4 * count));
+        }
+        int position = table + 4;
+        for (int i = count; i > 0; i--) {
+            position = skipEntry(data, position);
+        }
+        return position;
+    }
+
+    private static int skipEntry(ByteBuffer data, int entry) {
+        int postings = entry + 2 + (data.getShort(entry) & 0xFFFF);
+        return postings + 4 + 4 * data.getInt(postings);
+    }
+
+    /**
+     * Find postings of a key in a table (binary search in sorted tables)
+     * @return offset of its posting count, ANY if there is no key, ABSENT if the block lacks it
+     */
+    private static int postingsOf(ByteBuffer data, int table, byte[] key, boolean sorted) {
+        if (key == null) {
+            return ANY;
+        }
+        int count = data.getInt(table);
+        if (!sorted) {
+            int position = table + 4;
+            for (int i = count; i > 0; i--) {
+                if (compareKey(data, position, key) == 0) {
+                    return position + 2 + key.length;
+                }
+                position = skipEntry(data, position);
+            }
+            return ABSENT;
+        }
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int entry = table + data.getInt(table + 4 + 4 * middle);
+            int order = compareKey(data, entry, key);
+            if (order < 0) {
+                low = middle + 1;
+            } else if (order > 0) {
+                high = middle - 1;
+            } else {
+                return entry + 2 + key.length;
+            }
+        }
+        return ABSENT;
+    }
+
+    /**
+     * Compare the key of a table entry with a key, as unsigned bytes (Arrays.compareUnsigned order)
+     */
+    private static int compareKey(ByteBuffer data, int entry, byte[] key) {
+        int length = data.getShort(entry) & 0xFFFF;
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int order = (data.get(entry + 2 + i) & 0xFF) - (key[i] & 0xFF);
+            if (order != 0) {
+                return order;
+            }
+        }
+        return length - key.length;
+    }
+
+    /**
+     * Add the offsets listed under every given key, walking the shortest postings and
+     * binary searching the others
+     */
+    private static void intersect(ByteBuffer data, Lookup lookup, long start, int... postings) {
+        int shortest = ANY;
+        for (int p : postings) {
+            if (p == ABSENT) {
+                return; // No record of the block has all keys
+            }
+            if (p != ANY && (shortest == ANY || data.getInt(p) < data.getInt(shortest))) {
+                shortest = p;
+            }
+        }
+        int count = data.getInt(shortest);
+        candidates:
+        for (int i = 0; i < count; i++) {
+            int offset = data.getInt(shortest + 4 + 4 * i);
+            for (int p : postings) {
+                if (p != ANY && p != shortest && !contains(data, p, offset)) {
+                    continue candidates;
+                }
+            }
+            lookup.addOffset(start + offset);
+        }
+    }
+
+    private static boolean contains(ByteBuffer data, int postings, int offset) {
+        int low = 0;
+        int high = data.getInt(postings) - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int value = data.getInt(postings + 4 + 4 * middle);
+            if (value < offset) {
+                low = middle + 1;
+            } else if (value > offset) {
+                high = middle - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+}
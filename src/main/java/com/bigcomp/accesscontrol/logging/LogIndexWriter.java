@@ -0,0 +1,178 @@
+// Group 2 ChenGong ZhangZhao LiangYiKuo
+package com.bigcomp.accesscontrol.logging;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Log Index Writer - Builds the LogIndex sidecar of a log file while records are appended
+ * Postings of the current block are kept in memory and appended to the sidecar as one
+ * block, covering the records added since the previous one. Not thread-safe (used by the
+ * log writer thread only).
+ */
+class LogIndexWriter {
+    static final int BLOCK_RECORDS = 1 << 16; // Records before the writer appends a block
+    private static final int MAX_STRING_BYTES = 0xFFFF;
+
+    private final Path path; // Sidecar file
+    private final boolean fsync;
+    private final Map<String, Postings> badges;
+    private final Map<String, Postings> users;
+    private final Map<String, Postings> resources;
+    private long blockStart; // Offset the current block starts at
+    private int recordCount; // Records in the current block
+
+    /**
+     * Create index writer
+     * @param logFile Log file being indexed
+     * @param start Offset of the first record that will be added
+     */
+    LogIndexWriter(Path logFile, long start, boolean fsync) {
+        this.path = LogIndex.indexPath(logFile);
+        this.fsync = fsync;
+        this.badges = new HashMap<>();
+        this.users = new HashMap<>();
+        this.resources = new HashMap<>();
+        this.blockStart = start;
+    }
+
+    /**
+     * Postings - Growable list of offsets relative to the block start, ascending
+     */
+    private static final class Postings {
+        private int[] offsets = new int[4];
+        private int size;
+
+        void add(int offset) {
+            if (size == offsets.length) {
+                int[] grown = new int[size * 2];
+                System.arraycopy(offsets, 0, grown, 0, size);
+                offsets = grown;
+            }
+            offsets[size++] = offset;
+        }
+    }
+
+    /**
+     * Add record
+     * @param offset Offset of the record (byte offset or row number), above the previous one
+     * @return false if the offset is too far from the block start; the caller writes the
+     *         block and adds the record again
+     */
+    boolean add(long offset, String badgeCode, String userId, String resourceId) {
+        long relative = offset - blockStart;
+        if (relative > Integer.MAX_VALUE) {
+            return false;
+        }
+        add(badges, badgeCode, (int) relative);
+        add(users, userId, (int) relative);
+        add(resources, resourceId, (int) relative);
+        recordCount++;
+        return true;
+    }
+
+    private static void add(Map<String, Postings> postings, String key, int offset) {
+        postings.computeIfAbsent(key != null ? key : "", k -> new Postings()).add(offset);
+    }
+
+    /**
+     * Append the current block to the sidecar and start the next one
+     * Caller must have written every record before end to the log file
+     * @param end Offset after the last record of the block
+     */
+    void writeBlock(long end) {
+        if (recordCount > 0) {
+            ByteBuffer block = encode(end);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                while (block.hasRemaining()) {
+                    channel.write(block);
+                }
+                if (fsync) {
+                    channel.force(false);
+                }
+            } catch (IOException e) {
+                // The block's records are scanned instead
+                System.err.println("Failed to write log index " + path + ": " + e.getMessage());
+            }
+            badges.clear();
+            users.clear();
+            resources.clear();
+            recordCount = 0;
+        }
+        blockStart = end;
+    }
+
+    private ByteBuffer encode(long end) {
+        Map<String, byte[]> keys = new HashMap<>();
+        int size = LogIndex.BLOCK_HEADER_SIZE + tableSize(badges, keys) + tableSize(users, keys)
+            + tableSize(resources, keys);
+        ByteBuffer block = ByteBuffer.allocate(size);
+        block.putInt(LogIndex.BLOCK_MAGIC);
+        block.putInt(size - 8); // Bytes after the magic and this length
+        block.putLong(blockStart);
+        block.putLong(end);
+        putTable(block, badges, keys);
+        putTable(block, users, keys);
+        putTable(block, resources, keys);
+        block.flip();
+        return block;
+    }
+
+    private static int tableSize(Map<String, Postings> table, Map<String, byte[]> keys) {
+        int size = 4 + 4 * table.size();
+        for (Map.Entry<String, Postings> entry : table.entrySet()) {
+            size += 2 + keys.computeIfAbsent(entry.getKey(), LogIndexWriter::encodeKey).length
+                + 4 + 4 * entry.getValue().size;
+        }
+        return size;
+    }
+
+    /**
+     * Put key table: count, position of each entry relative to the table, then per key in
+     * unsigned byte order its u16-length UTF-8 bytes, posting count and postings
+     */
+    private static void putTable(ByteBuffer block, Map<String, Postings> table, Map<String, byte[]> keys) {
+        List<Map.Entry<String, Postings>> entries = new ArrayList<>(table.entrySet());
+        entries.sort((a, b) -> Arrays.compareUnsigned(keys.get(a.getKey()), keys.get(b.getKey())));
+        int start = block.position();
+        block.putInt(entries.size());
+        int directory = block.position();
+        block.position(directory + 4 * entries.size());
+        for (int e = 0; e < entries.size(); e++) {
+            Map.Entry<String, Postings> entry = entries.get(e);
+            block.putInt(directory + 4 * e, block.position() - start);
+            byte[] key = keys.get(entry.getKey());
+            block.putShort((short) key.length);
+            block.put(key);
+            Postings postings = entry.getValue();
+            block.putInt(postings.size);
+            for (int i = 0; i < postings.size; i++) {
+                block.putInt(postings.offsets[i]);
+            }
+        }
+    }
+
+    private static byte[] encodeKey(String key) {
+        byte[] encoded = key.getBytes(StandardCharsets.UTF_8);
+        if (encoded.length > MAX_STRING_BYTES) {
+            byte[] truncated = new byte[MAX_STRING_BYTES];
+            System.arraycopy(encoded, 0, truncated, 0, MAX_STRING_BYTES);
+            return truncated; // Only adds candidates, rows are still compared in full
+        }
+        return encoded;
+    }
+
+    int getRecordCount() {
+        return recordCount;
+    }
+}
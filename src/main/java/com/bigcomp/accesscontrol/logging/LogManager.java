@@ -2,6 +2,7 @@
 package com.bigcomp.accesscontrol.logging;
 
 import com.bigcomp.accesscontrol.model.AccessRequest;
+import com.bigcomp.accesscontrol.model.AccessResponse;
 import com.bigcomp.accesscontrol.model.Resource;
 import com.bigcomp.accesscontrol.model.User;
 
@@ -9,7 +10,6 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
@@ -19,48 +19,83 @@ import java.util.List;
  * Log Manager - Responsible for recording and searching access logs
  */
 public class LogManager {
-    private static final String LOGS_BASE_DIR = "data/logs";
+    static final String LOGS_BASE_DIR = "data/logs";
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy,MMM,dd,EEE");
-    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss");
     private static final DateTimeFormatter FILE_DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
+    private final AsyncLogWriter writer; // Appends to the daily files on its own thread
+
+    /**
+     * Create log manager with the default group-commit settings
+     */
+    public LogManager() {
+        this(AsyncLogWriter.DEFAULT_QUEUE_CAPACITY, AsyncLogWriter.DEFAULT_FLUSH_BYTES,
+            AsyncLogWriter.DEFAULT_FLUSH_MILLIS, false, AsyncLogWriter.Format.CSV);
+    }
+
+    /**
+     * Create log manager
+     * @param queueCapacity Events waiting to be written before logAccess waits
+     * @param flushBytes Buffered bytes that trigger a write
+     * @param flushMillis Longest time an event stays buffered
+     * @param fsync Force each written group to disk
+     * @param format CSV lines or binary segments (searchLogs reads both)
+     */
+    public LogManager(int queueCapacity, int flushBytes, long flushMillis, boolean fsync,
+                      AsyncLogWriter.Format format) {
+        this.writer = new AsyncLogWriter(queueCapacity, flushBytes, flushMillis, fsync, format);
+        writer.start();
+    }
+
     /**
      * Log access event
+     * Only queues the event; it reaches the file within the flush interval
      */
     public void logAccess(AccessRequest request, User user, Resource resource, boolean granted) {
-        LocalDateTime timestamp = request.getTimestamp();
-        String status = granted ? "GRANTED" : "DENIED";
-
-        // Build log line
-        String logLine = String.format("%s,%s,%s,%s,%s,%s:%s,%s%n",
-            DATE_FORMATTER.format(timestamp),
-            TIME_FORMATTER.format(timestamp),
-            request.getBadgeCode(),
-            request.getBadgeReaderId(),
-            resource.getId(),
-            user.getId(),
-            user.getFullName(),
-            status
-        );
-
-        // Determine log file path
-        Path logFile = getLogFilePath(timestamp);
+        writer.append(request.getTimestamp(), request.getBadgeCode(), request.getBadgeReaderId(),
+            resource.getId(), user, granted, null);
+    }
 
-        try {
-            // Ensure directory exists
-            Files.createDirectories(logFile.getParent());
+    /**
+     * Log access event with the reason of the decision (kept by the binary format)
+     */
+    public void logAccess(AccessRequest request, User user, Resource resource, AccessResponse response) {
+        writer.append(request.getTimestamp(), request.getBadgeCode(), request.getBadgeReaderId(),
+            resource.getId(), user, response.isGranted(), response.getReasonCode());
+    }
 
-            // Write log (append mode)
-            Files.writeString(logFile, logLine, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
-        } catch (IOException e) {
-            System.err.println("Failed to write log: " + e.getMessage());
-        }
+    /**
+     * Wait until all logged events are written to their files
+     */
+    public void flush() {
+        writer.flush();
+    }
+
+    /**
+     * Write pending events and stop the writer
+     */
+    public void close() {
+        writer.close();
+    }
+
+    /**
+     * Get log writer (queue and group statistics)
+     */
+    public AsyncLogWriter getWriter() {
+        return writer;
+    }
+
+    /**
+     * Format date part of a log line: yyyy,MMM,dd,EEE
+     */
+    static String formatDate(LocalDateTime dateTime) {
+        return DATE_FORMATTER.format(dateTime);
     }
 
     /**
      * Get log file path (organized by year/month/day)
      */
-    private Path getLogFilePath(LocalDateTime dateTime) {
+    static Path getLogFilePath(LocalDateTime dateTime) {
         int year = dateTime.getYear();
         int month = dateTime.getMonthValue();
         String fileName = FILE_DATE_FORMATTER.format(dateTime) + ".csv";
@@ -73,22 +108,27 @@ public class LogManager {
      */
     public List<LogEntry> searchLogs(LogSearchCriteria criteria) throws IOException {
         List<LogEntry> results = new ArrayList<>();
+        writer.flush(); // Include events still being written
 
         // Determine date range to search
         LocalDateTime startDate = criteria.getStartDate();
         LocalDateTime endDate = criteria.getEndDate();
 
+        CsvLogScanner scanner = new CsvLogScanner(criteria);
         LocalDateTime current = startDate;
         while (!current.isAfter(endDate)) {
             Path logFile = getLogFilePath(current);
             if (Files.exists(logFile)) {
-                List<String> lines = Files.readAllLines(logFile);
-                for (String line : lines) {
+                // Scanned in place, only lines that may match are parsed
+                scanner.scan(logFile, line -> {
                     LogEntry entry = parseLogLine(line);
                     if (entry != null && matchesCriteria(entry, criteria)) {
                         results.add(entry);
                     }
-                }
+                });
+            }
+            for (Path segment : LogSegment.listSegments(current)) {
+                LogSegment.search(segment, criteria, results);
             }
             current = current.plusDays(1);
         }
@@ -204,9 +244,16 @@ public class LogManager {
         private String userId;
         private String userName;
         private boolean granted;
+        private AccessResponse.ReasonCode reasonCode; // Null for CSV lines
 
         public LogEntry(LocalDateTime timestamp, String badgeCode, String badgeReaderId,
                        String resourceId, String userId, String userName, boolean granted) {
+            this(timestamp, badgeCode, badgeReaderId, resourceId, userId, userName, granted, null);
+        }
+
+        public LogEntry(LocalDateTime timestamp, String badgeCode, String badgeReaderId,
+                       String resourceId, String userId, String userName, boolean granted,
+                       AccessResponse.ReasonCode reasonCode) {
             this.timestamp = timestamp;
             this.badgeCode = badgeCode;
             this.badgeReaderId = badgeReaderId;
@@ -214,6 +261,7 @@ public class LogManager {
             this.userId = userId;
             this.userName = userName;
             this.granted = granted;
+            this.reasonCode = reasonCode;
         }
 
         // Getters
@@ -224,6 +272,7 @@ public class LogManager {
         public String getUserId() { return userId; }
         public String getUserName() { return userName; }
         public boolean isGranted() { return granted; }
+        public AccessResponse.ReasonCode getReasonCode() { return reasonCode; }
     }
 
     /**
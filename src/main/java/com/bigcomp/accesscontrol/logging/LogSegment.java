@@ -0,0 +1,550 @@
+// Group 2 ChenGong ZhangZhao LiangYiKuo
+package com.bigcomp.accesscontrol.logging;
+
+import com.bigcomp.accesscontrol.model.AccessResponse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Log Segment - Binary access log file with dictionary-encoded rows
+ * Layout: 16-byte header (magic, version, row size, base epoch second), fixed-width rows,
+ * dictionary footer (badge codes, reader IDs, resource IDs, user IDs with names) and a
+ * 16-byte trailer (footer offset, row count, magic). A row is 24 bytes: seconds since the
+ * base, badge, reader, resource and user dictionary IDs, a granted bit and a reason code.
+ * Segments of a day are named yyyy-MM-dd-N.seg next to the day's CSV file.
+ * Until the footer is written, the segment's dictionary strings are in a journal file (the
+ * segment name plus ".dict"), appended before the rows that use them; an open or unsealed
+ * segment is read with it, its row count taken from the file size.
+ */
+public final class LogSegment {
+    static final int MAGIC = 0x42434C47; // "BCLG"
+    static final int TRAILER_MAGIC = 0x42434C46; // "BCLF", written when the segment is sealed
+    static final byte VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int ROW_SIZE = 24;
+    static final int TRAILER_SIZE = 16;
+    static final byte GRANTED_FLAG = 1;
+
+    // Journal: magic, then entries of a kind byte and u16-length strings
+    static final int JOURNAL_MAGIC = 0x42434C4A; // "BCLJ"
+    static final byte JOURNAL_BADGE = 0; // Badge code
+    static final byte JOURNAL_READER = 1; // Reader ID
+    static final byte JOURNAL_RESOURCE = 2; // Resource ID
+    static final byte JOURNAL_USER = 3; // User ID, then full name
+    static final byte JOURNAL_SEAL = 0x7F; // Row count, written before the footer
+
+    // Row field offsets
+    static final int SECOND_OFFSET = 0;
+    static final int BADGE_OFFSET = 4;
+    static final int READER_OFFSET = 8;
+    static final int RESOURCE_OFFSET = 12;
+    static final int USER_OFFSET = 16;
+    static final int FLAGS_OFFSET = 20;
+    static final int REASON_OFFSET = 21;
+
+    private static final int ANY = -1; // Criterion not set
+    private static final int NOT_IN_SEGMENT = -2; // Criterion value never logged in the segment
+    private static final AccessResponse.ReasonCode[] REASON_CODES = AccessResponse.ReasonCode.values();
+
+    private LogSegment() {
+    }
+
+    /**
+     * Get path of a day's segment file
+     * @param index Segment number within the day
+     */
+    static Path segmentPath(LocalDateTime day, int index) {
+        Path csv = LogManager.getLogFilePath(day);
+        String name = csv.getFileName().toString();
+        return csv.resolveSibling(name.substring(0, name.length() - ".csv".length()) + "-" + index + ".seg");
+    }
+
+    /**
+     * List a day's segment files in segment order
+     */
+    static List<Path> listSegments(LocalDateTime day) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        Path dir = LogManager.getLogFilePath(day).getParent();
+        if (!Files.isDirectory(dir)) {
+            return segments;
+        }
+        String prefix = segmentPath(day, 0).getFileName().toString().replace("-0.seg", "-");
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, prefix + "*.seg")) {
+            for (Path path : stream) {
+                if (indexOf(path, prefix) >= 0) {
+                    segments.add(path);
+                }
+            }
+        }
+        segments.sort((a, b) -> Integer.compare(indexOf(a, prefix), indexOf(b, prefix)));
+        return segments;
+    }
+
+    /**
+     * Get next unused segment number of a day
+     */
+    static int nextIndex(LocalDateTime day) throws IOException {
+        List<Path> segments = listSegments(day);
+        if (segments.isEmpty()) {
+            return 0;
+        }
+        String prefix = segmentPath(day, 0).getFileName().toString().replace("-0.seg", "-");
+        return indexOf(segments.get(segments.size() - 1), prefix) + 1;
+    }
+
+    /**
+     * Get path of a segment's dictionary journal
+     */
+    static Path journalPath(Path segment) {
+        return segment.resolveSibling(segment.getFileName() + ".dict");
+    }
+
+    private static int indexOf(Path path, String prefix) {
+        String name = path.getFileName().toString();
+        try {
+            return Integer.parseInt(name.substring(prefix.length(), name.length() - ".seg".length()));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Search a segment (sealed, or open or unsealed with its journal)
+     * The file is memory-mapped and rows are compared in place as dictionary IDs; criteria are
+     * matched against the encoded dictionary bytes, and strings are decoded only for the rows
+     * that become LogEntry objects. With a usable index sidecar only the rows it lists are read.
+     */
+    static void search(Path path, LogManager.LogSearchCriteria criteria, List<LogManager.LogEntry> results)
+            throws IOException {
+        ByteBuffer data = map(path);
+        if (data == null) {
+            return;
+        }
+        Journal journal = null;
+        if (!isSealed(data)) {
+            journal = readJournal(path); // Read after the segment, so it has the strings of every mapped row
+            if (journal == null) {
+                data = map(path); // Sealed meanwhile, and its journal removed
+                if (data == null || !isSealed(data)) {
+                    System.err.println("Skipping unsealed log segment without journal: " + path);
+                    return;
+                }
+            }
+        }
+        long baseEpochSecond = data.getLong(8);
+        Dictionary badges;
+        Dictionary readers;
+        Dictionary resources;
+        Dictionary users;
+        Dictionary userNames;
+        int rowCount;
+        if (journal == null) {
+            // Dictionary footer
+            long footerOffset = data.getLong(data.limit() - TRAILER_SIZE);
+            rowCount = data.getInt(data.limit() - 8);
+            badges = new Dictionary(data, (int) footerOffset);
+            readers = new Dictionary(data, badges.end);
+            resources = new Dictionary(data, readers.end);
+            users = new Dictionary(data, resources.end);
+            userNames = new Dictionary(data, users.end, users.size());
+        } else {
+            badges = journal.badges;
+            readers = journal.readers;
+            resources = journal.resources;
+            users = journal.users;
+            userNames = journal.userNames;
+            rowCount = journal.rowCount(data.limit());
+        }
+
+        int badge = badges.idOf(criteria.getBadgeCode());
+        int resource = resources.idOf(criteria.getResourceId());
+        int user = users.idOf(criteria.getUserId());
+        if (badge == NOT_IN_SEGMENT || resource == NOT_IN_SEGMENT || user == NOT_IN_SEGMENT) {
+            return; // No row can match
+        }
+        LogIndex.Lookup lookup = LogIndex.lookup(path, criteria, rowCount);
+        if (lookup != null && lookup.isEmpty()) {
+            return; // The index rules out every row
+        }
+        RowScan scan = new RowScan(data, baseEpochSecond, badges, readers, resources, users, userNames,
+            badge, resource, user, criteria.getGranted(), results);
+        if (lookup == null) {
+            scan.range(0, rowCount);
+        } else {
+            lookup.visit(scan); // Only the rows the index lists, and rows it does not cover
+        }
+    }
+
+    /**
+     * Map a segment file after checking its header
+     * @return null if it is damaged or of an unknown version
+     */
+    private static ByteBuffer map(Path path) throws IOException {
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                System.err.println("Skipping damaged log segment: " + path);
+                return null;
+            }
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()); // Stays valid after close
+        }
+        if (data.getInt(0) != MAGIC) {
+            System.err.println("Skipping damaged log segment: " + path);
+            return null;
+        }
+        if (data.get(4) != VERSION || data.get(5) != ROW_SIZE) {
+            System.err.println("Skipping log segment with unknown version: " + path);
+            return null;
+        }
+        return data;
+    }
+
+    /**
+     * Check whether a mapped segment ends with its trailer
+     * (the last bytes of a row are never the trailer magic)
+     */
+    private static boolean isSealed(ByteBuffer data) {
+        return data.limit() >= HEADER_SIZE + TRAILER_SIZE && data.getInt(data.limit() - 4) == TRAILER_MAGIC;
+    }
+
+    /**
+     * Journal - Dictionaries of an open or unsealed segment, read from its journal file
+     */
+    static final class Journal {
+        final Dictionary badges;
+        final Dictionary readers;
+        final Dictionary resources;
+        final Dictionary users;
+        final Dictionary userNames;
+        final int sealedRows; // Row count of the seal entry, -1 if the segment was not being sealed
+
+        private Journal(ByteBuffer data, int[][] offsets, int[] counts, int sealedRows) {
+            this.badges = new Dictionary(data, offsets[JOURNAL_BADGE], counts[JOURNAL_BADGE]);
+            this.readers = new Dictionary(data, offsets[JOURNAL_READER], counts[JOURNAL_READER]);
+            this.resources = new Dictionary(data, offsets[JOURNAL_RESOURCE], counts[JOURNAL_RESOURCE]);
+            this.users = new Dictionary(data, offsets[JOURNAL_USER], counts[JOURNAL_USER]);
+            this.userNames = new Dictionary(data, offsets[JOURNAL_USER + 1], counts[JOURNAL_USER + 1]);
+            this.sealedRows = sealedRows;
+        }
+
+        /**
+         * Get number of complete rows of a segment file of the given size
+         * (a row being written, or footer bytes of an interrupted seal, are left out)
+         */
+        int rowCount(long size) {
+            long rows = Math.max(0, size - HEADER_SIZE) / ROW_SIZE;
+            return (int) (sealedRows >= 0 ? Math.min(rows, sealedRows) : rows);
+        }
+    }
+
+    /**
+     * Read the journal of a segment; an entry not completely written ends it
+     * @return null if there is no journal or it is damaged
+     */
+    static Journal readJournal(Path segment) throws IOException {
+        Path path = journalPath(segment);
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                System.err.println("Ignoring damaged log journal: " + path);
+                return null;
+            }
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        if (data.limit() < 4 || data.getInt(0) != JOURNAL_MAGIC) {
+            System.err.println("Ignoring damaged log journal: " + path);
+            return null;
+        }
+        int[][] offsets = new int[JOURNAL_USER + 2][16]; // Per kind, user names last
+        int[] counts = new int[offsets.length];
+        int sealedRows = -1;
+        int position = 4;
+        while (position < data.limit()) {
+            byte kind = data.get(position);
+            if (kind == JOURNAL_SEAL) {
+                if (data.limit() - position < 5) {
+                    break;
+                }
+                sealedRows = data.getInt(position + 1);
+                position += 5;
+                continue;
+            }
+            if (kind < JOURNAL_BADGE || kind > JOURNAL_USER) {
+                System.err.println("Ignoring damaged end of log journal: " + path);
+                break;
+            }
+            int next = skipString(data, position + 1);
+            int name = next;
+            if (kind == JOURNAL_USER) {
+                next = skipString(data, next);
+            }
+            if (next < 0) {
+                break; // Entry was not completely written, no row uses it
+            }
+            addOffset(offsets, counts, kind, position + 1);
+            if (kind == JOURNAL_USER) {
+                addOffset(offsets, counts, JOURNAL_USER + 1, name);
+            }
+            position = next;
+        }
+        return new Journal(data, offsets, counts, sealedRows);
+    }
+
+    /**
+     * Get offset after the u16-length string at position
+     * @return -1 if it does not fit in the data
+     */
+    private static int skipString(ByteBuffer data, int position) {
+        if (position < 0 || data.limit() - position < 2) {
+            return -1;
+        }
+        int end = position + 2 + (data.getShort(position) & 0xFFFF);
+        return end <= data.limit() ? end : -1;
+    }
+
+    private static void addOffset(int[][] offsets, int[] counts, int kind, int offset) {
+        if (counts[kind] == offsets[kind].length) {
+            offsets[kind] = Arrays.copyOf(offsets[kind], counts[kind] * 2);
+        }
+        offsets[kind][counts[kind]++] = offset;
+    }
+
+    /**
+     * Seal the segments a writer left unsealed (stopped without closing them) under the log
+     * directory (yyyy/MM/ subdirectories). Each gets a footer built from its journal, after
+     * its complete rows; the journal is then removed.
+     */
+    static void recoverUnsealed(Path logsDir) throws IOException {
+        if (!Files.isDirectory(logsDir)) {
+            return;
+        }
+        List<Path> journals;
+        try (Stream<Path> stream = Files.find(logsDir, 3,
+                (path, attributes) -> attributes.isRegularFile() && path.toString().endsWith(".seg.dict"))) {
+            journals = stream.collect(Collectors.toList());
+        }
+        for (Path journal : journals) {
+            String name = journal.getFileName().toString();
+            Path segment = journal.resolveSibling(name.substring(0, name.length() - ".dict".length()));
+            if (!Files.exists(segment)) {
+                Files.deleteIfExists(journal);
+            } else if (seal(segment)) {
+                System.err.println("Recovered unsealed log segment: " + segment);
+            }
+        }
+    }
+
+    /**
+     * Seal an unsealed segment with the dictionaries of its journal
+     * @return true if a footer was written
+     */
+    private static boolean seal(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(header, 0);
+            if (header.hasRemaining() || header.getInt(0) != MAGIC || header.get(4) != VERSION
+                    || header.get(5) != ROW_SIZE) {
+                System.err.println("Cannot recover damaged log segment: " + path);
+                return false;
+            }
+            if (size >= HEADER_SIZE + TRAILER_SIZE) {
+                ByteBuffer magic = ByteBuffer.allocate(4);
+                channel.read(magic, size - 4);
+                if (!magic.hasRemaining() && magic.getInt(0) == TRAILER_MAGIC) {
+                    Files.deleteIfExists(journalPath(path)); // Sealed, the journal was not removed yet
+                    return false;
+                }
+            }
+            Journal journal = readJournal(path);
+            if (journal == null) {
+                System.err.println("Cannot recover log segment without journal: " + path);
+                return false;
+            }
+            int rows = journal.rowCount(size);
+            LogSegmentWriter writer = LogSegmentWriter.restore(header.getLong(8), journal, rows);
+            long end = HEADER_SIZE + (long) rows * ROW_SIZE;
+            channel.truncate(end);
+            ByteBuffer footer = writer.footer();
+            while (footer.hasRemaining()) {
+                end += channel.write(footer, end);
+            }
+            channel.force(false);
+        }
+        Files.deleteIfExists(journalPath(path));
+        return true;
+    }
+
+    /**
+     * Row Scan - Compares rows of a mapped segment with the criteria IDs
+     */
+    private static final class RowScan implements LogIndex.Visitor {
+        private final ByteBuffer data;
+        private final long baseEpochSecond;
+        private final Dictionary badges;
+        private final Dictionary readers;
+        private final Dictionary resources;
+        private final Dictionary users;
+        private final Dictionary userNames;
+        private final int badge; // Criteria as dictionary IDs, ANY if not set
+        private final int resource;
+        private final int user;
+        private final Boolean granted;
+        private final List<LogManager.LogEntry> results;
+
+        RowScan(ByteBuffer data, long baseEpochSecond, Dictionary badges, Dictionary readers,
+                Dictionary resources, Dictionary users, Dictionary userNames, int badge, int resource,
+                int user, Boolean granted, List<LogManager.LogEntry> results) {
+            this.data = data;
+            this.baseEpochSecond = baseEpochSecond;
+            this.badges = badges;
+            this.readers = readers;
+            this.resources = resources;
+            this.users = users;
+            this.userNames = userNames;
+            this.badge = badge;
+            this.resource = resource;
+            this.user = user;
+            this.granted = granted;
+            this.results = results;
+        }
+
+        @Override
+        public void record(long row) {
+            range(row, row + 1);
+        }
+
+        @Override
+        public void range(long from, long to) {
+            for (int offset = HEADER_SIZE + (int) from * ROW_SIZE, end = HEADER_SIZE + (int) to * ROW_SIZE;
+                    offset < end; offset += ROW_SIZE) {
+                if ((badge != ANY && data.getInt(offset + BADGE_OFFSET) != badge)
+                        || (resource != ANY && data.getInt(offset + RESOURCE_OFFSET) != resource)
+                        || (user != ANY && data.getInt(offset + USER_OFFSET) != user)
+                        || (granted != null && ((data.get(offset + FLAGS_OFFSET) & GRANTED_FLAG) != 0) != granted)) {
+                    continue;
+                }
+                int u = data.getInt(offset + USER_OFFSET);
+                if (!badges.contains(data.getInt(offset + BADGE_OFFSET))
+                        || !readers.contains(data.getInt(offset + READER_OFFSET))
+                        || !resources.contains(data.getInt(offset + RESOURCE_OFFSET))
+                        || !users.contains(u) || !userNames.contains(u)) {
+                    continue; // Row of an unsealed segment whose journal entries were lost
+                }
+                int reason = data.get(offset + REASON_OFFSET) & 0xFF;
+                results.add(new LogManager.LogEntry(
+                    LocalDateTime.ofEpochSecond(baseEpochSecond + (data.getInt(offset + SECOND_OFFSET) & 0xFFFFFFFFL),
+                        0, ZoneOffset.UTC),
+                    badges.get(data.getInt(offset + BADGE_OFFSET)),
+                    readers.get(data.getInt(offset + READER_OFFSET)),
+                    resources.get(data.getInt(offset + RESOURCE_OFFSET)),
+                    users.get(u),
+                    userNames.get(u),
+                    (data.get(offset + FLAGS_OFFSET) & GRANTED_FLAG) != 0,
+                    reason < REASON_CODES.length ? REASON_CODES[reason] : AccessResponse.ReasonCode.OTHER));
+            }
+        }
+    }
+
+    /**
+     * Dictionary - Encoded strings of a footer or journal, decoded on first use
+     */
+    static final class Dictionary {
+        private final ByteBuffer data;
+        private final int[] offsets; // ID -> offset of the string's u16 length
+        private final String[] values; // ID -> decoded string, null until used
+        private final int end; // Offset after the last string
+
+        /**
+         * Read dictionary starting with its count
+         */
+        Dictionary(ByteBuffer data, int position) {
+            this(data, position + 4, data.getInt(position));
+        }
+
+        /**
+         * Read count strings starting at position
+         */
+        Dictionary(ByteBuffer data, int position, int count) {
+            this.data = data;
+            this.offsets = new int[count];
+            this.values = new String[count];
+            for (int i = 0; i < count; i++) {
+                offsets[i] = position;
+                position += 2 + (data.getShort(position) & 0xFFFF);
+            }
+            this.end = position;
+        }
+
+        /**
+         * Use count strings at the given offsets (journal entries)
+         */
+        Dictionary(ByteBuffer data, int[] offsets, int count) {
+            this.data = data;
+            this.offsets = Arrays.copyOf(offsets, count);
+            this.values = new String[count];
+            this.end = -1; // Strings are not contiguous
+        }
+
+        int size() {
+            return offsets.length;
+        }
+
+        boolean contains(int id) {
+            return id >= 0 && id < offsets.length;
+        }
+
+        /**
+         * Get encoded string of an ID
+         */
+        byte[] bytes(int id) {
+            byte[] encoded = new byte[data.getShort(offsets[id]) & 0xFFFF];
+            data.get(offsets[id] + 2, encoded);
+            return encoded;
+        }
+
+        /**
+         * Find ID of a value by comparing its UTF-8 bytes
+         */
+        int idOf(String value) {
+            if (value == null) {
+                return ANY;
+            }
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            for (int id = 0; id < offsets.length; id++) {
+                int offset = offsets[id];
+                if ((data.getShort(offset) & 0xFFFF) == encoded.length
+                        && data.slice(offset + 2, encoded.length).equals(ByteBuffer.wrap(encoded))) {
+                    return id;
+                }
+            }
+            return NOT_IN_SEGMENT;
+        }
+
+        String get(int id) {
+            String value = values[id];
+            if (value == null) {
+                value = new String(bytes(id), StandardCharsets.UTF_8);
+                values[id] = value;
+            }
+            return value;
+        }
+    }
+}
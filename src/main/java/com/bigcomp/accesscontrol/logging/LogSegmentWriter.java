@@ -0,0 +1,242 @@
+// Group 2 ChenGong ZhangZhao LiangYiKuo
+package com.bigcomp.accesscontrol.logging;
+
+import com.bigcomp.accesscontrol.model.AccessResponse;
+import com.bigcomp.accesscontrol.model.User;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Log Segment Writer - Encodes access events as LogSegment rows and builds its footer
+ * Strings are replaced by dictionary IDs assigned in order of first use. Each new string is
+ * also added to the journal, which the log writer appends to the segment's journal file
+ * before the rows that use it, so an open or unsealed segment can be read. Not thread-safe
+ * (used by the log writer thread only).
+ */
+class LogSegmentWriter {
+    static final int MAX_ROWS = 1 << 20; // Rows before a segment is sealed
+    private static final int MAX_STRING_BYTES = 0xFFFF;
+
+    private final long baseEpochSecond; // Start of the segment's day
+    private final Dictionary badges;
+    private final Dictionary readers;
+    private final Dictionary resources;
+    private final Dictionary users;
+    private final List<byte[]> userNames; // User dictionary ID -> encoded full name when first logged
+    private ByteBuffer journal; // Journal entries not taken yet
+    private int rowCount;
+
+    LogSegmentWriter(long baseEpochSecond) {
+        this.baseEpochSecond = baseEpochSecond;
+        this.badges = new Dictionary();
+        this.readers = new Dictionary();
+        this.resources = new Dictionary();
+        this.users = new Dictionary();
+        this.userNames = new ArrayList<>();
+        this.journal = ByteBuffer.allocate(256);
+        this.journal.putInt(LogSegment.JOURNAL_MAGIC);
+    }
+
+    /**
+     * Dictionary - String -> ID in order of first use
+     */
+    private static final class Dictionary {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<byte[]> values = new ArrayList<>();
+        private int bytes; // Encoded size
+
+        /**
+         * Get ID of a value
+         * @return its ID, -1 - ID if the value is new
+         */
+        int idOf(String value) {
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = values.size();
+                ids.put(value, id);
+                restore(encode(value));
+                return -1 - id;
+            }
+            return id;
+        }
+
+        /**
+         * Append encoded value read back from a journal
+         */
+        void restore(byte[] encoded) {
+            values.add(encoded);
+            bytes += 2 + encoded.length;
+        }
+    }
+
+    private static byte[] encode(String value) {
+        byte[] encoded = (value != null ? value : "").getBytes(StandardCharsets.UTF_8);
+        if (encoded.length > MAX_STRING_BYTES) {
+            byte[] truncated = new byte[MAX_STRING_BYTES];
+            System.arraycopy(encoded, 0, truncated, 0, MAX_STRING_BYTES);
+            return truncated;
+        }
+        return encoded;
+    }
+
+    /**
+     * Put segment header
+     */
+    void putHeader(ByteBuffer buffer) {
+        buffer.putInt(LogSegment.MAGIC);
+        buffer.put(LogSegment.VERSION);
+        buffer.put((byte) LogSegment.ROW_SIZE);
+        buffer.putShort((short) 0);
+        buffer.putLong(baseEpochSecond);
+    }
+
+    /**
+     * Put one fixed-width row
+     */
+    void putRow(ByteBuffer buffer, long epochSecond, String badgeCode, String badgeReaderId, String resourceId,
+                User user, boolean granted, AccessResponse.ReasonCode reasonCode) {
+        int badge = journaledIdOf(badges, LogSegment.JOURNAL_BADGE, badgeCode);
+        int reader = journaledIdOf(readers, LogSegment.JOURNAL_READER, badgeReaderId);
+        int resource = journaledIdOf(resources, LogSegment.JOURNAL_RESOURCE, resourceId);
+        int userId = users.idOf(user.getId());
+        if (userId < 0) {
+            userId = -1 - userId;
+            byte[] name = encode(user.getFullName());
+            userNames.add(name);
+            journalEntry(LogSegment.JOURNAL_USER, users.values.get(userId), 2 + name.length);
+            putString(journal, name);
+        }
+        buffer.putInt((int) Math.max(0, epochSecond - baseEpochSecond));
+        buffer.putInt(badge);
+        buffer.putInt(reader);
+        buffer.putInt(resource);
+        buffer.putInt(userId);
+        buffer.put(granted ? LogSegment.GRANTED_FLAG : 0);
+        buffer.put((byte) reasonCode.ordinal());
+        buffer.putShort((short) 0);
+        rowCount++;
+    }
+
+    private int journaledIdOf(Dictionary dictionary, byte kind, String value) {
+        int id = dictionary.idOf(value);
+        if (id < 0) {
+            id = -1 - id;
+            journalEntry(kind, dictionary.values.get(id), 0);
+        }
+        return id;
+    }
+
+    /**
+     * Start a journal entry: kind and the new string
+     * @param extra Bytes the caller puts after it
+     */
+    private void journalEntry(byte kind, byte[] value, int extra) {
+        int needed = 1 + 2 + value.length + extra;
+        if (journal.remaining() < needed) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(journal.capacity() * 2, journal.position() + needed));
+            journal.flip();
+            grown.put(journal);
+            journal = grown;
+        }
+        journal.put(kind);
+        putString(journal, value);
+    }
+
+    /**
+     * Take the journal entries added since the last call
+     * @return null if there are none
+     */
+    ByteBuffer takeJournal() {
+        if (journal.position() == 0) {
+            return null;
+        }
+        ByteBuffer entries = ByteBuffer.allocate(journal.position());
+        journal.flip();
+        entries.put(journal);
+        entries.flip();
+        journal.clear();
+        return entries;
+    }
+
+    /**
+     * Build journal entry recording that the segment is being sealed with its row count
+     * (written before the footer, so readers never take footer bytes for rows)
+     */
+    ByteBuffer sealEntry() {
+        ByteBuffer entry = ByteBuffer.allocate(1 + 4);
+        entry.put(LogSegment.JOURNAL_SEAL);
+        entry.putInt(rowCount);
+        entry.flip();
+        return entry;
+    }
+
+    /**
+     * Rebuild the dictionaries of an unsealed segment from its journal, to seal it
+     * (only footer() may be used on the result)
+     * @param rows Number of complete rows in the segment
+     */
+    static LogSegmentWriter restore(long baseEpochSecond, LogSegment.Journal journal, int rows) {
+        LogSegmentWriter writer = new LogSegmentWriter(baseEpochSecond);
+        restore(writer.badges, journal.badges);
+        restore(writer.readers, journal.readers);
+        restore(writer.resources, journal.resources);
+        restore(writer.users, journal.users);
+        for (int id = 0; id < journal.userNames.size(); id++) {
+            writer.userNames.add(journal.userNames.bytes(id));
+        }
+        writer.journal.clear();
+        writer.rowCount = rows;
+        return writer;
+    }
+
+    private static void restore(Dictionary dictionary, LogSegment.Dictionary journaled) {
+        for (int id = 0; id < journaled.size(); id++) {
+            dictionary.restore(journaled.bytes(id));
+        }
+    }
+
+    /**
+     * Build dictionary footer and trailer (written after the last row)
+     */
+    ByteBuffer footer() {
+        int size = 4 * 4 + badges.bytes + readers.bytes + resources.bytes + users.bytes
+            + LogSegment.TRAILER_SIZE;
+        for (byte[] name : userNames) {
+            size += 2 + name.length;
+        }
+        ByteBuffer footer = ByteBuffer.allocate(size);
+        putDictionary(footer, badges.values);
+        putDictionary(footer, readers.values);
+        putDictionary(footer, resources.values);
+        putDictionary(footer, users.values);
+        for (byte[] name : userNames) {
+            putString(footer, name);
+        }
+        footer.putLong(LogSegment.HEADER_SIZE + (long) rowCount * LogSegment.ROW_SIZE);
+        footer.putInt(rowCount);
+        footer.putInt(LogSegment.TRAILER_MAGIC);
+        footer.flip();
+        return footer;
+    }
+
+    private static void putDictionary(ByteBuffer buffer, List<byte[]> values) {
+        buffer.putInt(values.size());
+        for (byte[] value : values) {
+            putString(buffer, value);
+        }
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] value) {
+        buffer.putShort((short) value.length);
+        buffer.put(value);
+    }
+
+    int getRowCount() {
+        return rowCount;
+    }
+}
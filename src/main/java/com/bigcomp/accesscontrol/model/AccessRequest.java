@@ -2,6 +2,7 @@
 package com.bigcomp.accesscontrol.model;
 
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 
 /**
  * Access Request class - Represents an access request
@@ -11,15 +12,31 @@ public class AccessRequest {
     private String badgeReaderId; // Badge reader ID
     private String resourceId; // Resource ID
     private LocalDateTime timestamp; // Request timestamp
+    private long epochSecond; // Timestamp as epoch seconds (local time read as UTC), computed once
+    private final long createdNanos; // System.nanoTime() at creation, for pipeline latency
+    private volatile BadgeReader origin; // Reader the request came from, answered by the Router
 
     public AccessRequest(String badgeCode, String badgeReaderId, String resourceId, LocalDateTime timestamp) {
         this.badgeCode = badgeCode;
         this.badgeReaderId = badgeReaderId;
         this.resourceId = resourceId;
-        this.timestamp = timestamp;
+        this.createdNanos = System.nanoTime();
+        setTimestamp(timestamp);
+    }
+
+    /**
+     * Convert date-time to the epoch seconds used for primitive time comparisons
+     * (local time read as UTC, the same convention as badge expiry values)
+     */
+    public static long toEpochSecond(LocalDateTime dateTime) {
+        return dateTime != null ? dateTime.toEpochSecond(ZoneOffset.UTC) : 0;
     }
 
     // Getters and Setters
+    public long getCreatedNanos() {
+        return createdNanos;
+    }
+
     public String getBadgeCode() {
         return badgeCode;
     }
@@ -50,6 +67,22 @@ public class AccessRequest {
 
     public void setTimestamp(LocalDateTime timestamp) {
         this.timestamp = timestamp;
+        this.epochSecond = toEpochSecond(timestamp);
+    }
+
+    public long getEpochSecond() {
+        return epochSecond;
+    }
+
+    /**
+     * Get reader the request came from (null if it was not swiped on a registered reader)
+     */
+    public BadgeReader getOrigin() {
+        return origin;
+    }
+
+    public void setOrigin(BadgeReader origin) {
+        this.origin = origin;
     }
 }
 
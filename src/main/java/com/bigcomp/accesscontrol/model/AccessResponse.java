@@ -3,18 +3,83 @@ package com.bigcomp.accesscontrol.model;
 
 /**
  * Access Response class - Represents access control system response
+ * Carries a compact reason code; the human-readable message is only built when asked for
  */
 public class AccessResponse {
+    /**
+     * Reason code - Why access was granted or denied
+     */
+    public enum ReasonCode {
+        GRANTED("Access granted"),
+        UNCONTROLLED("Resource is in uncontrolled state"),
+        USER_NOT_FOUND("User not found"),
+        BADGE_REVOKED("Badge has been revoked"),
+        BADGE_EXPIRED("Badge has expired"),
+        RESOURCE_NOT_FOUND("Resource does not exist"),
+        NO_PROFILES("User has no access permissions configured"),
+        NO_GROUP("Resource does not belong to any group"),
+        PROFILE_NOT_FOUND("Profile does not exist"), // args: profile
+        GROUP_NOT_IN_PROFILE("Profile does not have resource group configured"), // args: profile, group
+        DAY_EXCLUDED("Day is in exclusion list"), // args: profile, group, week minute
+        DAY_NOT_ALLOWED("Day is not in allowed list"), // args: profile, group, week minute
+        TIME_EXCLUDED("Time is in exclusion range"), // args: profile, group, week minute
+        TIME_NOT_ALLOWED("Time is not in allowed range"), // args: profile, group, week minute
+        TIME_FILTER("Time filter does not allow access"), // args: profile, group, week minute
+        OVERLOADED("System busy, please try again"), // Request dropped or rejected by the Router
+        RATE_LIMITED("Too many swipes, please wait"), // Badge or reader over its rate limit
+        OTHER("Access denied: Insufficient permissions"), // Free-text message
+        // Added after OTHER: ordinals are stored in log segments and sent to readers
+        NO_OFFLINE_POLICY("No offline policy available"), // Reader offline without a pushed policy
+        NOT_IN_OFFLINE_POLICY("Badge is not allowed at this resource"); // Badge missing from the reader's offline policy
+
+        private final String defaultMessage;
+
+        ReasonCode(String defaultMessage) {
+            this.defaultMessage = defaultMessage;
+        }
+
+        public String getDefaultMessage() {
+            return defaultMessage;
+        }
+    }
+
+    /**
+     * Message formatter - Turns a reason code and its int arguments into text
+     * (implemented by the component that knows what the arguments refer to)
+     */
+    public interface MessageFormatter {
+        String format(ReasonCode reasonCode, int arg0, int arg1, int arg2);
+    }
+
     private String badgeReaderId; // Badge reader ID
     private boolean granted; // Whether granted
-    private String message; // Response message
+    private ReasonCode reasonCode; // Reason code
+    private int arg0, arg1, arg2; // Reason arguments (meaning depends on reason code)
+    private MessageFormatter formatter; // Builds message lazily, null for fixed messages
+    private String message; // Response message, built on first getMessage()
 
     public AccessResponse(String badgeReaderId, boolean granted, String message) {
         this.badgeReaderId = badgeReaderId;
         this.granted = granted;
+        this.reasonCode = ReasonCode.OTHER;
         this.message = message;
     }
 
+    public AccessResponse(String badgeReaderId, boolean granted, ReasonCode reasonCode) {
+        this(badgeReaderId, granted, reasonCode, 0, 0, 0, null);
+    }
+
+    public AccessResponse(String badgeReaderId, boolean granted, ReasonCode reasonCode,
+                          int arg0, int arg1, int arg2, MessageFormatter formatter) {
+        this.badgeReaderId = badgeReaderId;
+        this.granted = granted;
+        this.reasonCode = reasonCode;
+        this.arg0 = arg0;
+        this.arg1 = arg1;
+        this.arg2 = arg2;
+        this.formatter = formatter;
+    }
+
     // Getters and Setters
     public String getBadgeReaderId() {
         return badgeReaderId;
@@ -32,7 +97,25 @@ public class AccessResponse {
         this.granted = granted;
     }
 
+    public ReasonCode getReasonCode() {
+        return reasonCode;
+    }
+
+    public int getReasonArg(int index) {
+        switch (index) {
+            case 0: return arg0;
+            case 1: return arg1;
+            case 2: return arg2;
+            default: throw new IndexOutOfBoundsException("Reason argument index: " + index);
+        }
+    }
+
     public String getMessage() {
+        if (message == null) {
+            message = formatter != null
+                ? formatter.format(reasonCode, arg0, arg1, arg2)
+                : reasonCode.getDefaultMessage();
+        }
         return message;
     }
 
@@ -40,4 +123,3 @@ public class AccessResponse {
         this.message = message;
     }
 }
-
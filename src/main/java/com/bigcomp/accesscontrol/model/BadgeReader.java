@@ -1,27 +1,89 @@
 // Group 2 ChenGong ZhangZhao LiangYiKuo
 package com.bigcomp.accesscontrol.model;
 
+import com.bigcomp.accesscontrol.util.HashedWheelTimer;
 import com.bigcomp.accesscontrol.util.SystemClock;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.time.LocalDateTime;
-import java.util.concurrent.CompletableFuture;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Badge Reader class - Simulates physical badge reader
  * Can read badge information and control resources
  */
 public class BadgeReader {
+    private static final long COOLDOWN_MILLIS = 3000; // Reader inactive after a response
+    private static final long RESOURCE_ACTIVE_MILLIS = 5000; // Resource recovers (e.g. door relocks)
+    private static final int MAX_OFFLINE_DECISIONS = 100000; // Oldest are dropped beyond this
+    private static volatile boolean consoleEcho; // Display messages are also printed to System.out
+
     private String id; // Badge reader unique identifier
     private String resourceId; // Associated resource ID
-    private boolean active; // Whether badge reader is active
-    private PropertyChangeSupport pcs; // For event notification
+    private volatile boolean active; // Whether badge reader is active
+    private HashedWheelTimer.Timeout reactivation; // Pending cooldown timer, replaced by each response
+    private PropertyChangeSupport pcs; // Bean listeners (compatibility, fed by beanAdapter)
+    private volatile EventListener[] listeners; // Typed listeners, copied on change, never locked on dispatch
+    private volatile int messageListeners; // Listeners that override onMessage
+    private EventListener beanAdapter; // Registered while bean listeners exist
+    private volatile OfflinePolicy offlinePolicy; // Pushed by the central system, null until then
+    private volatile boolean offline; // Central system unavailable, swipes are decided locally
+    private final ArrayDeque<OfflineDecision> offlineDecisions; // Not reconciled yet, guarded by itself
+    private long droppedOfflineDecisions; // Guarded by offlineDecisions
 
     public BadgeReader(String id, String resourceId) {
         this.id = id;
         this.resourceId = resourceId;
         this.active = true;
         this.pcs = new PropertyChangeSupport(this);
+        this.listeners = new EventListener[0];
+        this.offlineDecisions = new ArrayDeque<>();
+    }
+
+    /**
+     * Event listener - Typed badge reader events, dispatched by direct method call
+     */
+    public interface EventListener {
+        default void onAccessRequest(BadgeReader reader, AccessRequest request) {
+        }
+
+        default void onMessage(BadgeReader reader, String message) {
+        }
+
+        default void onResourceActivated(BadgeReader reader, String resourceId) {
+        }
+
+        default void onResourceDeactivated(BadgeReader reader, String resourceId) {
+        }
+    }
+
+    /**
+     * Bean adapter - Turns typed events back into PropertyChangeEvents for bean listeners
+     */
+    private class BeanAdapter implements EventListener {
+        @Override
+        public void onAccessRequest(BadgeReader reader, AccessRequest request) {
+            pcs.firePropertyChange("accessRequest", null, request);
+        }
+
+        @Override
+        public void onMessage(BadgeReader reader, String message) {
+            pcs.firePropertyChange("message", null, message);
+        }
+
+        @Override
+        public void onResourceActivated(BadgeReader reader, String resourceId) {
+            pcs.firePropertyChange("resourceActivated", null, resourceId);
+        }
+
+        @Override
+        public void onResourceDeactivated(BadgeReader reader, String resourceId) {
+            pcs.firePropertyChange("resourceDeactivated", null, resourceId);
+        }
     }
 
     /**
@@ -45,12 +107,57 @@ public class BadgeReader {
             SystemClock.now()
         );
 
+        if (offline) {
+            decideOffline(request);
+            return request;
+        }
+
         // Notify router
-        pcs.firePropertyChange("accessRequest", null, request);
+        for (EventListener listener : listeners) {
+            listener.onAccessRequest(this, request);
+        }
 
         return request;
     }
 
+    /**
+     * Decide request with the offline policy and keep the decision for reconciliation
+     * Without a policy (or with one for another resource) access is denied
+     */
+    private void decideOffline(AccessRequest request) {
+        OfflinePolicy policy = offlinePolicy;
+        AccessResponse response = policy != null ? policy.decide(request)
+            : new AccessResponse(id, false, AccessResponse.ReasonCode.NO_OFFLINE_POLICY);
+        synchronized (offlineDecisions) {
+            if (offlineDecisions.size() == MAX_OFFLINE_DECISIONS) {
+                offlineDecisions.pollFirst();
+                droppedOfflineDecisions++;
+            }
+            offlineDecisions.addLast(new OfflineDecision(request, response, policy != null ? policy.getBuiltAt() : 0));
+        }
+        handleAccessResponse(request, response);
+    }
+
+    /**
+     * Take all offline decisions not reconciled yet, oldest first
+     */
+    public List<OfflineDecision> drainOfflineDecisions() {
+        synchronized (offlineDecisions) {
+            List<OfflineDecision> drained = new ArrayList<>(offlineDecisions);
+            offlineDecisions.clear();
+            return drained;
+        }
+    }
+
+    /**
+     * Get number of offline decisions dropped because too many were waiting for reconciliation
+     */
+    public long getDroppedOfflineDecisionCount() {
+        synchronized (offlineDecisions) {
+            return droppedOfflineDecisions;
+        }
+    }
+
     /**
      * Update badge code (bring badge near reader without swiping)
      * @param badge Badge to update
@@ -79,19 +186,29 @@ public class BadgeReader {
             // Access granted, activate resource
             activateResource();
         } else {
-            // Access denied, display denial message
-            displayMessage("Access denied: " + response.getMessage());
+            // Access denied, display denial message (built only if something shows it)
+            if (consoleEcho || messageListeners > 0) {
+                displayMessage("Access denied: " + response.getMessage());
+            }
         }
 
-        // Reactivate badge reader after a few seconds
-        CompletableFuture.runAsync(() -> {
-            try {
-                Thread.sleep(3000); // Reactivate after 3 seconds
-                this.active = true;
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+        // Reactivate badge reader after a few seconds (restart cooldown if one is pending)
+        synchronized (this) {
+            if (reactivation != null) {
+                reactivation.cancel();
             }
-        });
+            reactivation = HashedWheelTimer.shared().newTimeout(() -> this.active = true,
+                COOLDOWN_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Handle access response to a given request
+     * Readers that keep several requests in flight (networked readers) override this to
+     * match the response with its request
+     */
+    public void handleAccessResponse(AccessRequest request, AccessResponse response) {
+        handleAccessResponse(response);
     }
 
     /**
@@ -100,36 +217,108 @@ public class BadgeReader {
     private void activateResource() {
         displayMessage("Access granted");
         // Notify resource is activated
-        pcs.firePropertyChange("resourceActivated", null, resourceId);
+        for (EventListener listener : listeners) {
+            listener.onResourceActivated(this, resourceId);
+        }
         
         // Simulate resource operation time (e.g., door opens and closes)
-        CompletableFuture.runAsync(() -> {
-            try {
-                Thread.sleep(5000); // Resource recovers after 5 seconds
-                pcs.firePropertyChange("resourceDeactivated", null, resourceId);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+        String activatedResourceId = resourceId;
+        HashedWheelTimer.shared().newTimeout(() -> {
+            for (EventListener listener : listeners) {
+                listener.onResourceDeactivated(this, activatedResourceId);
             }
-        });
+        }, RESOURCE_ACTIVE_MILLIS, TimeUnit.MILLISECONDS);
     }
 
     /**
      * Display message (simulate badge reader display)
      */
     private void displayMessage(String message) {
-        System.out.println("Badge Reader " + id + ": " + message);
-        pcs.firePropertyChange("message", null, message);
+        if (consoleEcho) {
+            System.out.println("Badge Reader " + id + ": " + message);
+        }
+        if (messageListeners > 0) {
+            for (EventListener listener : listeners) {
+                listener.onMessage(this, message);
+            }
+        }
+    }
+
+    /**
+     * Set whether all badge readers print their display messages to System.out
+     * (off by default, so denials are not formatted and printed on the request path)
+     */
+    public static void setConsoleEcho(boolean echo) {
+        consoleEcho = echo;
+    }
+
+    public static boolean isConsoleEcho() {
+        return consoleEcho;
+    }
+
+    /**
+     * Check whether a listener overrides onMessage (others never need the message text)
+     */
+    private static boolean handlesMessages(EventListener listener) {
+        try {
+            return listener.getClass().getMethod("onMessage", BadgeReader.class, String.class)
+                .getDeclaringClass() != EventListener.class;
+        } catch (NoSuchMethodException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Add typed event listener
+     */
+    public synchronized void addEventListener(EventListener listener) {
+        EventListener[] current = listeners;
+        EventListener[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = listener;
+        listeners = updated;
+        if (handlesMessages(listener)) {
+            messageListeners++;
+        }
+    }
+
+    /**
+     * Remove typed event listener
+     */
+    public synchronized void removeEventListener(EventListener listener) {
+        EventListener[] current = listeners;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == listener) {
+                EventListener[] updated = new EventListener[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                listeners = updated;
+                if (handlesMessages(listener)) {
+                    messageListeners--;
+                }
+                return;
+            }
+        }
     }
 
     /**
      * Add property change listener
+     * Compatibility adapter: "accessRequest", "message", "resourceActivated" and
+     * "resourceDeactivated" events are delivered as PropertyChangeEvents
      */
-    public void addPropertyChangeListener(PropertyChangeListener listener) {
+    public synchronized void addPropertyChangeListener(PropertyChangeListener listener) {
         pcs.addPropertyChangeListener(listener);
+        if (beanAdapter == null) {
+            beanAdapter = new BeanAdapter();
+            addEventListener(beanAdapter);
+        }
     }
 
-    public void removePropertyChangeListener(PropertyChangeListener listener) {
+    public synchronized void removePropertyChangeListener(PropertyChangeListener listener) {
         pcs.removePropertyChangeListener(listener);
+        if (beanAdapter != null && pcs.getPropertyChangeListeners().length == 0) {
+            removeEventListener(beanAdapter);
+            beanAdapter = null;
+        }
     }
 
     // Getters and Setters
@@ -149,6 +338,26 @@ public class BadgeReader {
         this.resourceId = resourceId;
     }
 
+    public OfflinePolicy getOfflinePolicy() {
+        return offlinePolicy;
+    }
+
+    public void setOfflinePolicy(OfflinePolicy offlinePolicy) {
+        this.offlinePolicy = offlinePolicy;
+    }
+
+    public boolean isOffline() {
+        return offline;
+    }
+
+    /**
+     * Switch offline mode: while offline, swipes are decided with the offline policy
+     * instead of being sent to the router
+     */
+    public void setOffline(boolean offline) {
+        this.offline = offline;
+    }
+
     public boolean isActive() {
         return active;
     }
@@ -0,0 +1,30 @@
+// Group 2 ChenGong ZhangZhao LiangYiKuo
+package com.bigcomp.accesscontrol.model;
+
+/**
+ * Offline Decision - Swipe a badge reader decided with its offline policy
+ * Kept by the reader until the central system reconciles it
+ */
+public final class OfflineDecision {
+    private final AccessRequest request;
+    private final AccessResponse response; // Decision applied at the resource
+    private final long policyBuiltAt; // OfflinePolicy.getBuiltAt(), 0 if the reader had no policy
+
+    public OfflineDecision(AccessRequest request, AccessResponse response, long policyBuiltAt) {
+        this.request = request;
+        this.response = response;
+        this.policyBuiltAt = policyBuiltAt;
+    }
+
+    public AccessRequest getRequest() {
+        return request;
+    }
+
+    public AccessResponse getResponse() {
+        return response;
+    }
+
+    public long getPolicyBuiltAt() {
+        return policyBuiltAt;
+    }
+}
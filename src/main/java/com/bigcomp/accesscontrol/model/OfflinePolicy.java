@@ -0,0 +1,90 @@
+// Group 2 ChenGong ZhangZhao LiangYiKuo
+package com.bigcomp.accesscontrol.model;
+
+import com.bigcomp.accesscontrol.profile.CompiledTimeFilter;
+
+import java.util.Arrays;
+
+/**
+ * Offline Policy - Compact copy of the access rules of one resource, kept by its badge readers
+ * Lists the badge codes allowed at the resource (sorted, found by binary search) with their
+ * badge expiry and the compiled time filters that grant them. Badges with the same filters
+ * share one filter array; at an uncontrolled resource every valid badge is listed, without
+ * filters. Lets a reader decide locally, without the ARP, during an outage.
+ */
+public final class OfflinePolicy {
+    private final String resourceId;
+    private final long builtAt; // Epoch millisecond the policy was computed
+    private final boolean uncontrolled; // Resource grants every valid badge
+    private final String[] badgeCodes; // Sorted
+    private final long[] badgeExpiry; // Badge index -> expiry epoch second
+    private final int[] windowOf; // Badge index -> index into windows
+    private final CompiledTimeFilter[][] windows; // Distinct filter sets, any match grants
+
+    /**
+     * Create offline policy (the arrays must not be modified afterwards)
+     */
+    public OfflinePolicy(String resourceId, long builtAt, boolean uncontrolled, String[] badgeCodes,
+                         long[] badgeExpiry, int[] windowOf, CompiledTimeFilter[][] windows) {
+        this.resourceId = resourceId;
+        this.builtAt = builtAt;
+        this.uncontrolled = uncontrolled;
+        this.badgeCodes = badgeCodes;
+        this.badgeExpiry = badgeExpiry;
+        this.windowOf = windowOf;
+        this.windows = windows;
+    }
+
+    /**
+     * Decide request locally: binary search for the badge, then one bit test per time filter
+     */
+    public AccessResponse decide(AccessRequest request) {
+        String readerId = request.getBadgeReaderId();
+        if (!resourceId.equals(request.getResourceId())) {
+            return new AccessResponse(readerId, false, AccessResponse.ReasonCode.RESOURCE_NOT_FOUND); // Not its resource
+        }
+        int badge = Arrays.binarySearch(badgeCodes, request.getBadgeCode());
+        if (badge < 0) {
+            // Unknown badge or no rights here: the policy does not tell them apart
+            return new AccessResponse(readerId, false, AccessResponse.ReasonCode.NOT_IN_OFFLINE_POLICY);
+        }
+        if (request.getEpochSecond() > badgeExpiry[badge]) {
+            return new AccessResponse(readerId, false, AccessResponse.ReasonCode.BADGE_EXPIRED);
+        }
+        if (uncontrolled) {
+            return new AccessResponse(readerId, true, AccessResponse.ReasonCode.UNCONTROLLED);
+        }
+        for (CompiledTimeFilter filter : windows[windowOf[badge]]) {
+            if (filter.matches(request.getTimestamp())) {
+                return new AccessResponse(readerId, true, AccessResponse.ReasonCode.GRANTED);
+            }
+        }
+        return new AccessResponse(readerId, false, AccessResponse.ReasonCode.TIME_FILTER);
+    }
+
+    public String getResourceId() {
+        return resourceId;
+    }
+
+    public long getBuiltAt() {
+        return builtAt;
+    }
+
+    public boolean isUncontrolled() {
+        return uncontrolled;
+    }
+
+    /**
+     * Get number of badges allowed at the resource
+     */
+    public int getBadgeCount() {
+        return badgeCodes.length;
+    }
+
+    /**
+     * Get number of distinct time filter sets
+     */
+    public int getWindowCount() {
+        return windows.length;
+    }
+}
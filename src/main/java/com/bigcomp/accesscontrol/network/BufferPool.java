@@ -0,0 +1,68 @@
+// Group 2 ChenGong ZhangZhao LiangYiKuo
+package com.bigcomp.accesscontrol.network;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Buffer Pool - Reusable direct buffers of one size
+ * Direct buffers are expensive to allocate and free, so datagram I/O borrows them from here.
+ * When the pool is empty a new buffer is allocated; buffers beyond the pool size are dropped on release.
+ */
+public class BufferPool {
+    private final int bufferSize;
+    private final int maxPooled;
+    private final Queue<ByteBuffer> free;
+    private final AtomicInteger freeCount;
+    private final LongAdder allocatedCount;
+
+    public BufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+        this.free = new ConcurrentLinkedQueue<>();
+        this.freeCount = new AtomicInteger();
+        this.allocatedCount = new LongAdder();
+    }
+
+    /**
+     * Borrow a cleared buffer
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = free.poll();
+        if (buffer == null) {
+            allocatedCount.increment();
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        freeCount.decrementAndGet();
+        return buffer.clear();
+    }
+
+    /**
+     * Return a buffer to the pool
+     */
+    public void release(ByteBuffer buffer) {
+        if (freeCount.incrementAndGet() <= maxPooled) {
+            free.add(buffer);
+        } else {
+            freeCount.decrementAndGet();
+        }
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Get number of buffers allocated so far (stays flat once the pool is warm)
+     */
+    public long getAllocatedCount() {
+        return allocatedCount.sum();
+    }
+
+    public int getFreeCount() {
+        return freeCount.get();
+    }
+}
@@ -0,0 +1,71 @@
+// Group 2 ChenGong ZhangZhao LiangYiKuo
+package com.bigcomp.accesscontrol.network;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Byte String Cache - Turns UTF-8 bytes in a buffer into a String without allocating
+ * when the same bytes were seen recently (badge codes, reader and resource IDs).
+ * Direct-mapped: each hash slot keeps the last string decoded into it. Not thread-safe.
+ */
+public class ByteStringCache {
+    private final byte[][] keys;
+    private final String[] values;
+    private final int mask;
+    private long hits;
+    private long misses;
+
+    /**
+     * @param size Number of slots (rounded up to a power of two)
+     */
+    public ByteStringCache(int size) {
+        int slots = Integer.highestOneBit(Math.max(1, size) - 1) << 1;
+        if (slots == 0) {
+            slots = 1;
+        }
+        this.keys = new byte[slots][];
+        this.values = new String[slots];
+        this.mask = slots - 1;
+    }
+
+    /**
+     * Get string of the bytes at an absolute position (buffer position is not moved)
+     */
+    public String get(ByteBuffer buffer, int offset, int length) {
+        int hash = 1;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + buffer.get(offset + i);
+        }
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        byte[] key = keys[slot];
+        if (key != null && key.length == length && matches(key, buffer, offset)) {
+            hits++;
+            return values[slot];
+        }
+        misses++;
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        String value = new String(bytes, StandardCharsets.UTF_8);
+        keys[slot] = bytes;
+        values[slot] = value;
+        return value;
+    }
+
+    private static boolean matches(byte[] key, ByteBuffer buffer, int offset) {
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] != buffer.get(offset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long getHitCount() {
+        return hits;
+    }
+
+    public long getMissCount() {
+        return misses;
+    }
+}
@@ -0,0 +1,391 @@
+// Group 2 ChenGong ZhangZhao LiangYiKuo
+package com.bigcomp.accesscontrol.network;
+
+import com.bigcomp.accesscontrol.core.Router;
+import com.bigcomp.accesscontrol.model.AccessRequest;
+import com.bigcomp.accesscontrol.model.AccessResponse;
+import com.bigcomp.accesscontrol.model.BadgeReader;
+import com.bigcomp.accesscontrol.util.SystemClock;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Datagram Reader Server - UDP ingestion for fire-and-forget readers (legacy turnstiles)
+ * Each datagram is one SwipeProtocol DATAGRAM frame naming its reader, resource and badge.
+ * Datagrams are received into a pooled direct buffer and decoded in place; IDs and badge codes
+ * come from a ByteStringCache, so repeated swipes do not allocate strings. Retransmissions are
+ * recognized by the reader's sequence number: an answered one gets the same reply again, one
+ * still being decided is ignored. Replies are RESPONSE frames without message.
+ * Datagrams are not authenticated, so only reader IDs configured with allowReader() are
+ * accepted, at their configured resource; a reader ID already registered with the Router by
+ * another transport (in-process or TCP) is never taken over.
+ */
+public class DatagramReaderServer {
+    public static final int DEFAULT_PORT = 7071;
+    private static final int BUFFER_SIZE = 1024; // Largest DATAGRAM frame is 775 bytes
+    private static final int RECEIVE_BUFFER_BYTES = 4 << 20; // Socket buffer absorbing bursts
+    private static final int WINDOW = 64; // Sequences remembered per reader (power of two)
+    private static final int RESTART_GAP = 1024; // Sequence this far behind means the reader restarted
+
+    private final Router router;
+    private final int port;
+    private final BufferPool bufferPool;
+    private final ByteStringCache strings; // Receive thread only
+    private final Map<String, String> allowedReaders; // Reader ID -> resource ID
+    private final Map<String, DatagramReader> readers; // Registered datagram readers
+    private DatagramChannel channel;
+    private Thread receiveThread;
+    private volatile boolean running;
+
+    // Metrics
+    private final LongAdder receivedCount;
+    private final LongAdder duplicateCount;
+    private final LongAdder staleCount;
+    private final LongAdder malformedCount;
+    private final LongAdder rejectedCount;
+    private final LongAdder replyCount;
+
+    public DatagramReaderServer(Router router, int port) {
+        this.router = router;
+        this.port = port;
+        this.bufferPool = new BufferPool(BUFFER_SIZE, 256);
+        this.strings = new ByteStringCache(16384);
+        this.allowedReaders = new ConcurrentHashMap<>();
+        this.readers = new ConcurrentHashMap<>();
+        this.receivedCount = new LongAdder();
+        this.duplicateCount = new LongAdder();
+        this.staleCount = new LongAdder();
+        this.malformedCount = new LongAdder();
+        this.rejectedCount = new LongAdder();
+        this.replyCount = new LongAdder();
+    }
+
+    /**
+     * Datagram reader - Badge reader fed by datagrams, remembering its recent sequence numbers
+     */
+    private final class DatagramReader extends BadgeReader {
+        private static final byte EMPTY = 0;
+        private static final byte PENDING = 1;
+        private static final byte ANSWERED = 2;
+
+        // Window of recent sequences, indexed by sequence & (WINDOW - 1), guarded by this
+        private final int[] sequences = new int[WINDOW];
+        private final byte[] states = new byte[WINDOW];
+        private final AccessRequest[] requests = new AccessRequest[WINDOW];
+        private final SocketAddress[] senders = new SocketAddress[WINDOW];
+        private final boolean[] granted = new boolean[WINDOW];
+        private final AccessResponse.ReasonCode[] reasons = new AccessResponse.ReasonCode[WINDOW];
+        private int highest;
+        private boolean started;
+
+        DatagramReader(String id, String resourceId) {
+            super(id, resourceId);
+        }
+
+        /**
+         * Record a received swipe
+         * @return Request to route, or null for a retransmission or a stale sequence
+         */
+        synchronized AccessRequest receive(int sequence, String badgeCode, SocketAddress sender) {
+            int slot = sequence & (WINDOW - 1);
+            int distance = sequence - highest;
+            if (started && distance <= 0 && distance > -WINDOW
+                    && sequences[slot] == sequence && states[slot] != EMPTY) {
+                duplicateCount.increment();
+                if (states[slot] == ANSWERED) {
+                    sendReply(sender, sequence, granted[slot], reasons[slot]);
+                }
+                return null;
+            }
+            if (started && distance <= -WINDOW && distance > -RESTART_GAP) {
+                staleCount.increment();
+                return null;
+            }
+            if (!started || distance > 0 || distance <= -RESTART_GAP) {
+                if (started && distance <= -RESTART_GAP) {
+                    Arrays.fill(states, EMPTY); // Reader restarted its sequence
+                }
+                highest = sequence;
+                started = true;
+            }
+            AccessRequest request = new AccessRequest(badgeCode, getId(), getResourceId(), SystemClock.now());
+            sequences[slot] = sequence;
+            states[slot] = PENDING;
+            requests[slot] = request;
+            senders[slot] = sender;
+            return request;
+        }
+
+        @Override
+        public void handleAccessResponse(AccessRequest request, AccessResponse response) {
+            SocketAddress sender;
+            int sequence;
+            synchronized (this) {
+                int slot = 0;
+                while (slot < WINDOW && requests[slot] != request) {
+                    slot++;
+                }
+                if (slot == WINDOW) {
+                    return; // Slot reused by a later sequence
+                }
+                requests[slot] = null;
+                states[slot] = ANSWERED;
+                granted[slot] = response.isGranted();
+                reasons[slot] = response.getReasonCode();
+                sender = senders[slot];
+                sequence = sequences[slot];
+            }
+            sendReply(sender, sequence, response.isGranted(), response.getReasonCode());
+        }
+
+        @Override
+        public void handleAccessResponse(AccessResponse response) {
+            // The remote controller runs its own cooldown and display
+        }
+    }
+
+    /**
+     * Accept datagrams of a reader
+     * @param resourceId Resource the reader controls (datagrams naming another are rejected)
+     */
+    public void allowReader(String readerId, String resourceId) {
+        allowedReaders.put(readerId, resourceId);
+    }
+
+    /**
+     * Stop accepting datagrams of a reader and unregister it
+     */
+    public void removeReader(String readerId) {
+        allowedReaders.remove(readerId);
+        DatagramReader reader = readers.remove(readerId);
+        if (reader != null && router.getBadgeReaders().get(readerId) == reader) {
+            router.unregisterBadgeReader(readerId);
+        }
+    }
+
+    /**
+     * Get IDs of the readers whose datagrams are accepted
+     */
+    public Set<String> getAllowedReaders() {
+        return Collections.unmodifiableSet(allowedReaders.keySet());
+    }
+
+    /**
+     * Bind port and start receive thread
+     */
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        channel = DatagramChannel.open();
+        channel.setOption(StandardSocketOptions.SO_RCVBUF, RECEIVE_BUFFER_BYTES);
+        channel.bind(new InetSocketAddress(port));
+        running = true;
+        receiveThread = new Thread(this::run, "datagram-reader-server");
+        receiveThread.setDaemon(true);
+        receiveThread.start();
+        System.out.println("Datagram reader server listening on port " + getLocalPort());
+    }
+
+    /**
+     * Close channel and stop receive thread
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            channel.close();
+            receiveThread.join(1000);
+        } catch (IOException e) {
+            System.err.println("Failed to close datagram channel: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        ByteBuffer buffer = bufferPool.acquire();
+        try {
+            while (running) {
+                buffer.clear();
+                SocketAddress sender = channel.receive(buffer);
+                if (sender == null) {
+                    continue;
+                }
+                buffer.flip();
+                receivedCount.increment();
+                handleDatagram(buffer, sender);
+            }
+        } catch (ClosedChannelException e) {
+            // Stopped
+        } catch (IOException e) {
+            System.err.println("Datagram reader server failed: " + e.getMessage());
+        } finally {
+            bufferPool.release(buffer);
+            for (DatagramReader reader : readers.values()) {
+                if (router.getBadgeReaders().get(reader.getId()) == reader) {
+                    router.unregisterBadgeReader(reader.getId());
+                }
+            }
+            readers.clear();
+        }
+    }
+
+    /**
+     * Decode one datagram in place and route it
+     */
+    private void handleDatagram(ByteBuffer buffer, SocketAddress sender) {
+        if (SwipeProtocol.peekFrame(buffer) != SwipeProtocol.DATAGRAM) {
+            malformedCount.increment();
+            return;
+        }
+        int frameEnd = SwipeProtocol.beginFrame(buffer);
+        if (buffer.position() + 7 > frameEnd) {
+            malformedCount.increment();
+            return;
+        }
+        int sequence = buffer.getInt();
+        int position = buffer.position();
+        int readerLength = buffer.get(position) & 0xFF;
+        int resourceOffset = position + 1 + readerLength;
+        if (resourceOffset >= frameEnd) {
+            malformedCount.increment();
+            return;
+        }
+        int resourceLength = buffer.get(resourceOffset) & 0xFF;
+        int badgeOffset = resourceOffset + 1 + resourceLength;
+        if (badgeOffset >= frameEnd) {
+            malformedCount.increment();
+            return;
+        }
+        int badgeLength = buffer.get(badgeOffset) & 0xFF;
+        if (badgeOffset + 1 + badgeLength > frameEnd) {
+            malformedCount.increment();
+            return;
+        }
+
+        String readerId = strings.get(buffer, position + 1, readerLength);
+        DatagramReader reader = readers.get(readerId);
+        if (reader == null) {
+            reader = registerReader(readerId);
+            if (reader == null) {
+                rejectedCount.increment();
+                return;
+            }
+        }
+        if (!reader.getResourceId().equals(strings.get(buffer, resourceOffset + 1, resourceLength))) {
+            rejectedCount.increment();
+            return;
+        }
+        String badgeCode = strings.get(buffer, badgeOffset + 1, badgeLength);
+        AccessRequest request = reader.receive(sequence, badgeCode, sender);
+        if (request != null) {
+            router.onAccessRequest(reader, request);
+        }
+    }
+
+    /**
+     * Register an allowed reader on its first datagram
+     * @return null if the ID is not allowed or belongs to a reader of another transport
+     */
+    private DatagramReader registerReader(String readerId) {
+        String resourceId = allowedReaders.get(readerId);
+        if (resourceId == null) {
+            return null;
+        }
+        DatagramReader reader = new DatagramReader(readerId, resourceId);
+        if (!router.registerBadgeReaderIfAbsent(reader)) {
+            return null;
+        }
+        readers.put(readerId, reader);
+        return reader;
+    }
+
+    /**
+     * Send decision datagram from a pooled buffer
+     */
+    private void sendReply(SocketAddress sender, int sequence, boolean granted, AccessResponse.ReasonCode reasonCode) {
+        ByteBuffer buffer = bufferPool.acquire();
+        try {
+            SwipeProtocol.putResponse(buffer, sequence, granted, reasonCode);
+            buffer.flip();
+            if (channel.send(buffer, sender) > 0) {
+                replyCount.increment();
+            }
+        } catch (IOException e) {
+            if (running) {
+                System.err.println("Failed to send datagram reply: " + e.getMessage());
+            }
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * Get bound port (useful when started on port 0)
+     */
+    public int getLocalPort() {
+        try {
+            return channel != null ? ((InetSocketAddress) channel.getLocalAddress()).getPort() : port;
+        } catch (IOException e) {
+            return port;
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Metrics
+    public long getReceivedCount() {
+        return receivedCount.sum();
+    }
+
+    /**
+     * Get number of retransmitted swipes recognized by sequence number
+     */
+    public long getDuplicateCount() {
+        return duplicateCount.sum();
+    }
+
+    /**
+     * Get number of swipes dropped because their sequence was too old to check
+     */
+    public long getStaleCount() {
+        return staleCount.sum();
+    }
+
+    public long getMalformedCount() {
+        return malformedCount.sum();
+    }
+
+    /**
+     * Get number of datagrams dropped for an unknown reader ID, a reader ID owned by another
+     * transport or a resource other than the reader's
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    public long getReplyCount() {
+        return replyCount.sum();
+    }
+
+    public BufferPool getBufferPool() {
+        return bufferPool;
+    }
+}
@@ -0,0 +1,506 @@
+// Group 2 ChenGong ZhangZhao LiangYiKuo
+package com.bigcomp.accesscontrol.network;
+
+import com.bigcomp.accesscontrol.core.Router;
+import com.bigcomp.accesscontrol.model.AccessRequest;
+import com.bigcomp.accesscontrol.model.AccessResponse;
+import com.bigcomp.accesscontrol.model.BadgeReader;
+import com.bigcomp.accesscontrol.util.SystemClock;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reader Server - Non-blocking TCP front end for networked badge readers
+ * One selector thread accepts connections, decodes SwipeProtocol frames and writes responses.
+ * Each connection says HELLO once and is registered with the Router as a badge reader; its
+ * swipes are routed like local ones and may be pipelined (up to maxPipeline in flight).
+ * Use the Router's async mode so that decisions do not run on the selector thread.
+ * Connections are not authenticated, so only reader IDs configured with allowReader() may say
+ * HELLO, at their configured resource. A later connection of the same reader replaces the
+ * earlier one; a reader ID registered with the Router by another transport is never taken over.
+ */
+public class ReaderServer {
+    public static final int DEFAULT_PORT = 7070;
+    public static final int DEFAULT_MAX_PIPELINE = 64;
+    private static final int READ_BUFFER_SIZE = 8192; // Also the largest accepted frame
+    private static final int MAX_GATHER = 64; // Responses written per system call
+
+    private final Router router;
+    private final int port;
+    private final int maxPipeline; // Requests in flight per connection before reading pauses
+    private final Set<Connection> connections;
+    private final Map<String, String> allowedReaders; // Reader ID -> resource ID
+    private final Queue<Connection> pendingUpdates; // Connections with responses to write or reads to resume
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread selectorThread;
+    private volatile boolean running;
+
+    // Metrics
+    private final LongAdder acceptedCount;
+    private final LongAdder swipeCount;
+    private final LongAdder responseCount;
+    private final LongAdder protocolErrorCount;
+    private final LongAdder rejectedCount; // HELLOs of readers that are not allowed
+
+    public ReaderServer(Router router, int port) {
+        this(router, port, DEFAULT_MAX_PIPELINE);
+    }
+
+    /**
+     * @param router Router receiving the swipes
+     * @param port TCP port, 0 for any free port
+     * @param maxPipeline Maximum requests in flight per connection
+     */
+    public ReaderServer(Router router, int port, int maxPipeline) {
+        if (maxPipeline <= 0) {
+            throw new IllegalArgumentException("Pipeline depth must be positive: " + maxPipeline);
+        }
+        this.router = router;
+        this.port = port;
+        this.maxPipeline = maxPipeline;
+        this.connections = ConcurrentHashMap.newKeySet();
+        this.allowedReaders = new ConcurrentHashMap<>();
+        this.pendingUpdates = new ConcurrentLinkedQueue<>();
+        this.acceptedCount = new LongAdder();
+        this.swipeCount = new LongAdder();
+        this.responseCount = new LongAdder();
+        this.protocolErrorCount = new LongAdder();
+        this.rejectedCount = new LongAdder();
+    }
+
+    /**
+     * Accept connections of a reader
+     * @param resourceId Resource the reader controls (a HELLO naming another is rejected)
+     */
+    public void allowReader(String readerId, String resourceId) {
+        allowedReaders.put(readerId, resourceId);
+    }
+
+    /**
+     * Stop accepting connections of a reader (an open connection stays registered until it closes)
+     */
+    public void removeReader(String readerId) {
+        allowedReaders.remove(readerId);
+    }
+
+    /**
+     * Get IDs of the readers whose connections are accepted
+     */
+    public Set<String> getAllowedReaders() {
+        return Collections.unmodifiableSet(allowedReaders.keySet());
+    }
+
+    /**
+     * Networked reader - Badge reader whose responses are sent back over its connection
+     */
+    private final class NetworkReader extends BadgeReader {
+        private final Connection connection;
+        private final Map<AccessRequest, Integer> sequences; // Request in flight -> reader's sequence number
+
+        NetworkReader(String id, String resourceId, Connection connection) {
+            super(id, resourceId);
+            this.connection = connection;
+            this.sequences = new ConcurrentHashMap<>();
+        }
+
+        @Override
+        public void handleAccessResponse(AccessRequest request, AccessResponse response) {
+            Integer sequence = sequences.remove(request);
+            if (sequence != null) {
+                connection.send(SwipeProtocol.encodeResponse(sequence, response));
+            }
+        }
+
+        @Override
+        public void handleAccessResponse(AccessResponse response) {
+            // The remote controller runs its own cooldown and display
+        }
+
+        ReaderServer getServer() {
+            return ReaderServer.this;
+        }
+    }
+
+    /**
+     * Connection - State of one reader connection
+     */
+    private final class Connection {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final ByteBuffer readBuffer; // Write mode between reads
+        private final Queue<ByteBuffer> writeQueue; // Encoded responses, filled by decision threads
+        private final ByteBuffer[] gather; // Selector thread only
+        private final AtomicBoolean updateQueued;
+        private final AtomicInteger inFlight;
+        private NetworkReader reader; // Set by HELLO
+        private boolean readPaused; // Selector thread only
+
+        Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+            this.readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            this.writeQueue = new ConcurrentLinkedQueue<>();
+            this.gather = new ByteBuffer[MAX_GATHER];
+            this.updateQueued = new AtomicBoolean();
+            this.inFlight = new AtomicInteger();
+        }
+
+        /**
+         * Queue a response frame (any thread); the selector thread writes it
+         */
+        void send(ByteBuffer frame) {
+            writeQueue.add(frame);
+            inFlight.decrementAndGet();
+            if (updateQueued.compareAndSet(false, true)) {
+                pendingUpdates.add(this);
+                selector.wakeup();
+            }
+        }
+    }
+
+    /**
+     * Bind port and start selector thread
+     */
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+        selectorThread = new Thread(this::run, "reader-server");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+        System.out.println("Reader server listening on port " + getLocalPort());
+    }
+
+    /**
+     * Close all connections and stop selector thread
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                selector.select();
+                processUpdates();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            read(connection);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            flush(connection);
+                        }
+                    } catch (IOException e) {
+                        close(connection);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Reader server failed: " + e.getMessage());
+        } finally {
+            for (Connection connection : connections) {
+                close(connection);
+            }
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException e) {
+                System.err.println("Failed to close reader server: " + e.getMessage());
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            Connection connection = new Connection(channel, key);
+            key.attach(connection);
+            connections.add(connection);
+            acceptedCount.increment();
+        }
+    }
+
+    /**
+     * Write queued responses and resume paused reads (selector thread)
+     */
+    private void processUpdates() {
+        Connection connection;
+        while ((connection = pendingUpdates.poll()) != null) {
+            connection.updateQueued.set(false);
+            if (!connection.key.isValid()) {
+                continue;
+            }
+            try {
+                flush(connection);
+                if (connection.readPaused && connection.inFlight.get() < maxPipeline) {
+                    connection.readPaused = false;
+                    connection.key.interestOps(connection.key.interestOps() | SelectionKey.OP_READ);
+                    decodeBuffered(connection);
+                }
+            } catch (IOException e) {
+                close(connection);
+            }
+        }
+    }
+
+    private void read(Connection connection) throws IOException {
+        int count = connection.channel.read(connection.readBuffer);
+        if (count < 0) {
+            close(connection);
+            return;
+        }
+        decodeBuffered(connection);
+    }
+
+    /**
+     * Decode complete frames in the read buffer; stops early when the pipeline is full
+     */
+    private void decodeBuffered(Connection connection) {
+        ByteBuffer buffer = connection.readBuffer;
+        buffer.flip();
+        try {
+            while (true) {
+                if (connection.inFlight.get() >= maxPipeline) {
+                    connection.readPaused = true;
+                    connection.key.interestOps(connection.key.interestOps() & ~SelectionKey.OP_READ);
+                    break;
+                }
+                int type = SwipeProtocol.peekFrame(buffer);
+                if (type < 0) {
+                    if (buffer.remaining() >= 2 && SwipeProtocol.HEADER_LENGTH
+                            + (buffer.getShort(buffer.position()) & 0xFFFF) > READ_BUFFER_SIZE) {
+                        throw new SwipeProtocol.ProtocolException("Frame larger than " + READ_BUFFER_SIZE + " bytes");
+                    }
+                    break;
+                }
+                int frameEnd = SwipeProtocol.beginFrame(buffer);
+                switch (type) {
+                    case SwipeProtocol.HELLO:
+                        handleHello(connection, buffer, frameEnd);
+                        break;
+                    case SwipeProtocol.SWIPE:
+                        handleSwipe(connection, buffer, frameEnd);
+                        break;
+                    default:
+                        throw new SwipeProtocol.ProtocolException("Unexpected frame type " + type);
+                }
+                buffer.position(frameEnd);
+            }
+        } catch (SwipeProtocol.ProtocolException e) {
+            protocolErrorCount.increment();
+            System.err.println("Closing reader connection " + describe(connection) + ": " + e.getMessage());
+            close(connection);
+            return;
+        } finally {
+            buffer.compact();
+        }
+    }
+
+    private void handleHello(Connection connection, ByteBuffer buffer, int frameEnd)
+            throws SwipeProtocol.ProtocolException {
+        if (connection.reader != null) {
+            throw new SwipeProtocol.ProtocolException("Duplicate HELLO");
+        }
+        if (buffer.position() >= frameEnd) {
+            throw new SwipeProtocol.ProtocolException("Truncated HELLO");
+        }
+        int version = buffer.get() & 0xFF;
+        if (version != SwipeProtocol.VERSION) {
+            throw new SwipeProtocol.ProtocolException("Unsupported protocol version " + version);
+        }
+        String readerId = SwipeProtocol.readShortString(buffer, frameEnd);
+        String resourceId = SwipeProtocol.readShortString(buffer, frameEnd);
+        if (!resourceId.equals(allowedReaders.get(readerId))) {
+            rejectedCount.increment();
+            throw new SwipeProtocol.ProtocolException("Reader " + readerId + " is not allowed at " + resourceId);
+        }
+        NetworkReader reader = new NetworkReader(readerId, resourceId, connection);
+        if (!register(reader)) {
+            rejectedCount.increment();
+            throw new SwipeProtocol.ProtocolException("Reader " + readerId + " is registered by another transport");
+        }
+        connection.reader = reader;
+    }
+
+    /**
+     * Register reader with the Router, replacing only an earlier connection of the same reader
+     * @return false if the ID belongs to a reader of another transport
+     */
+    private boolean register(NetworkReader reader) {
+        while (!router.registerBadgeReaderIfAbsent(reader)) {
+            BadgeReader current = router.getBadgeReaders().get(reader.getId());
+            if (current == null) {
+                continue; // Unregistered meanwhile
+            }
+            if (!(current instanceof NetworkReader) || ((NetworkReader) current).getServer() != this) {
+                return false;
+            }
+            if (router.replaceBadgeReader(current, reader)) {
+                return true;
+            }
+        }
+        return true;
+    }
+
+    private void handleSwipe(Connection connection, ByteBuffer buffer, int frameEnd)
+            throws SwipeProtocol.ProtocolException {
+        NetworkReader reader = connection.reader;
+        if (reader == null) {
+            throw new SwipeProtocol.ProtocolException("SWIPE before HELLO");
+        }
+        if (buffer.position() + 4 > frameEnd) {
+            throw new SwipeProtocol.ProtocolException("Truncated SWIPE");
+        }
+        int sequence = buffer.getInt();
+        String badgeCode = SwipeProtocol.readShortString(buffer, frameEnd);
+        AccessRequest request = new AccessRequest(badgeCode, reader.getId(), reader.getResourceId(),
+            SystemClock.now());
+        reader.sequences.put(request, sequence);
+        connection.inFlight.incrementAndGet();
+        swipeCount.increment();
+        router.onAccessRequest(reader, request);
+    }
+
+    /**
+     * Write queued responses with gathering writes (selector thread)
+     */
+    private void flush(Connection connection) throws IOException {
+        SelectionKey key = connection.key;
+        while (true) {
+            int count = 0;
+            for (ByteBuffer frame : connection.writeQueue) {
+                if (count == MAX_GATHER) {
+                    break;
+                }
+                connection.gather[count++] = frame;
+            }
+            if (count == 0) {
+                if ((key.interestOps() & SelectionKey.OP_WRITE) != 0) {
+                    key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+                }
+                return;
+            }
+            connection.channel.write(connection.gather, 0, count);
+            int written = 0;
+            while (written < count && !connection.gather[written].hasRemaining()) {
+                connection.writeQueue.poll();
+                written++;
+            }
+            Arrays.fill(connection.gather, 0, count, null);
+            responseCount.add(written);
+            if (written < count) {
+                // Socket buffer full: continue when writable
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                return;
+            }
+        }
+    }
+
+    private void close(Connection connection) {
+        if (!connections.remove(connection)) {
+            return;
+        }
+        connection.key.cancel();
+        try {
+            connection.channel.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close reader connection: " + e.getMessage());
+        }
+        NetworkReader reader = connection.reader;
+        if (reader != null && router.getBadgeReaders().get(reader.getId()) == reader) {
+            router.unregisterBadgeReader(reader.getId());
+        }
+    }
+
+    private static String describe(Connection connection) {
+        return connection.reader != null ? connection.reader.getId() : String.valueOf(connection.channel.socket()
+            .getRemoteSocketAddress());
+    }
+
+    /**
+     * Get bound port (useful when started on port 0)
+     */
+    public int getLocalPort() {
+        return serverChannel != null ? serverChannel.socket().getLocalPort() : port;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Metrics
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    public long getAcceptedCount() {
+        return acceptedCount.sum();
+    }
+
+    public long getSwipeCount() {
+        return swipeCount.sum();
+    }
+
+    public long getResponseCount() {
+        return responseCount.sum();
+    }
+
+    public long getProtocolErrorCount() {
+        return protocolErrorCount.sum();
+    }
+
+    /**
+     * Get number of connections closed because their reader was not allowed
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+}
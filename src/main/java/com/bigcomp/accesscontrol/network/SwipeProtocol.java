@@ -0,0 +1,190 @@
+// Group 2 ChenGong ZhangZhao LiangYiKuo
+package com.bigcomp.accesscontrol.network;
+
+import com.bigcomp.accesscontrol.model.AccessResponse;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Swipe Protocol - Binary frames exchanged with networked badge readers
+ * Every frame is [u16 body length][u8 type][body], big-endian:
+ *   HELLO    (reader -> server): u8 version, u8 len + reader ID, u8 len + resource ID
+ *   SWIPE    (reader -> server): i32 sequence, u8 len + badge code
+ *   RESPONSE (server -> reader): i32 sequence, u8 granted, u8 reason code, u16 len + message
+ *   DATAGRAM (reader -> server, UDP): i32 sequence, u8 len + reader ID, u8 len + resource ID,
+ *            u8 len + badge code
+ * The sequence is chosen by the reader, so several swipes can be in flight per connection
+ * and responses may come back in any order. Over UDP one datagram holds one frame, and the
+ * RESPONSE is sent without a message. Strings are UTF-8.
+ */
+public final class SwipeProtocol {
+    public static final int VERSION = 1;
+    public static final byte HELLO = 1;
+    public static final byte SWIPE = 2;
+    public static final byte RESPONSE = 3;
+    public static final byte DATAGRAM = 4;
+    public static final int HEADER_LENGTH = 3; // u16 length + u8 type
+    public static final int MAX_BODY_LENGTH = 0xFFFF;
+
+    private static final AccessResponse.ReasonCode[] REASON_CODES = AccessResponse.ReasonCode.values();
+
+    private SwipeProtocol() {
+    }
+
+    /**
+     * Protocol error - Malformed frame, the connection should be closed
+     */
+    public static class ProtocolException extends Exception {
+        public ProtocolException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Get type of the complete frame at the buffer position, or -1 if not fully received
+     * (buffer in read mode; position is not moved)
+     */
+    public static int peekFrame(ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_LENGTH) {
+            return -1;
+        }
+        int position = buffer.position();
+        int bodyLength = buffer.getShort(position) & 0xFFFF;
+        if (buffer.remaining() < HEADER_LENGTH + bodyLength) {
+            return -1;
+        }
+        return buffer.get(position + 2);
+    }
+
+    /**
+     * Skip frame header; the buffer is then positioned at the body
+     * @return Position just after the frame
+     */
+    public static int beginFrame(ByteBuffer buffer) {
+        int bodyLength = buffer.getShort() & 0xFFFF;
+        buffer.get();
+        return buffer.position() + bodyLength;
+    }
+
+    public static ByteBuffer encodeHello(String readerId, String resourceId) {
+        byte[] reader = shortString(readerId);
+        byte[] resource = shortString(resourceId);
+        ByteBuffer buffer = header(HELLO, 1 + 1 + reader.length + 1 + resource.length);
+        buffer.put((byte) VERSION);
+        buffer.put((byte) reader.length).put(reader);
+        buffer.put((byte) resource.length).put(resource);
+        return buffer.flip();
+    }
+
+    public static ByteBuffer encodeSwipe(int sequence, String badgeCode) {
+        byte[] code = shortString(badgeCode);
+        ByteBuffer buffer = header(SWIPE, 4 + 1 + code.length);
+        buffer.putInt(sequence);
+        buffer.put((byte) code.length).put(code);
+        return buffer.flip();
+    }
+
+    public static ByteBuffer encodeDatagram(int sequence, String readerId, String resourceId, String badgeCode) {
+        byte[] reader = shortString(readerId);
+        byte[] resource = shortString(resourceId);
+        byte[] code = shortString(badgeCode);
+        ByteBuffer buffer = header(DATAGRAM, 4 + 3 + reader.length + resource.length + code.length);
+        buffer.putInt(sequence);
+        buffer.put((byte) reader.length).put(reader);
+        buffer.put((byte) resource.length).put(resource);
+        buffer.put((byte) code.length).put(code);
+        return buffer.flip();
+    }
+
+    /**
+     * Write a RESPONSE frame without message into a buffer (datagram replies)
+     */
+    public static void putResponse(ByteBuffer buffer, int sequence, boolean granted,
+                                   AccessResponse.ReasonCode reasonCode) {
+        buffer.putShort((short) 8);
+        buffer.put(RESPONSE);
+        buffer.putInt(sequence);
+        buffer.put((byte) (granted ? 1 : 0));
+        buffer.put((byte) reasonCode.ordinal());
+        buffer.putShort((short) 0);
+    }
+
+    public static ByteBuffer encodeResponse(int sequence, AccessResponse response) {
+        byte[] message = response.getMessage() != null
+            ? response.getMessage().getBytes(StandardCharsets.UTF_8) : new byte[0];
+        int messageLength = Math.min(message.length, MAX_BODY_LENGTH - 8);
+        ByteBuffer buffer = header(RESPONSE, 4 + 1 + 1 + 2 + messageLength);
+        buffer.putInt(sequence);
+        buffer.put((byte) (response.isGranted() ? 1 : 0));
+        buffer.put((byte) response.getReasonCode().ordinal());
+        buffer.putShort((short) messageLength).put(message, 0, messageLength);
+        return buffer.flip();
+    }
+
+    /**
+     * Read a u8-length string from the body
+     */
+    public static String readShortString(ByteBuffer buffer, int frameEnd) throws ProtocolException {
+        if (buffer.position() >= frameEnd) {
+            throw new ProtocolException("Truncated frame");
+        }
+        int length = buffer.get() & 0xFF;
+        return readString(buffer, length, frameEnd);
+    }
+
+    /**
+     * Read a u16-length string from the body
+     */
+    public static String readLongString(ByteBuffer buffer, int frameEnd) throws ProtocolException {
+        if (buffer.position() + 2 > frameEnd) {
+            throw new ProtocolException("Truncated frame");
+        }
+        int length = buffer.getShort() & 0xFFFF;
+        return readString(buffer, length, frameEnd);
+    }
+
+    /**
+     * Read the response frame body (after beginFrame)
+     * @param sequence Receives the sequence number
+     */
+    public static AccessResponse readResponse(ByteBuffer buffer, int frameEnd, String readerId, int[] sequence)
+            throws ProtocolException {
+        if (buffer.position() + 6 > frameEnd) {
+            throw new ProtocolException("Truncated response frame");
+        }
+        sequence[0] = buffer.getInt();
+        boolean granted = buffer.get() != 0;
+        int reason = buffer.get() & 0xFF;
+        AccessResponse.ReasonCode reasonCode = reason < REASON_CODES.length
+            ? REASON_CODES[reason] : AccessResponse.ReasonCode.OTHER;
+        AccessResponse response = new AccessResponse(readerId, granted, reasonCode);
+        response.setMessage(readLongString(buffer, frameEnd));
+        return response;
+    }
+
+    private static String readString(ByteBuffer buffer, int length, int frameEnd) throws ProtocolException {
+        if (buffer.position() + length > frameEnd) {
+            throw new ProtocolException("String runs past end of frame");
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+            StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static byte[] shortString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFF) {
+            throw new IllegalArgumentException("String longer than 255 bytes: " + value);
+        }
+        return bytes;
+    }
+
+    private static ByteBuffer header(byte type, int bodyLength) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + bodyLength);
+        buffer.putShort((short) bodyLength);
+        buffer.put(type);
+        return buffer;
+    }
+}
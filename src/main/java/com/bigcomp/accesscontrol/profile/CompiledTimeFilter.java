@@ -0,0 +1,198 @@
+// Group 2 ChenGong ZhangZhao LiangYiKuo
+package com.bigcomp.accesscontrol.profile;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Compiled Time Filter - Bitmap form of a TimeFilter
+ * Day-of-week and time range rules become a 10,080-bit week-minute bitmap,
+ * year, month and day-of-month rules become a per-day calendar bitmap,
+ * so evaluation is two bit tests with no allocation
+ */
+public final class CompiledTimeFilter {
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    private static final int MINUTES_PER_WEEK = 7 * MINUTES_PER_DAY;
+    private static final int DAYS_PER_ROW = 12 * 31; // Calendar row: (month, day of month) slots
+
+    private final long[] weekMinutes; // Bit (dayOfWeek - 1) * 1440 + minuteOfDay
+    private final long[] calendarDays; // Bit row * 372 + (month - 1) * 31 + (dayOfMonth - 1)
+    private final int firstYear; // Year of calendar row 1; row 0 holds all other years
+    private final int yearRows; // Number of explicit year rows
+
+    private CompiledTimeFilter(long[] weekMinutes, long[] calendarDays, int firstYear, int yearRows) {
+        this.weekMinutes = weekMinutes;
+        this.calendarDays = calendarDays;
+        this.firstYear = firstYear;
+        this.yearRows = yearRows;
+    }
+
+    /**
+     * Compile a time filter into bitmaps
+     */
+    public static CompiledTimeFilter compile(TimeFilter filter) {
+        Set<Integer> years = filter.getYears();
+        int firstYear = 0;
+        int yearRows = 0;
+        if (years != null && !years.isEmpty()) {
+            firstYear = Integer.MAX_VALUE;
+            int lastYear = Integer.MIN_VALUE;
+            for (int year : years) {
+                firstYear = Math.min(firstYear, year);
+                lastYear = Math.max(lastYear, year);
+            }
+            yearRows = lastYear - firstYear + 1;
+        }
+        return new CompiledTimeFilter(compileWeek(filter), compileCalendar(filter, firstYear, yearRows),
+            firstYear, yearRows);
+    }
+
+    /**
+     * Build the week-minute bitmap from day-of-week and time range rules
+     */
+    private static long[] compileWeek(TimeFilter filter) {
+        boolean[] dayAllowed = new boolean[7];
+        Set<DayOfWeek> daysOfWeek = filter.getDaysOfWeek();
+        for (int d = 0; d < 7; d++) {
+            if (daysOfWeek != null && !daysOfWeek.isEmpty()) {
+                boolean weekDayMatch = daysOfWeek.contains(DayOfWeek.of(d + 1));
+                dayAllowed[d] = filter.isExcludeDaysOfWeek() ? !weekDayMatch : weekDayMatch;
+            } else {
+                dayAllowed[d] = true;
+            }
+        }
+
+        boolean[] minuteAllowed = new boolean[MINUTES_PER_DAY];
+        if (filter.getTimeRanges() != null && !filter.getTimeRanges().isEmpty()) {
+            for (int m = 0; m < MINUTES_PER_DAY; m++) {
+                boolean inAnyRange = false;
+                for (TimeFilter.TimeRange range : filter.getTimeRanges()) {
+                    if (range.contains(m)) {
+                        inAnyRange = true;
+                        break;
+                    }
+                }
+                minuteAllowed[m] = filter.isExcludeTimeRanges() ? !inAnyRange : inAnyRange;
+            }
+        } else {
+            Arrays.fill(minuteAllowed, true);
+        }
+
+        long[] bits = new long[(MINUTES_PER_WEEK + 63) >>> 6];
+        for (int d = 0; d < 7; d++) {
+            if (!dayAllowed[d]) {
+                continue;
+            }
+            for (int m = 0; m < MINUTES_PER_DAY; m++) {
+                if (minuteAllowed[m]) {
+                    set(bits, d * MINUTES_PER_DAY + m);
+                }
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Build the calendar bitmap from year, month and day-of-month rules
+     * Years listed in the filter get their own row; every other year shares row 0
+     */
+    private static long[] compileCalendar(TimeFilter filter, int firstYear, int yearRows) {
+        long[] bits = new long[((yearRows + 1) * DAYS_PER_ROW + 63) >>> 6];
+        for (int row = 0; row <= yearRows; row++) {
+            if (!yearAllowed(filter, row == 0 ? null : firstYear + row - 1)) {
+                continue;
+            }
+            for (int month = 1; month <= 12; month++) {
+                if (!monthAllowed(filter, month)) {
+                    continue;
+                }
+                for (int day = 1; day <= 31; day++) {
+                    if (dayOfMonthAllowed(filter, day)) {
+                        set(bits, row * DAYS_PER_ROW + (month - 1) * 31 + (day - 1));
+                    }
+                }
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Check year rule; a null year stands for any year not listed in the filter
+     */
+    private static boolean yearAllowed(TimeFilter filter, Integer year) {
+        if (filter.getYears() == null) {
+            return true;
+        }
+        boolean yearMatch = year != null && filter.getYears().contains(year);
+        return filter.isExcludeYears() ? !yearMatch : yearMatch;
+    }
+
+    private static boolean monthAllowed(TimeFilter filter, int month) {
+        if (filter.getMonths() == null) {
+            return true;
+        }
+        boolean monthMatch = filter.getMonths().contains(Month.of(month));
+        return filter.isExcludeMonths() ? !monthMatch : monthMatch;
+    }
+
+    private static boolean dayOfMonthAllowed(TimeFilter filter, int day) {
+        if (filter.getDaysOfMonth() == null) {
+            return true;
+        }
+        boolean dayMatch = filter.getDaysOfMonth().contains(day);
+        return filter.isExcludeDaysOfMonth() ? !dayMatch : dayMatch;
+    }
+
+    private static void set(long[] bits, int index) {
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    private static boolean test(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Check if given time matches the filter
+     */
+    public boolean matches(LocalDateTime dateTime) {
+        int yearOffset = dateTime.getYear() - firstYear;
+        int row = yearOffset >= 0 && yearOffset < yearRows ? yearOffset + 1 : 0;
+        int day = row * DAYS_PER_ROW + (dateTime.getMonthValue() - 1) * 31 + (dateTime.getDayOfMonth() - 1);
+        if (!test(calendarDays, day)) {
+            return false;
+        }
+        return matchesWeekMinute(dateTime.getDayOfWeek().ordinal() * MINUTES_PER_DAY
+            + dateTime.getHour() * 60 + dateTime.getMinute());
+    }
+
+    /**
+     * Get number of minutes, starting at the given time, during which matches() keeps
+     * returning the same result (at least 1, at most until the end of that day)
+     */
+    public int minutesUnchanged(LocalDateTime dateTime) {
+        int dayStart = dateTime.getDayOfWeek().ordinal() * MINUTES_PER_DAY;
+        int start = dayStart + dateTime.getHour() * 60 + dateTime.getMinute();
+        int end = dayStart + MINUTES_PER_DAY;
+        boolean value = test(weekMinutes, start);
+        // Find first later minute of the same day whose bit differs
+        for (int i = start + 1; i < end; i = ((i >>> 6) + 1) << 6) {
+            long word = weekMinutes[i >>> 6];
+            long diff = (value ? ~word : word) & (-1L << i);
+            if (diff != 0) {
+                return Math.min(((i >>> 6) << 6) + Long.numberOfTrailingZeros(diff), end) - start;
+            }
+        }
+        return end - start;
+    }
+
+    /**
+     * Check week-minute rule only
+     * @param weekMinute (dayOfWeek - 1) * 1440 + minute of day
+     */
+    public boolean matchesWeekMinute(int weekMinute) {
+        return test(weekMinutes, weekMinute);
+    }
+}
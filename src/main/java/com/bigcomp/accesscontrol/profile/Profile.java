@@ -48,6 +48,19 @@ public class Profile {
         return filter.matches(dateTime);
     }
 
+    /**
+     * Create a deep copy, with copies of the time filters
+     * Later edits of this profile do not affect the copy
+     */
+    public Profile copy() {
+        Profile copy = new Profile(name);
+        for (Map.Entry<String, TimeFilter> right : accessRights.entrySet()) {
+            TimeFilter filter = right.getValue();
+            copy.accessRights.put(right.getKey(), filter != null ? filter.copy() : null);
+        }
+        return copy;
+    }
+
     /**
      * Get all access rights
      */
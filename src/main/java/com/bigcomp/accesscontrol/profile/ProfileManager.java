@@ -3,6 +3,8 @@ package com.bigcomp.accesscontrol.profile;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import java.beans.PropertyChangeListener;
+import java.beans.PropertyChangeSupport;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
@@ -24,10 +26,12 @@ public class ProfileManager {
     private static final String PROFILES_DIR = "data/profiles";
     private Map<String, Profile> profiles; // Profile name -> Profile object
     private ObjectMapper objectMapper;
+    private PropertyChangeSupport pcs; // Notifies listeners when profiles change
 
     public ProfileManager() {
         this.profiles = new HashMap<>();
         this.objectMapper = new ObjectMapper();
+        this.pcs = new PropertyChangeSupport(this);
         loadProfiles();
     }
 
@@ -78,7 +82,7 @@ public class ProfileManager {
     }
 
     /**
-     * Parse time filter (simplified implementation)
+     * Parse time filter (simplified implementation) and compile it
      */
     private TimeFilter parseTimeFilter(TimeFilterData data) {
         TimeFilter filter = new TimeFilter();
@@ -109,6 +113,10 @@ public class ProfileManager {
                 filter.setExcludeMonths(data.excludeMonths);
             }
         }
+        if (data.daysOfMonth != null) {
+            filter.setDaysOfMonth(new HashSet<>(data.daysOfMonth));
+            filter.setExcludeDaysOfMonth(data.excludeDaysOfMonth);
+        }
         if (data.daysOfWeek != null && !data.daysOfWeek.isEmpty()) {
             Set<DayOfWeek> daySet = new HashSet<>();
             String[] dayNames = {"Monday", "Tuesday", "Wednesday", "Thursday", "Friday", "Saturday", "Sunday"};
@@ -153,6 +161,8 @@ public class ProfileManager {
             filter.setExcludeTimeRanges(data.excludeTimeRanges);
         }
         
+        // Compile to bitmap form at load time so matches() does no set lookups
+        filter.compile();
         return filter;
     }
 
@@ -235,6 +245,7 @@ public class ProfileManager {
             // If reload fails, use in-memory object
             System.err.println("Failed to reload profile, using in-memory object: " + e.getMessage());
         }
+        pcs.firePropertyChange("profile", null, profile.getName());
     }
 
     /**
@@ -260,6 +271,18 @@ public class ProfileManager {
         if (file.exists()) {
             file.delete();
         }
+        pcs.firePropertyChange("profile", name, null);
+    }
+
+    /**
+     * Add property change listener (notified when a profile is saved or deleted)
+     */
+    public void addPropertyChangeListener(PropertyChangeListener listener) {
+        pcs.addPropertyChangeListener(listener);
+    }
+
+    public void removePropertyChangeListener(PropertyChangeListener listener) {
+        pcs.removePropertyChangeListener(listener);
     }
 
     // Internal data classes for JSON serialization
@@ -4,6 +4,7 @@ package com.bigcomp.accesscontrol.profile;
 import java.time.DayOfWeek;
 import java.time.LocalDateTime;
 import java.time.Month;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -24,6 +25,8 @@ public class TimeFilter {
     private boolean excludeDaysOfWeek; // Whether to exclude specified days of week
     private boolean excludeTimeRanges; // Whether to exclude specified time ranges
 
+    private CompiledTimeFilter compiled; // Bitmap form, null until compiled or after a setter
+
     public TimeFilter() {
         this.years = null;
         this.months = null;
@@ -37,10 +40,58 @@ public class TimeFilter {
         this.excludeTimeRanges = false;
     }
 
+    /**
+     * Create a deep copy (rule sets are copied, the compiled form is immutable and shared)
+     */
+    public TimeFilter copy() {
+        TimeFilter copy = new TimeFilter();
+        copy.years = years != null ? new HashSet<>(years) : null;
+        copy.months = months != null ? new HashSet<>(months) : null;
+        copy.daysOfMonth = daysOfMonth != null ? new HashSet<>(daysOfMonth) : null;
+        copy.daysOfWeek = daysOfWeek != null ? new HashSet<>(daysOfWeek) : null;
+        copy.timeRanges = timeRanges != null ? new ArrayList<>(timeRanges) : null;
+        copy.excludeYears = excludeYears;
+        copy.excludeMonths = excludeMonths;
+        copy.excludeDaysOfMonth = excludeDaysOfMonth;
+        copy.excludeDaysOfWeek = excludeDaysOfWeek;
+        copy.excludeTimeRanges = excludeTimeRanges;
+        copy.compiled = compiled;
+        return copy;
+    }
+
+    /**
+     * Compile rules into bitmap form, used by matches() until a rule changes
+     */
+    public CompiledTimeFilter compile() {
+        compiled = CompiledTimeFilter.compile(this);
+        return compiled;
+    }
+
+    /**
+     * Get compiled form, null if not compiled
+     */
+    public CompiledTimeFilter getCompiled() {
+        return compiled;
+    }
+
+    /**
+     * Get number of minutes, starting at the given time, during which matches() keeps
+     * returning the same result (1 if the filter is not compiled)
+     */
+    public int minutesUnchanged(LocalDateTime dateTime) {
+        CompiledTimeFilter compiledFilter = compiled;
+        return compiledFilter != null ? compiledFilter.minutesUnchanged(dateTime) : 1;
+    }
+
     /**
      * Check if given time matches the filter
      */
     public boolean matches(LocalDateTime dateTime) {
+        CompiledTimeFilter compiledFilter = compiled;
+        if (compiledFilter != null) {
+            return compiledFilter.matches(dateTime);
+        }
+
         // Check year
         if (years != null) {
             boolean yearMatch = years.contains(dateTime.getYear());
@@ -97,10 +148,12 @@ public class TimeFilter {
 
     public void setYears(Set<Integer> years) {
         this.years = years;
+        this.compiled = null;
     }
 
     public void setYears(List<Integer> years) {
         this.years = years != null ? new HashSet<>(years) : null;
+        this.compiled = null;
     }
 
     public Set<Month> getMonths() {
@@ -109,6 +162,7 @@ public class TimeFilter {
 
     public void setMonths(Set<Month> months) {
         this.months = months;
+        this.compiled = null;
     }
 
     public Set<Integer> getDaysOfMonth() {
@@ -117,6 +171,7 @@ public class TimeFilter {
 
     public void setDaysOfMonth(Set<Integer> daysOfMonth) {
         this.daysOfMonth = daysOfMonth;
+        this.compiled = null;
     }
 
     public Set<DayOfWeek> getDaysOfWeek() {
@@ -125,6 +180,7 @@ public class TimeFilter {
 
     public void setDaysOfWeek(Set<DayOfWeek> daysOfWeek) {
         this.daysOfWeek = daysOfWeek;
+        this.compiled = null;
     }
 
     public List<TimeRange> getTimeRanges() {
@@ -133,6 +189,7 @@ public class TimeFilter {
 
     public void setTimeRanges(List<TimeRange> timeRanges) {
         this.timeRanges = timeRanges;
+        this.compiled = null;
     }
 
     public boolean isExcludeYears() {
@@ -141,6 +198,7 @@ public class TimeFilter {
 
     public void setExcludeYears(boolean excludeYears) {
         this.excludeYears = excludeYears;
+        this.compiled = null;
     }
 
     public boolean isExcludeMonths() {
@@ -149,6 +207,7 @@ public class TimeFilter {
 
     public void setExcludeMonths(boolean excludeMonths) {
         this.excludeMonths = excludeMonths;
+        this.compiled = null;
     }
 
     public boolean isExcludeDaysOfMonth() {
@@ -157,6 +216,7 @@ public class TimeFilter {
 
     public void setExcludeDaysOfMonth(boolean excludeDaysOfMonth) {
         this.excludeDaysOfMonth = excludeDaysOfMonth;
+        this.compiled = null;
     }
 
     public boolean isExcludeDaysOfWeek() {
@@ -165,6 +225,7 @@ public class TimeFilter {
 
     public void setExcludeDaysOfWeek(boolean excludeDaysOfWeek) {
         this.excludeDaysOfWeek = excludeDaysOfWeek;
+        this.compiled = null;
     }
 
     public boolean isExcludeTimeRanges() {
@@ -173,6 +234,7 @@ public class TimeFilter {
 
     public void setExcludeTimeRanges(boolean excludeTimeRanges) {
         this.excludeTimeRanges = excludeTimeRanges;
+        this.compiled = null;
     }
 
     /**
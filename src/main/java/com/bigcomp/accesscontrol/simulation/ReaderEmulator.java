@@ -0,0 +1,177 @@
+// Group 2 ChenGong ZhangZhao LiangYiKuo
+package com.bigcomp.accesscontrol.simulation;
+
+import com.bigcomp.accesscontrol.model.AccessResponse;
+import com.bigcomp.accesscontrol.network.SwipeProtocol;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reader Emulator - Networked badge reader talking SwipeProtocol to a ReaderServer
+ * Swipes are pipelined: swipe() returns immediately and its future completes when the
+ * matching response arrives. Run main() to load-test a server over loopback.
+ */
+public class ReaderEmulator implements Closeable {
+    private final String readerId;
+    private final SocketChannel channel;
+    private final Map<Integer, CompletableFuture<AccessResponse>> pending; // Sequence -> waiting swipe
+    private final AtomicInteger nextSequence;
+    private final Thread receiver;
+    private volatile boolean closed;
+
+    private ReaderEmulator(String readerId, SocketChannel channel) {
+        this.readerId = readerId;
+        this.channel = channel;
+        this.pending = new ConcurrentHashMap<>();
+        this.nextSequence = new AtomicInteger();
+        this.receiver = new Thread(this::receive, "reader-emulator-" + readerId);
+        receiver.setDaemon(true);
+    }
+
+    /**
+     * Connect to a reader server and introduce the reader
+     */
+    public static ReaderEmulator connect(String host, int port, String readerId, String resourceId)
+            throws IOException {
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.socket().setTcpNoDelay(true);
+        ReaderEmulator emulator = new ReaderEmulator(readerId, channel);
+        emulator.write(SwipeProtocol.encodeHello(readerId, resourceId));
+        emulator.receiver.start();
+        return emulator;
+    }
+
+    /**
+     * Send a swipe without waiting for earlier ones to be answered
+     * @return Future completed with the response
+     */
+    public CompletableFuture<AccessResponse> swipe(String badgeCode) throws IOException {
+        int sequence = nextSequence.getAndIncrement();
+        CompletableFuture<AccessResponse> future = new CompletableFuture<>();
+        pending.put(sequence, future);
+        try {
+            write(SwipeProtocol.encodeSwipe(sequence, badgeCode));
+        } catch (IOException e) {
+            pending.remove(sequence);
+            throw e;
+        }
+        return future;
+    }
+
+    private synchronized void write(ByteBuffer frame) throws IOException {
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+    }
+
+    private void receive() {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        int[] sequence = new int[1];
+        try {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                while (SwipeProtocol.peekFrame(buffer) == SwipeProtocol.RESPONSE) {
+                    int frameEnd = SwipeProtocol.beginFrame(buffer);
+                    AccessResponse response = SwipeProtocol.readResponse(buffer, frameEnd, readerId, sequence);
+                    buffer.position(frameEnd);
+                    CompletableFuture<AccessResponse> future = pending.remove(sequence[0]);
+                    if (future != null) {
+                        future.complete(response);
+                    }
+                }
+                buffer.compact();
+            }
+        } catch (IOException | SwipeProtocol.ProtocolException e) {
+            if (!closed) {
+                System.err.println("Reader emulator " + readerId + " disconnected: " + e.getMessage());
+            }
+        }
+        IOException lost = new IOException("Connection closed");
+        for (CompletableFuture<AccessResponse> future : pending.values()) {
+            future.completeExceptionally(lost);
+        }
+        pending.clear();
+    }
+
+    /**
+     * Get number of swipes not answered yet
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        channel.close();
+    }
+
+    /**
+     * Load test: ReaderEmulator host port readers swipesPerReader pipelineDepth badgeCode [resourceId]
+     * Each emulated reader is named EMU-n and keeps up to pipelineDepth swipes in flight;
+     * the server must allow EMU-0 to EMU-(readers - 1) at the resource
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 6) {
+            System.out.println("Usage: ReaderEmulator host port readers swipesPerReader pipelineDepth badgeCode [resourceId]");
+            return;
+        }
+        String host = args[0];
+        int port = Integer.parseInt(args[1]);
+        int readers = Integer.parseInt(args[2]);
+        int swipes = Integer.parseInt(args[3]);
+        int depth = Integer.parseInt(args[4]);
+        String badgeCode = args[5];
+        String resourceId = args.length > 6 ? args[6] : "EMU-RESOURCE";
+
+        AtomicInteger granted = new AtomicInteger();
+        AtomicInteger denied = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int r = 0; r < readers; r++) {
+            String id = "EMU-" + r;
+            Thread thread = new Thread(() -> {
+                Semaphore window = new Semaphore(depth);
+                try (ReaderEmulator emulator = connect(host, port, id, resourceId)) {
+                    for (int i = 0; i < swipes; i++) {
+                        window.acquire();
+                        emulator.swipe(badgeCode).whenComplete((response, error) -> {
+                            if (error != null) {
+                                failed.incrementAndGet();
+                            } else if (response.isGranted()) {
+                                granted.incrementAndGet();
+                            } else {
+                                denied.incrementAndGet();
+                            }
+                            window.release();
+                        });
+                    }
+                    window.acquire(depth); // Wait for the last responses
+                } catch (IOException | InterruptedException e) {
+                    System.err.println("Reader emulator " + id + " failed: " + e.getMessage());
+                }
+            }, id);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        int total = granted.get() + denied.get() + failed.get();
+        System.out.printf("%d responses in %.2f s (%.0f/s): %d granted, %d denied, %d failed%n",
+            total, seconds, total / seconds, granted.get(), denied.get(), failed.get());
+    }
+}
@@ -96,14 +96,13 @@ public class AccessDiagnostic {
         
         // 4. Check resource group
         report.append("4. Check Resource Group:\n");
-        Map<String, String> resourceGroups = dbManager.loadResourceGroups();
-        String groupName = resourceGroups.get(resourceId);
-        if (groupName == null) {
+        Set<String> groupNames = dbManager.loadResourceGroups(resourceId);
+        if (groupNames.isEmpty()) {
             report.append("   ✗ Resource does not belong to any resource group!\n");
             report.append("   Solution: Add resource to resource group in Resource Group Management\n\n");
             return report.toString();
         }
-        report.append("   ✓ Resource group: ").append(groupName).append("\n\n");
+        report.append("   ✓ Resource group: ").append(String.join(", ", groupNames)).append("\n\n");
         
         // 5. Check profile permissions
         report.append("5. Check Profile Permissions:\n");
@@ -122,18 +121,32 @@ public class AccessDiagnostic {
                 continue;
             }
             
-            boolean hasAccess = profile.hasAccess(groupName, currentTime);
+            // Pick the resource group that grants access, else the first one configured
+            String groupName = null;
+            for (String candidate : groupNames) {
+                if (!profile.getAccessRights().containsKey(candidate)) {
+                    continue;
+                }
+                if (groupName == null) {
+                    groupName = candidate;
+                }
+                if (profile.hasAccess(candidate, currentTime)) {
+                    groupName = candidate;
+                    break;
+                }
+            }
             report.append("   Profile: ").append(profileName).append("\n");
             
             // Check if resource group is configured
-            if (!profile.getAccessRights().containsKey(groupName)) {
+            if (groupName == null) {
                 report.append("     ✗ Resource group not configured\n");
                 continue;
             }
+            boolean hasAccess = profile.hasAccess(groupName, currentTime);
             
             // Detailed check of time filter
             TimeFilter filter = profile.getAccessRights().get(groupName);
-            report.append("     ✓ Resource group configured\n");
+            report.append("     ✓ Resource group configured: ").append(groupName).append("\n");
             report.append("     Time filter details:\n");
             
             // Check day of week
@@ -260,7 +273,7 @@ public class AccessDiagnostic {
         
         // Resource statistics
         Map<String, Resource> resources = dbManager.loadAllResources();
-        Map<String, String> resourceGroups = dbManager.loadResourceGroups();
+        Map<String, Set<String>> resourceGroups = dbManager.loadResourceGroups();
         int resourcesInGroups = 0;
         for (String resourceId : resources.keySet()) {
             if (resourceGroups.containsKey(resourceId)) {
@@ -0,0 +1,342 @@
+// Group 2 ChenGong ZhangZhao LiangYiKuo
+package com.bigcomp.accesscontrol.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hashed Wheel Timer - One thread serving any number of short delayed tasks
+ * (reader cooldowns, door relock timers, ...). Timeouts are hashed into a ring of
+ * buckets by deadline; adding and cancelling are O(1), and each tick only looks at
+ * one bucket. Tasks run on the timer thread and must be short.
+ */
+public class HashedWheelTimer {
+    public static final long DEFAULT_TICK_MILLIS = 10;
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+    private static final int MAX_TRANSFERS_PER_TICK = 100000;
+
+    private static volatile HashedWheelTimer shared;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final long startTime; // System.nanoTime() at creation, deadlines are relative to it
+    private final Queue<Timeout> additions; // Added by any thread, moved into buckets by the worker
+    private final Queue<Timeout> cancellations; // Cancelled by any thread, unlinked by the worker
+    private final AtomicInteger pending;
+    private final Thread worker;
+    private volatile boolean running;
+    private long tick; // Worker thread only
+
+    // Lag metrics: how late timeouts run compared to their deadline
+    private final LongAdder expiredCount;
+    private final LongAdder totalLagNanos;
+    private final AtomicLong maxLagNanos;
+    private volatile long lastLagNanos;
+
+    public HashedWheelTimer() {
+        this(DEFAULT_TICK_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_WHEEL_SIZE, "hashed-wheel-timer");
+    }
+
+    /**
+     * Create and start timer
+     * @param tickDuration Timer resolution
+     * @param unit Unit of tick duration
+     * @param wheelSize Number of buckets (rounded up to a power of two)
+     * @param threadName Name of the daemon worker thread
+     */
+    public HashedWheelTimer(long tickDuration, TimeUnit unit, int wheelSize, String threadName) {
+        if (tickDuration <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("Tick duration and wheel size must be positive");
+        }
+        int size = Integer.highestOneBit(wheelSize - 1) << 1;
+        if (size == 0) {
+            size = 1;
+        }
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.additions = new ConcurrentLinkedQueue<>();
+        this.cancellations = new ConcurrentLinkedQueue<>();
+        this.pending = new AtomicInteger();
+        this.expiredCount = new LongAdder();
+        this.totalLagNanos = new LongAdder();
+        this.maxLagNanos = new AtomicLong();
+        this.startTime = System.nanoTime();
+        this.running = true;
+        this.worker = new Thread(this::run, threadName);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Get timer shared by the whole application, started on first use
+     */
+    public static HashedWheelTimer shared() {
+        HashedWheelTimer timer = shared;
+        if (timer == null) {
+            synchronized (HashedWheelTimer.class) {
+                timer = shared;
+                if (timer == null) {
+                    timer = new HashedWheelTimer();
+                    shared = timer;
+                }
+            }
+        }
+        return timer;
+    }
+
+    /**
+     * Timeout - Handle of a scheduled task
+     */
+    public static final class Timeout {
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final HashedWheelTimer timer;
+        private final Runnable task;
+        private final long deadline; // Nanos since timer start
+        private final AtomicInteger state;
+        private long remainingRounds; // Worker thread only
+        private Timeout next; // Bucket links, worker thread only
+        private Timeout prev;
+        private Bucket bucket;
+
+        private Timeout(HashedWheelTimer timer, Runnable task, long deadline) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+            this.state = new AtomicInteger(PENDING);
+        }
+
+        /**
+         * Cancel task if it has not run yet
+         * @return true if cancelled by this call
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(PENDING, CANCELLED)) {
+                return false;
+            }
+            timer.pending.decrementAndGet();
+            timer.cancellations.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+
+        private void expire(long now) {
+            if (!state.compareAndSet(PENDING, EXPIRED)) {
+                return;
+            }
+            timer.pending.decrementAndGet();
+            timer.recordLag(now - deadline);
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                System.err.println("Timer task failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Bucket - Doubly linked list of timeouts (worker thread only)
+     */
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        Timeout remove(Timeout timeout) {
+            Timeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+            return next;
+        }
+
+        /**
+         * Run timeouts of this round whose deadline has passed
+         */
+        void expire(long now) {
+            Timeout timeout = head;
+            while (timeout != null) {
+                if (timeout.remainingRounds <= 0) {
+                    Timeout next = remove(timeout);
+                    timeout.expire(now);
+                    timeout = next;
+                } else if (timeout.isCancelled()) {
+                    timeout = remove(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                    timeout = timeout.next;
+                }
+            }
+        }
+    }
+
+    /**
+     * Schedule task
+     * @return Handle to cancel the task
+     */
+    public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+        if (!running) {
+            throw new IllegalStateException("Timer is stopped");
+        }
+        long deadline = System.nanoTime() - startTime + Math.max(0, unit.toNanos(delay));
+        if (deadline < 0) {
+            deadline = Long.MAX_VALUE; // Overflow: effectively never
+        }
+        Timeout timeout = new Timeout(this, task, deadline);
+        pending.incrementAndGet();
+        additions.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Stop worker thread; pending tasks never run
+     */
+    public void stop() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private void run() {
+        while (running) {
+            long now = waitForNextTick();
+            if (now < 0) {
+                break;
+            }
+            Bucket bucket = wheel[(int) (tick & mask)];
+            removeCancelled();
+            transferAdditions();
+            bucket.expire(now);
+            tick++;
+        }
+    }
+
+    /**
+     * Sleep until the current tick ends
+     * @return Time since timer start, or -1 if stopped
+     */
+    private long waitForNextTick() {
+        long deadline = tickNanos * (tick + 1);
+        while (true) {
+            long now = System.nanoTime() - startTime;
+            long sleepMillis = (deadline - now + 999_999) / 1_000_000;
+            if (sleepMillis <= 0) {
+                return now;
+            }
+            try {
+                Thread.sleep(sleepMillis);
+            } catch (InterruptedException e) {
+                if (!running) {
+                    return -1;
+                }
+            }
+        }
+    }
+
+    private void transferAdditions() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            Timeout timeout = additions.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.isCancelled()) {
+                continue;
+            }
+            long calculated = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (calculated - tick) / wheel.length;
+            long ticks = Math.max(calculated, tick); // Already late: run in the current tick
+            wheel[(int) (ticks & mask)].add(timeout);
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancellations.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void recordLag(long lagNanos) {
+        long lag = Math.max(0, lagNanos);
+        lastLagNanos = lag;
+        expiredCount.increment();
+        totalLagNanos.add(lag);
+        maxLagNanos.accumulateAndGet(lag, Math::max);
+    }
+
+    // Metrics
+    public int getPendingTimeouts() {
+        return pending.get();
+    }
+
+    public long getExpiredCount() {
+        return expiredCount.sum();
+    }
+
+    /**
+     * Get how late the most recent timeout ran, in milliseconds
+     */
+    public double getLastLagMillis() {
+        return lastLagNanos / 1_000_000.0;
+    }
+
+    /**
+     * Get average lateness of timeouts, in milliseconds
+     */
+    public double getAverageLagMillis() {
+        long count = expiredCount.sum();
+        return count == 0 ? 0.0 : totalLagNanos.sum() / 1_000_000.0 / count;
+    }
+
+    /**
+     * Get worst lateness of any timeout, in milliseconds
+     */
+    public double getMaxLagMillis() {
+        return maxLagNanos.get() / 1_000_000.0;
+    }
+
+    public long getTickMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(tickNanos);
+    }
+}
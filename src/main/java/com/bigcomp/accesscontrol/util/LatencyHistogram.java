@@ -0,0 +1,126 @@
+// Group 2 ChenGong ZhangZhao LiangYiKuo
+package com.bigcomp.accesscontrol.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency Histogram - Fixed-bucket, lock-free histogram of nanosecond durations
+ * Buckets are log-linear: 16 per power of two, so a reported percentile is within 6.25%
+ * of the recorded value. Recording is one atomic bucket increment and one adder update
+ * (plus one for a new maximum) and never allocates. Values above about 18 minutes go to
+ * the last bucket.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40; // 2^40 ns
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts;
+    private final LongAdder sum;
+    private final AtomicLong max;
+
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKET_COUNT);
+        this.sum = new LongAdder();
+        this.max = new AtomicLong();
+    }
+
+    /**
+     * Record a duration
+     * @param nanos Duration in nanoseconds (negative values count as 0)
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        sum.add(value);
+        if (value > max.get()) {
+            max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Get highest value that falls in a bucket
+     */
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        int shift = exponent - SUB_BUCKET_BITS;
+        return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * Get value below which the given fraction of durations fall
+     * @param percentile Percentile, e.g. 99.9
+     * @return Nanoseconds, 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long count = getCount();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * Math.min(100.0, percentile) / 100.0));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(bucket), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            count += counts.get(bucket);
+        }
+        return count;
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0.0 : (double) sum.sum() / count;
+    }
+
+    /**
+     * Clear all buckets (not atomic with respect to concurrent recording)
+     */
+    public void reset() {
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            counts.set(bucket, 0);
+        }
+        sum.reset();
+        max.set(0);
+    }
+
+    /**
+     * Get summary line: count, p50, p99, p99.9 and max in microseconds
+     */
+    public String summary() {
+        return String.format("n=%d p50=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus", getCount(),
+            getValueAtPercentile(50) / 1000.0, getValueAtPercentile(99) / 1000.0,
+            getValueAtPercentile(99.9) / 1000.0, getMax() / 1000.0);
+    }
+}